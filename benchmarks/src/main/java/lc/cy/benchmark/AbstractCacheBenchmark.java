@@ -0,0 +1,169 @@
+package lc.cy.benchmark;
+
+import lc.cy.cache.caffine.RedisCaffeineCache;
+import lc.cy.cache.caffine.RedisCaffeineCacheManager;
+import lc.cy.cache.config.CacheRedisCaffeineProperties;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.jedis.JedisClientConfiguration;
+import org.springframework.data.redis.connection.jedis.JedisConnectionFactory;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.serializer.JdkSerializationRedisSerializer;
+import org.springframework.data.redis.serializer.StringRedisSerializer;
+import redis.clients.jedis.JedisPoolConfig;
+import redis.embedded.RedisServer;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 类名称：AbstractCacheBenchmark <br>
+ * 类描述：基准测试的公共环境，每轮测试启动内嵌redis（指定bench.redis.host时使用外部redis），按配置创建缓存管理器及缓存。
+ * 只操作名为benchmark的缓存，结束时删除该缓存在redis中的key，不会清空外部redis的其他数据 <br>
+ */
+@State(Scope.Benchmark)
+public abstract class AbstractCacheBenchmark {
+
+    protected static final String CACHE_NAME = "benchmark";
+
+    // 内嵌redis的默认端口，避免与本机已启动的redis冲突
+    private static final int EMBEDDED_PORT = 16379;
+
+    /**
+     * key的访问分布
+     */
+    @Param({KeyDistribution.UNIFORM, KeyDistribution.ZIPFIAN})
+    public String distribution;
+
+    /**
+     * key的数量
+     */
+    @Param({"100000"})
+    public int keyCount;
+
+    /**
+     * 缓存值的字节数
+     */
+    @Param({"128"})
+    public int valueSize;
+
+    private RedisServer redisServer;
+
+    private JedisConnectionFactory connectionFactory;
+
+    protected RedisTemplate<Object, Object> redisTemplate;
+
+    protected RedisCaffeineCacheManager cacheManager;
+
+    protected RedisCaffeineCache cache;
+
+    protected KeyDistribution keys;
+
+    // 预先生成的key，避免测试中拼接字符串
+    protected String[] keyNames;
+
+    protected String value;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        String host = System.getProperty("bench.redis.host");
+        int port = Integer.getInteger("bench.redis.port", host == null ? EMBEDDED_PORT : 6379);
+        if (host == null) {
+            redisServer = new RedisServer(port);
+            redisServer.start();
+            host = "127.0.0.1";
+        }
+        JedisPoolConfig poolConfig = new JedisPoolConfig();
+        // 最多64个测试线程同时访问redis
+        poolConfig.setMaxTotal(128);
+        poolConfig.setMaxIdle(128);
+        connectionFactory = new JedisConnectionFactory(new RedisStandaloneConfiguration(host, port),
+                JedisClientConfiguration.builder().usePooling().poolConfig(poolConfig).build());
+        connectionFactory.afterPropertiesSet();
+
+        redisTemplate = new RedisTemplate<>();
+        redisTemplate.setConnectionFactory(connectionFactory);
+        redisTemplate.setKeySerializer(new StringRedisSerializer());
+        redisTemplate.setValueSerializer(new JdkSerializationRedisSerializer());
+        redisTemplate.afterPropertiesSet();
+
+        CacheRedisCaffeineProperties properties = new CacheRedisCaffeineProperties();
+        properties.setRedis(new CacheRedisCaffeineProperties.Redis());
+        CacheRedisCaffeineProperties.Caffeine caffeine = new CacheRedisCaffeineProperties.Caffeine();
+        caffeine.setMaximumSize(keyCount);
+        Map<String, CacheRedisCaffeineProperties.Caffeine> caffeineMap = new HashMap<>();
+        caffeineMap.put(CACHE_NAME, caffeine);
+        properties.setCaffeine(caffeineMap);
+        configure(properties, caffeine);
+
+        cacheManager = new RedisCaffeineCacheManager(properties, redisTemplate);
+        cache = (RedisCaffeineCache) cacheManager.getCache(CACHE_NAME);
+        // 上次中断的测试可能残留数据
+        cache.clear();
+
+        keys = KeyDistribution.of(distribution, keyCount);
+        keyNames = new String[keyCount];
+        for (int i = 0; i < keyCount; i++) {
+            keyNames[i] = KeyDistribution.key(i);
+        }
+        value = String.join("", Collections.nCopies(Math.max(1, valueSize), "v"));
+        afterSetUp();
+    }
+
+    /**
+     * @param properties
+     * @param caffeine   当前缓存的本地缓存配置，默认最大数量为keyCount
+     * @description 创建缓存管理器前调整配置
+     * @version 1.0.0
+     */
+    protected void configure(CacheRedisCaffeineProperties properties, CacheRedisCaffeineProperties.Caffeine caffeine) {
+    }
+
+    /**
+     * 缓存创建后的准备，如预先写入数据
+     */
+    protected void afterSetUp() {
+    }
+
+    /**
+     * 将所有key写入redis及本地缓存
+     */
+    protected void prefill() {
+        Map<Object, Object> batch = new LinkedHashMap<>();
+        for (String key : keyNames) {
+            batch.put(key, value);
+            if (batch.size() >= 1000) {
+                cache.putAll(batch);
+                batch.clear();
+            }
+        }
+        cache.putAll(batch);
+    }
+
+    protected String nextKey() {
+        return keyNames[keys.next()];
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        if (cache != null) {
+            cache.clear();
+        }
+        if (cacheManager != null) {
+            cacheManager.destroy();
+        }
+        if (connectionFactory != null) {
+            connectionFactory.destroy();
+        }
+        if (redisServer != null) {
+            redisServer.stop();
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package lc.cy.benchmark;
+
+import lc.cy.cache.CaffineChangeMessageListener;
+import lc.cy.cache.caffine.CacheInvalidationDispatcher;
+import lc.cy.cache.caffine.CacheMessage;
+import lc.cy.cache.codec.BinaryCacheMessageCodec;
+import lc.cy.cache.codec.CacheMessageCodec;
+import lc.cy.cache.codec.JsonCacheMessageCodec;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 类名称：InvalidationBenchmark <br>
+ * 类描述：接收变更消息的基准测试，直接调用监听器处理预先编码的其他节点的消息，每次调用处理一批消息后等待所有通道处理完成，
+ * 测量从解码、按key分配到通道到后台线程清理本地缓存的端到端吞吐量（单位为消息数）。每批消息在每个通道中最多积压一批的任务，
+ * 不会超过通道容量；若仍发生通道已满而清空整个本地缓存，每轮结束时记录日志 <br>
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 10)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class InvalidationBenchmark extends AbstractCacheBenchmark {
+
+    private static final Logger logger = LoggerFactory.getLogger(InvalidationBenchmark.class);
+
+    // 预先编码的消息数量，为2的幂
+    private static final int MESSAGE_COUNT = 1024;
+
+    // 每次调用处理的消息数
+    private static final int MESSAGES_PER_INVOCATION = 64;
+
+    /**
+     * 每条消息中的key数量
+     */
+    @Param({"1", "100"})
+    public int batchSize;
+
+    /**
+     * 消息编码，json或binary
+     */
+    @Param({"json", "binary"})
+    public String codec;
+
+    private CaffineChangeMessageListener listener;
+
+    private byte[][] bodies;
+
+    private long lastOverflows;
+
+    @Override
+    protected void afterSetUp() {
+        prefill();
+        CacheMessageCodec jsonCodec = new JsonCacheMessageCodec(redisTemplate);
+        CacheMessageCodec messageCodec = "binary".equalsIgnoreCase(codec) ? new BinaryCacheMessageCodec(jsonCodec) : jsonCodec;
+        listener = new CaffineChangeMessageListener(redisTemplate, cacheManager, messageCodec);
+        bodies = new byte[MESSAGE_COUNT][];
+        for (int i = 0; i < MESSAGE_COUNT; i++) {
+            CacheMessage message;
+            if (batchSize <= 1) {
+                message = new CacheMessage(CACHE_NAME, nextKey());
+            } else {
+                List<Object> messageKeys = new ArrayList<>(batchSize);
+                for (int j = 0; j < batchSize; j++) {
+                    messageKeys.add(nextKey());
+                }
+                message = new CacheMessage(CACHE_NAME, messageKeys);
+            }
+            // 其他节点发出的消息，自己发出的消息会被忽略
+            message.setOrigin("benchmark-remote");
+            message.setTimestamp(System.currentTimeMillis());
+            bodies[i] = messageCodec.encode(Collections.singletonList(message));
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Cursor {
+
+        int index;
+    }
+
+    /**
+     * 每个线程的附加指标，与吞吐量一起输出
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Counters {
+
+        // 等待通道处理完成的自旋次数，反映后台清理相对接收的滞后
+        public long drainSpins;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            drainSpins = 0;
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(MESSAGES_PER_INVOCATION)
+    public void receive(Cursor cursor, Counters counters) {
+        for (int i = 0; i < MESSAGES_PER_INVOCATION; i++) {
+            listener.receive(bodies[cursor.index++ & (MESSAGE_COUNT - 1)]);
+        }
+        // 等待已分配的任务（包括其他线程分配的）全部处理完成
+        CacheInvalidationDispatcher dispatcher = cacheManager.getInvalidationDispatcher();
+        long dispatched = dispatcher.getDispatchedCount();
+        while (dispatcher.getCompletedCount() < dispatched) {
+            counters.drainSpins++;
+            Thread.onSpinWait();
+        }
+    }
+
+    @TearDown(Level.Iteration)
+    public void report() {
+        CacheInvalidationDispatcher dispatcher = cacheManager.getInvalidationDispatcher();
+        long overflows = dispatcher.getOverflowCount() - lastOverflows;
+        lastOverflows = dispatcher.getOverflowCount();
+        if (overflows > 0) {
+            logger.warn("invalidation lanes overflowed {} times in this iteration, the result includes clearing all local cache", overflows);
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package lc.cy.benchmark;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 类名称：KeyDistribution <br>
+ * 类描述：基准测试中key的访问分布，uniform为均匀分布，zipfian为Zipf分布（YCSB的生成算法，theta=0.99），
+ * 编号越小的key访问越频繁，用于模拟热点集中的真实流量 <br>
+ */
+public abstract class KeyDistribution {
+
+    public static final String UNIFORM = "uniform";
+
+    public static final String ZIPFIAN = "zipfian";
+
+    protected final int keyCount;
+
+    protected KeyDistribution(int keyCount) {
+        this.keyCount = keyCount;
+    }
+
+    /**
+     * @param name     uniform或zipfian
+     * @param keyCount key的数量
+     * @description 按名称创建分布
+     * @version 1.0.0
+     */
+    public static KeyDistribution of(String name, int keyCount) {
+        if (UNIFORM.equalsIgnoreCase(name)) {
+            return new Uniform(keyCount);
+        }
+        if (ZIPFIAN.equalsIgnoreCase(name)) {
+            return new Zipfian(keyCount, 0.99);
+        }
+        throw new IllegalArgumentException("unknown key distribution: " + name);
+    }
+
+    /**
+     * 下一个key的编号，范围为[0, keyCount)
+     */
+    public abstract int next();
+
+    public String nextKey() {
+        return key(next());
+    }
+
+    public static String key(int index) {
+        return "key-" + index;
+    }
+
+    public int getKeyCount() {
+        return keyCount;
+    }
+
+    private static class Uniform extends KeyDistribution {
+
+        Uniform(int keyCount) {
+            super(keyCount);
+        }
+
+        @Override
+        public int next() {
+            return ThreadLocalRandom.current().nextInt(keyCount);
+        }
+    }
+
+    private static class Zipfian extends KeyDistribution {
+
+        private final double theta;
+
+        private final double alpha;
+
+        private final double zetan;
+
+        private final double eta;
+
+        Zipfian(int keyCount, double theta) {
+            super(keyCount);
+            this.theta = theta;
+            this.alpha = 1.0 / (1.0 - theta);
+            this.zetan = zeta(keyCount, theta);
+            double zeta2 = zeta(2, theta);
+            this.eta = (1 - Math.pow(2.0 / keyCount, 1 - theta)) / (1 - zeta2 / zetan);
+        }
+
+        private static double zeta(int n, double theta) {
+            double sum = 0;
+            for (int i = 1; i <= n; i++) {
+                sum += 1 / Math.pow(i, theta);
+            }
+            return sum;
+        }
+
+        @Override
+        public int next() {
+            double u = ThreadLocalRandom.current().nextDouble();
+            double uz = u * zetan;
+            if (uz < 1.0) {
+                return 0;
+            }
+            if (uz < 1.0 + Math.pow(0.5, theta)) {
+                return 1;
+            }
+            int index = (int) (keyCount * Math.pow(eta * u - eta + 1, alpha));
+            return Math.min(index, keyCount - 1);
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package lc.cy.benchmark;
+
+import lc.cy.cache.config.CacheRedisCaffeineProperties;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 类名称：LoadBenchmark <br>
+ * 类描述：带加载方法读取的基准测试。getWithLoader在多线程下按分布访问，本地缓存容量小于key数量，
+ * redis中的值按redisExpire过期，覆盖本地命中、redis命中及同一个key并发加载的合并；
+ * missWithLoad每次使用新的key，两级缓存都未命中，包含加载、写入redis及发布变更消息 <br>
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 10)
+public class LoadBenchmark extends AbstractCacheBenchmark {
+
+    /**
+     * 本地缓存的最大数量
+     */
+    @Param({"1000"})
+    public long localSize;
+
+    /**
+     * redis中的过期时间，单位毫秒
+     */
+    @Param({"1000"})
+    public long redisExpire;
+
+    /**
+     * 每次加载消耗的CPU，Blackhole.consumeCPU的参数
+     */
+    @Param({"1000"})
+    public long loadTokens;
+
+    private final AtomicLong sequence = new AtomicLong();
+
+    @Override
+    protected void configure(CacheRedisCaffeineProperties properties, CacheRedisCaffeineProperties.Caffeine caffeine) {
+        caffeine.setMaximumSize(localSize);
+        properties.getRedis().setDefaultExpires(redisExpire);
+    }
+
+    private String load() {
+        Blackhole.consumeCPU(loadTokens);
+        return value;
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public Object getWithLoader() {
+        return cache.get(nextKey(), this::load);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SampleTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public Object missWithLoad() {
+        return cache.get("miss-" + sequence.incrementAndGet(), this::load);
+    }
+}
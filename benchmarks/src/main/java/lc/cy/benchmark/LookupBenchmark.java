@@ -0,0 +1,48 @@
+package lc.cy.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.cache.Cache;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 类名称：LookupBenchmark <br>
+ * 类描述：读取的基准测试。l1Hit为本地缓存命中的吞吐量，所有key预先写入，本地缓存容量足够；
+ * l2Hit为redis命中的延迟，每次读取前清理该key的本地缓存。
+ * 按线程数对比时使用 -t 指定线程数，或通过ThreadScalingRunner依次以1到64个线程执行 <br>
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 10)
+public class LookupBenchmark extends AbstractCacheBenchmark {
+
+    @Override
+    protected void afterSetUp() {
+        prefill();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public Cache.ValueWrapper l1Hit() {
+        return cache.get(nextKey());
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SampleTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public Cache.ValueWrapper l2Hit() {
+        String key = nextKey();
+        cache.clearLocal(key);
+        return cache.get(key);
+    }
+}
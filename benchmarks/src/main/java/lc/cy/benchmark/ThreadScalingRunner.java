@@ -0,0 +1,27 @@
+package lc.cy.benchmark;
+
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * 类名称：ThreadScalingRunner <br>
+ * 类描述：依次以不同的线程数执行基准测试，JMH的线程数不能作为参数。
+ * 用法：java -cp benchmarks.jar lc.cy.benchmark.ThreadScalingRunner [正则] [线程数,...]，
+ * 默认执行LookupBenchmark.l1Hit，线程数为1,2,4,8,16,32,64 <br>
+ */
+public class ThreadScalingRunner {
+
+    public static void main(String[] args) throws RunnerException {
+        String include = args.length > 0 ? args[0] : LookupBenchmark.class.getSimpleName() + ".l1Hit";
+        String threads = args.length > 1 ? args[1] : "1,2,4,8,16,32,64";
+        for (String thread : threads.split(",")) {
+            Options options = new OptionsBuilder()
+                    .include(include)
+                    .threads(Integer.parseInt(thread.trim()))
+                    .build();
+            new Runner(options).run();
+        }
+    }
+}
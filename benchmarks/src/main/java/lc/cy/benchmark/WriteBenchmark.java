@@ -0,0 +1,50 @@
+package lc.cy.benchmark;
+
+import lc.cy.cache.config.CacheRedisCaffeineProperties;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 类名称：WriteBenchmark <br>
+ * 类描述：写入及失效的基准测试，包含写入redis及发布变更消息的开销。
+ * publishWindow为0时SET与PUBLISH在一个脚本中执行，大于0时按窗口批量发布 <br>
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 10)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class WriteBenchmark extends AbstractCacheBenchmark {
+
+    /**
+     * 变更消息的批量发送窗口，单位毫秒
+     */
+    @Param({"0", "5"})
+    public long publishWindow;
+
+    @Override
+    protected void configure(CacheRedisCaffeineProperties properties, CacheRedisCaffeineProperties.Caffeine caffeine) {
+        properties.getRedis().setPublishWindow(publishWindow);
+    }
+
+    @Benchmark
+    public void put() {
+        cache.put(nextKey(), value);
+    }
+
+    @Benchmark
+    public void evict() {
+        cache.evict(nextKey());
+    }
+}
@@ -1,14 +1,20 @@
 package lc.cy.cache;
 
+import lc.cy.cache.caffine.CacheInvalidationDispatcher;
 import lc.cy.cache.caffine.CacheMessage;
 import lc.cy.cache.caffine.RedisCaffeineCacheManager;
-import lc.cy.util.JsonUtil;
+import lc.cy.cache.codec.CacheMessageCodec;
+import lc.cy.cache.codec.JsonCacheMessageCodec;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.data.redis.connection.Message;
 import org.springframework.data.redis.connection.MessageListener;
 import org.springframework.data.redis.core.RedisTemplate;
-import org.springframework.util.StringUtils;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 public class CaffineChangeMessageListener implements MessageListener {
 
@@ -18,27 +24,78 @@ public class CaffineChangeMessageListener implements MessageListener {
 
     private RedisCaffeineCacheManager redisCaffeineCacheManager;
 
+    private CacheMessageCodec codec;
+
     public CaffineChangeMessageListener(RedisTemplate<Object, Object> redisTemplate,
                                         RedisCaffeineCacheManager redisCaffeineCacheManager) {
+        this(redisTemplate, redisCaffeineCacheManager, new JsonCacheMessageCodec(redisTemplate));
+    }
+
+    public CaffineChangeMessageListener(RedisTemplate<Object, Object> redisTemplate,
+                                        RedisCaffeineCacheManager redisCaffeineCacheManager, CacheMessageCodec codec) {
         super();
         this.redisTemplate = redisTemplate;
         this.redisCaffeineCacheManager = redisCaffeineCacheManager;
+        this.codec = codec;
     }
 
     @Override
     public void onMessage(Message message, byte[] pattern) {
-        Object msg = redisTemplate.getValueSerializer().deserialize(message.getBody());
-        if(msg == null) {
-            return;
+        receive(message.getBody());
+    }
+
+    /**
+     * @param body
+     * @description 处理一条编码后的消息，topic及stream两种方式共用
+     * @version 1.0.0
+     */
+    public void receive(byte[] body) {
+        for (CacheMessage cacheMessage : codec.decode(body)) {
+            handle(cacheMessage);
         }
-        CacheMessage cacheMessage = JsonUtil.fromJson(msg.toString(), CacheMessage.class);
-        logger.debug("recevice a redis topic message, clear local cache, the cacheName is {}, the key is {}",
-                cacheMessage.getCacheName(), cacheMessage.getKey());
+    }
+
+    private void handle(CacheMessage cacheMessage) {
         if(cacheMessage == null) {
             return;
         }
-        redisCaffeineCacheManager.clearLocal(cacheMessage.getCacheName(), cacheMessage.getKey());
+        // 自己发出的消息不需要处理，本地缓存在写入时已是最新值
+        if (redisCaffeineCacheManager.getInstanceId().equals(cacheMessage.getOrigin())) {
+            return;
+        }
+        redisCaffeineCacheManager.getMetricsRecorder().recordInvalidationReceived(cacheMessage.getCacheName(),
+                cacheMessage.getTimestamp() > 0 ? System.currentTimeMillis() - cacheMessage.getTimestamp() : -1);
+        logger.debug("recevice a redis topic message, clear local cache, the cacheName is {}, the key is {}, the keys is {}",
+                cacheMessage.getCacheName(), cacheMessage.getKey(), cacheMessage.getKeys());
+        String cacheName = cacheMessage.getCacheName();
+        if (cacheMessage.getGeneration() != null) {
+            redisCaffeineCacheManager.updateGeneration(cacheName, cacheMessage.getGeneration());
+        }
+        CacheInvalidationDispatcher dispatcher = redisCaffeineCacheManager.getInvalidationDispatcher();
+        if (cacheMessage.getKeys() != null) {
+            // 按通道分组，每个通道提交一次
+            Map<Integer, List<Object>> laneKeys = new HashMap<>();
+            for (Object key : cacheMessage.getKeys()) {
+                laneKeys.computeIfAbsent(dispatcher.laneOf(cacheName, key), k -> new ArrayList<>()).add(key);
+            }
+            for (Map.Entry<Integer, List<Object>> entry : laneKeys.entrySet()) {
+                List<Object> keys = entry.getValue();
+                dispatcher.dispatch(entry.getKey(), cacheName, () -> {
+                    for (Object key : keys) {
+                        redisCaffeineCacheManager.clearLocal(cacheName, key);
+                    }
+                });
+            }
+            return;
+        }
+        Object key = cacheMessage.getKey();
+        if (key == null) {
+            // 清空整个本地缓存与各key的顺序无关，直接在接收线程中执行
+            redisCaffeineCacheManager.clearLocal(cacheName, null);
+            return;
+        }
+        dispatcher.dispatch(dispatcher.laneOf(cacheName, key), cacheName,
+                () -> redisCaffeineCacheManager.clearLocal(cacheName, key));
     }
 
-}
-
+}
\ No newline at end of file
@@ -0,0 +1,357 @@
+package lc.cy.cache;
+
+import lc.cy.cache.caffine.RedisCaffeineCache;
+import lc.cy.cache.caffine.RedisCaffeineCacheManager;
+import lc.cy.cache.config.CacheRedisCaffeineProperties;
+import lc.cy.util.RespConnection;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.connection.jedis.JedisConnectionFactory;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.serializer.StringRedisSerializer;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 类名称：ClientTrackingInvalidationListener <br>
+ * 类描述：基于redis 6的CLIENT TRACKING广播模式接收key失效通知，redis在key被修改、删除或过期时直接推送，
+ * 写入方不再需要发布变更消息。缓存的读写走连接池，无法使用默认的按读取记录模式，因此按缓存名前缀广播。
+ * 推送连接断开期间清空本地缓存并退回发布消息的方式，重连后恢复。只支持单机模式及String的key序列化。
+ * 未能开启或连接断开的节点登记在redis的有序集合中（带过期时间，节点宕机后自动移除），
+ * 任一节点登记期间所有节点都继续发布key的变更消息，保证未收到推送的节点仍能通过topic失效本地缓存 <br>
+ */
+public class ClientTrackingInvalidationListener implements InitializingBean, DisposableBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(ClientTrackingInvalidationListener.class);
+
+    private static final String INVALIDATE_CHANNEL = "__redis__:invalidate";
+
+    // 重连间隔（单位:毫秒）
+    private static final long RECONNECT_INTERVAL = 1000;
+
+    // 心跳间隔（单位:毫秒），超过3个间隔没有收到任何回复时认为连接已断开
+    private static final long PING_INTERVAL = 5000;
+
+    // 检查其他节点状态及刷新本节点登记的间隔（单位:毫秒）
+    static final long DEGRADED_CHECK_INTERVAL = 1000;
+
+    // 登记的有效期（单位:毫秒），节点宕机未移除登记时，超过有效期后其他节点恢复使用推送
+    private static final long DEGRADED_TTL = DEGRADED_CHECK_INTERVAL * 5;
+
+    private RedisCaffeineCacheManager redisCaffeineCacheManager;
+
+    private RedisConnectionFactory connectionFactory;
+
+    private RedisTemplate<Object, Object> redisTemplate;
+
+    // 未使用推送的节点登记在此有序集合中，score为登记的过期时间
+    private byte[] degradedKey;
+
+    private byte[] instanceId;
+
+    private String host;
+
+    private int port;
+
+    private String password;
+
+    private int database;
+
+    private int timeout;
+
+    // 已开启广播的key前缀
+    private Set<String> trackedPrefixes = ConcurrentHashMap.newKeySet();
+
+    private volatile boolean running;
+
+    private Thread worker;
+
+    private ScheduledExecutorService heartbeat;
+
+    private volatile RespConnection subscriber;
+
+    private volatile RespConnection tracking;
+
+    private volatile long subscriberId;
+
+    private volatile long lastReceived;
+
+    // 本节点的推送连接是否可用
+    private volatile boolean connected;
+
+    // 是否有节点（包括本节点）未使用推送，检查成功前按有处理
+    private volatile boolean anyDegraded = true;
+
+    public ClientTrackingInvalidationListener(RedisCaffeineCacheManager redisCaffeineCacheManager,
+                                              RedisTemplate<Object, Object> redisTemplate, CacheRedisCaffeineProperties.Redis redis) {
+        this.redisCaffeineCacheManager = redisCaffeineCacheManager;
+        this.redisTemplate = redisTemplate;
+        this.connectionFactory = redisTemplate.getConnectionFactory();
+        this.degradedKey = (redis.getTopic() + ":tracking-degraded").getBytes(StandardCharsets.UTF_8);
+        this.instanceId = redisCaffeineCacheManager.getInstanceId().getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        this.running = true;
+        this.heartbeat = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "redis-caffeine-tracking-heartbeat");
+            t.setDaemon(true);
+            return t;
+        });
+        // 无法开启推送时也需登记，使其他节点继续发布消息
+        this.heartbeat.scheduleWithFixedDelay(this::checkDegraded, 0, DEGRADED_CHECK_INTERVAL, TimeUnit.MILLISECONDS);
+        if (!(redisTemplate.getKeySerializer() instanceof StringRedisSerializer)) {
+            // 广播前缀及推送的key都是序列化后的字节，只有String序列化时才能与缓存名前缀对应
+            logger.warn("client tracking only supports StringRedisSerializer as key serializer, use topic message instead.");
+            return;
+        }
+        if (!(connectionFactory instanceof JedisConnectionFactory)) {
+            logger.warn("client tracking only supports jedis connection factory, use topic message instead.");
+            return;
+        }
+        JedisConnectionFactory jedisConnectionFactory = (JedisConnectionFactory) connectionFactory;
+        if (jedisConnectionFactory.isRedisClusterAware() || jedisConnectionFactory.isRedisSentinelAware()) {
+            logger.warn("client tracking only supports standalone redis, use topic message instead.");
+            return;
+        }
+        this.host = jedisConnectionFactory.getHostName();
+        this.port = jedisConnectionFactory.getPort();
+        this.password = jedisConnectionFactory.getPassword();
+        this.database = jedisConnectionFactory.getDatabase();
+        this.timeout = jedisConnectionFactory.getTimeout();
+        redisCaffeineCacheManager.addCacheCreationListener(this::track);
+        this.heartbeat.scheduleWithFixedDelay(this::ping, PING_INTERVAL, PING_INTERVAL, TimeUnit.MILLISECONDS);
+        this.worker = new Thread(this::run, "redis-caffeine-tracking");
+        this.worker.setDaemon(true);
+        this.worker.start();
+    }
+
+    private void run() {
+        while (running) {
+            try {
+                connect();
+                listen();
+            } catch (IOException | RuntimeException e) {
+                if (!running) {
+                    break;
+                }
+                logger.warn("client tracking connection lost, fall back to topic message and reconnect later", e);
+            } finally {
+                disconnect();
+            }
+            if (!running) {
+                break;
+            }
+            try {
+                Thread.sleep(RECONNECT_INTERVAL);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+    }
+
+    private void connect() throws IOException {
+        RespConnection subscriber = new RespConnection(host, port, timeout);
+        this.subscriber = subscriber;
+        subscriber.init(password, database);
+        this.subscriberId = (Long) subscriber.command("CLIENT", "ID");
+        subscriber.command("SUBSCRIBE", INVALIDATE_CHANNEL);
+        RespConnection tracking = new RespConnection(host, port, timeout);
+        this.tracking = tracking;
+        tracking.init(password, database);
+        trackedPrefixes.clear();
+        for (RedisCaffeineCache cache : redisCaffeineCacheManager.getCaches()) {
+            track(cache);
+        }
+        subscriber.setReadTimeout(0);
+        lastReceived = System.currentTimeMillis();
+        // 断开期间的变更已经丢失，订阅成功后清空本地缓存并重建布隆过滤器
+        redisCaffeineCacheManager.resetAllLocal();
+        // 登记在下次检查时移除，其他节点确认所有节点都已恢复后才停止发布消息
+        connected = true;
+        applyServerTracking();
+        logger.info("client tracking started, redis is {}:{}, redirect to client {}", host, port, subscriberId);
+    }
+
+    private void listen() throws IOException {
+        RespConnection subscriber = this.subscriber;
+        while (running) {
+            Object reply = subscriber.read();
+            lastReceived = System.currentTimeMillis();
+            if (!(reply instanceof List)) {
+                continue;
+            }
+            List<?> items = (List<?>) reply;
+            if (items.size() < 3 || !"message".equals(asString(items.get(0)))) {
+                continue;
+            }
+            Object payload = items.get(2);
+            if (payload == null) {
+                // FLUSHDB及FLUSHALL时推送空的key列表
+                logger.debug("recevice a flush invalidation, clear all local cache");
+                redisCaffeineCacheManager.clearAllLocal();
+            } else if (payload instanceof List) {
+                for (Object key : (List<?>) payload) {
+                    redisCaffeineCacheManager.clearLocalByRedisKey(asString(key));
+                }
+            }
+        }
+    }
+
+    private void track(RedisCaffeineCache cache) {
+        RespConnection tracking = this.tracking;
+        String prefix = cache.getRedisKeyPrefix();
+        if (tracking == null || !trackedPrefixes.add(prefix)) {
+            return;
+        }
+        List<Object> args = new ArrayList<>();
+        args.add("CLIENT");
+        args.add("TRACKING");
+        args.add("on");
+        args.add("REDIRECT");
+        args.add(subscriberId);
+        args.add("BCAST");
+        args.add("PREFIX");
+        args.add(prefix);
+        try {
+            tracking.command(args.toArray());
+        } catch (RespConnection.RespException e) {
+            // 与已有前缀重叠时，已有前缀的通知已经包含了该缓存的key
+            logger.warn("enable client tracking failed, the prefix is:{}, the reason is:{}", prefix, e.getMessage());
+        } catch (IOException e) {
+            logger.warn("enable client tracking failed, the prefix is:{}", prefix, e);
+            RespConnection subscriber = this.subscriber;
+            if (subscriber != null) {
+                subscriber.close();
+            }
+        }
+    }
+
+    private void ping() {
+        RespConnection subscriber = this.subscriber;
+        RespConnection tracking = this.tracking;
+        if (subscriber == null || tracking == null) {
+            return;
+        }
+        try {
+            // 订阅状态下的PING回复由监听线程读取
+            subscriber.send("PING");
+            tracking.command("PING");
+            if (System.currentTimeMillis() - lastReceived > PING_INTERVAL * 3) {
+                throw new IOException("no reply from redis in " + PING_INTERVAL * 3 + "ms");
+            }
+        } catch (IOException e) {
+            logger.warn("client tracking heartbeat failed, reconnect", e);
+            subscriber.close();
+        }
+    }
+
+    private void disconnect() {
+        boolean wasConnected = connected;
+        connected = false;
+        applyServerTracking();
+        RespConnection subscriber = this.subscriber;
+        RespConnection tracking = this.tracking;
+        this.subscriber = null;
+        this.tracking = null;
+        if (subscriber != null) {
+            subscriber.close();
+        }
+        // 关闭tracking连接后redis停止推送
+        if (tracking != null) {
+            tracking.close();
+        }
+        if (running) {
+            redisCaffeineCacheManager.resetAllLocal();
+            if (wasConnected) {
+                // 与定时检查在同一线程中执行，立即登记
+                heartbeat.execute(this::checkDegraded);
+                // 其他节点最多一个检查间隔后才发现本节点已断开，期间的写入没有发布消息，再清空一次
+                heartbeat.schedule(redisCaffeineCacheManager::resetAllLocal, DEGRADED_CHECK_INTERVAL * 2, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    /**
+     * @description 刷新本节点的登记并检查是否有节点未使用推送，有则所有节点继续发布key的变更消息
+     * @version 1.0.0
+     */
+    private void checkDegraded() {
+        long now = System.currentTimeMillis();
+        try {
+            Long count = redisTemplate.execute((RedisCallback<Long>) connection -> {
+                if (connected) {
+                    connection.zRem(degradedKey, instanceId);
+                } else {
+                    connection.zAdd(degradedKey, now + DEGRADED_TTL, instanceId);
+                    connection.pExpire(degradedKey, DEGRADED_TTL);
+                }
+                // 移除已过期的登记
+                connection.zRemRangeByScore(degradedKey, Double.NEGATIVE_INFINITY, now);
+                return connection.zCard(degradedKey);
+            });
+            anyDegraded = count == null || count > 0;
+        } catch (RuntimeException e) {
+            // 无法确认其他节点的状态时按有节点未使用推送处理
+            anyDegraded = true;
+            logger.warn("check client tracking degraded nodes failed", e);
+        }
+        applyServerTracking();
+    }
+
+    private synchronized void applyServerTracking() {
+        redisCaffeineCacheManager.setServerTracking(connected && !anyDegraded);
+    }
+
+    long getSubscriberId() {
+        return subscriberId;
+    }
+
+    private static String asString(Object value) {
+        if (value instanceof byte[]) {
+            return new String((byte[]) value, StandardCharsets.UTF_8);
+        }
+        return value == null ? null : value.toString();
+    }
+
+    @Override
+    public void destroy() {
+        running = false;
+        if (heartbeat != null) {
+            heartbeat.shutdownNow();
+            try {
+                // 等待执行中的检查结束，否则其登记可能在下面移除之后写入，其他节点要等登记过期才恢复使用推送
+                heartbeat.awaitTermination(DEGRADED_CHECK_INTERVAL, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        RespConnection subscriber = this.subscriber;
+        if (subscriber != null) {
+            subscriber.close();
+        }
+        if (worker != null) {
+            worker.interrupt();
+        }
+        try {
+            // 节点下线，不再需要其他节点为其发布消息
+            redisTemplate.execute((RedisCallback<Long>) connection -> connection.zRem(degradedKey, instanceId));
+        } catch (RuntimeException e) {
+            logger.warn("remove client tracking degraded mark failed, the reason is:{}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,315 @@
+package lc.cy.cache;
+
+import lc.cy.cache.caffine.CacheMessagePublisher;
+import lc.cy.cache.caffine.RedisCaffeineCacheManager;
+import lc.cy.cache.config.CacheRedisCaffeineProperties;
+import lc.cy.util.RespConnection;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.connection.jedis.JedisConnectionFactory;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 类名称：StreamInvalidationListener <br>
+ * 类描述：基于redis stream接收缓存变更消息，写入方XADD并分批裁剪，裁剪时记录最后一条被裁剪的消息id，
+ * 各节点用独立连接XREAD阻塞批量读取并记录最后读取的id，连接断开重连后从该id继续读取，断开期间的消息不会丢失。
+ * 重连后或读取积压时发现最后读取的id之后的消息已被裁剪，则清空全部本地缓存。
+ * 默认同时发布到topic，未读取stream的节点仍能收到消息；读取stream的节点开始读取后取消topic订阅，同一条消息只处理一次。只支持单机模式 <br>
+ */
+public class StreamInvalidationListener implements InitializingBean, DisposableBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(StreamInvalidationListener.class);
+
+    // 重连间隔（单位:毫秒）
+    private static final long RECONNECT_INTERVAL = 1000;
+
+    private RedisCaffeineCacheManager redisCaffeineCacheManager;
+
+    private RedisConnectionFactory connectionFactory;
+
+    private CaffineChangeMessageListener messageListener;
+
+    private String streamKey;
+
+    private long maxLen;
+
+    private int readCount;
+
+    private long block;
+
+    private boolean streamOnly;
+
+    private String topic;
+
+    // 与messageListener一起订阅topic的容器，开始读取stream后取消订阅
+    private RedisMessageListenerContainer topicContainer;
+
+    private volatile boolean topicUnsubscribed;
+
+    private String host;
+
+    private int port;
+
+    private String password;
+
+    private int database;
+
+    private int timeout;
+
+    private volatile boolean running;
+
+    private Thread worker;
+
+    private volatile RespConnection connection;
+
+    // 最后处理的消息id，为空时从当前最新的消息之后开始读取
+    private volatile String lastId;
+
+    private final LongAdder receivedCount = new LongAdder();
+
+    private final LongAdder gapCount = new LongAdder();
+
+    public StreamInvalidationListener(RedisCaffeineCacheManager redisCaffeineCacheManager, RedisConnectionFactory connectionFactory,
+                                      CaffineChangeMessageListener messageListener, CacheRedisCaffeineProperties.Redis redis) {
+        this.redisCaffeineCacheManager = redisCaffeineCacheManager;
+        this.connectionFactory = connectionFactory;
+        this.messageListener = messageListener;
+        this.streamKey = redis.resolveStreamKey();
+        this.maxLen = redis.getStream().getMaxLen();
+        this.readCount = redis.getStream().getReadCount() > 0 ? redis.getStream().getReadCount() : 500;
+        this.block = redis.getStream().getBlock() > 0 ? redis.getStream().getBlock() : 1000;
+        this.streamOnly = redis.getStream().isOnly();
+        this.topic = redis.getTopic();
+    }
+
+    /**
+     * @param topicContainer 已用同一个messageListener订阅topic的容器
+     * @description 开始读取stream后在该容器中取消topic订阅，停止读取时恢复，避免写入方同时发布到topic的消息被重复处理
+     * @version 1.0.0
+     */
+    public void setTopicContainer(RedisMessageListenerContainer topicContainer) {
+        this.topicContainer = topicContainer;
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        if (!(connectionFactory instanceof JedisConnectionFactory)) {
+            logger.warn("stream invalidation only supports jedis connection factory, use topic message instead.");
+            return;
+        }
+        JedisConnectionFactory jedisConnectionFactory = (JedisConnectionFactory) connectionFactory;
+        if (jedisConnectionFactory.isRedisClusterAware() || jedisConnectionFactory.isRedisSentinelAware()) {
+            logger.warn("stream invalidation only supports standalone redis, use topic message instead.");
+            return;
+        }
+        this.host = jedisConnectionFactory.getHostName();
+        this.port = jedisConnectionFactory.getPort();
+        this.password = jedisConnectionFactory.getPassword();
+        this.database = jedisConnectionFactory.getDatabase();
+        this.timeout = jedisConnectionFactory.getTimeout();
+        this.running = true;
+        this.worker = new Thread(this::run, "redis-caffeine-stream");
+        this.worker.setDaemon(true);
+        this.worker.start();
+    }
+
+    private void run() {
+        while (running) {
+            try {
+                connect();
+                listen();
+            } catch (IOException | RuntimeException e) {
+                if (!running) {
+                    break;
+                }
+                logger.warn("stream invalidation connection lost, reconnect later, the last id is:{}", lastId, e);
+            } finally {
+                RespConnection connection = this.connection;
+                this.connection = null;
+                if (connection != null) {
+                    connection.close();
+                }
+            }
+            if (!running) {
+                break;
+            }
+            try {
+                Thread.sleep(RECONNECT_INTERVAL);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+    }
+
+    private void connect() throws IOException {
+        RespConnection connection = new RespConnection(host, port, timeout);
+        this.connection = connection;
+        connection.init(password, database);
+        // 阻塞读取期间不能触发读超时
+        connection.setReadTimeout((int) (timeout + block));
+        if (lastId == null) {
+            // 首次连接从当前最新的消息之后开始读取
+            lastId = latestId(connection);
+        } else {
+            checkGap(connection);
+        }
+        // 开始读取后再切换写入方式，此前写入topic的消息仍由topic监听器处理
+        redisCaffeineCacheManager.getMessagePublisher().setStream(streamKey, maxLen, streamOnly);
+        if (topicContainer != null && !topicUnsubscribed) {
+            // 断线重连后从最后读取的id补读，不再需要topic；开始读取前收到的topic消息已经处理
+            topicContainer.removeMessageListener(messageListener, new ChannelTopic(topic));
+            topicUnsubscribed = true;
+        }
+        logger.info("stream invalidation started, redis is {}:{}, the stream is:{}, the last id is:{}", host, port, streamKey, lastId);
+    }
+
+    private void listen() throws IOException {
+        RespConnection connection = this.connection;
+        while (running) {
+            Object reply = connection.command("XREAD", "COUNT", readCount, "BLOCK", block, "STREAMS", streamKey, lastId);
+            if (!(reply instanceof List)) {
+                // 阻塞超时没有新消息
+                continue;
+            }
+            List<?> streams = (List<?>) reply;
+            if (streams.isEmpty()) {
+                continue;
+            }
+            List<?> entries = (List<?>) ((List<?>) streams.get(0)).get(1);
+            if (entries.size() >= Math.min(readCount, maxLen)) {
+                // 积压较多时检查未读的消息是否已被裁剪。发生裁剪后stream中至少保留maxLen条，返回的消息不足时说明没有遗漏
+                checkGap(connection);
+            }
+            for (Object entry : entries) {
+                List<?> item = (List<?>) entry;
+                String id = asString(item.get(0));
+                List<?> fields = (List<?>) item.get(1);
+                for (int i = 0; i + 1 < fields.size(); i += 2) {
+                    if (Arrays.equals(CacheMessagePublisher.STREAM_FIELD, (byte[]) fields.get(i))) {
+                        messageListener.receive((byte[]) fields.get(i + 1));
+                    }
+                }
+                lastId = id;
+                receivedCount.increment();
+            }
+        }
+    }
+
+    /**
+     * 写入方记录的最后一条被裁剪的消息id在最后读取的id之后时，有未读的消息被裁剪，无法判断影响了哪些缓存，清空全部本地缓存。
+     * 只裁剪了已读取的消息（包括最后读取的那条）时不视为遗漏。读取积压时若裁剪已越过本次XREAD返回的第一条消息，
+     * 无法区分此前是否有未读的消息被裁剪，按遗漏处理
+     */
+    private void checkGap(RespConnection connection) throws IOException {
+        Object reply = connection.command("XRANGE", streamKey, "-", "+", "COUNT", 1);
+        String oldestId = reply instanceof List && !((List<?>) reply).isEmpty()
+                ? asString(((List<?>) ((List<?>) reply).get(0)).get(0)) : null;
+        String current = this.lastId;
+        if (oldestId == null) {
+            // stream被删除（如redis重启且未持久化）时无法确认是否有遗漏
+            if (!"0-0".equals(current)) {
+                onGap(current, null);
+                lastId = "0-0";
+            }
+            return;
+        }
+        String trimmedId = asString(connection.command("GET", streamKey + CacheMessagePublisher.STREAM_TRIMMED_SUFFIX));
+        boolean gap = trimmedId != null
+                ? compareId(trimmedId, current) > 0
+                // 没有裁剪记录（如旧版本的写入方使用MAXLEN ~裁剪）时无法确认，最早的消息在最后读取的id之后即视为遗漏
+                : compareId(oldestId, current) > 0;
+        if (gap) {
+            onGap(current, oldestId);
+            // 从裁剪后最早的消息开始继续读取
+            lastId = previousId(oldestId);
+        }
+    }
+
+    private void onGap(String lastId, String oldestId) {
+        gapCount.increment();
+        logger.warn("stream invalidation gap detected, clear all local cache, the last id is:{}, the oldest id is:{}", lastId, oldestId);
+        redisCaffeineCacheManager.resetAllLocal();
+    }
+
+    private String latestId(RespConnection connection) throws IOException {
+        Object reply = connection.command("XREVRANGE", streamKey, "+", "-", "COUNT", 1);
+        if (reply instanceof List && !((List<?>) reply).isEmpty()) {
+            return asString(((List<?>) ((List<?>) reply).get(0)).get(0));
+        }
+        return "0-0";
+    }
+
+    static int compareId(String left, String right) {
+        long[] l = parseId(left);
+        long[] r = parseId(right);
+        int result = Long.compareUnsigned(l[0], r[0]);
+        return result != 0 ? result : Long.compareUnsigned(l[1], r[1]);
+    }
+
+    private static String previousId(String id) {
+        long[] parsed = parseId(id);
+        if (parsed[1] > 0) {
+            return parsed[0] + "-" + (parsed[1] - 1);
+        }
+        return parsed[0] > 0 ? (parsed[0] - 1) + "-" + Long.MAX_VALUE : "0-0";
+    }
+
+    private static long[] parseId(String id) {
+        int index = id.indexOf('-');
+        if (index < 0) {
+            return new long[]{Long.parseUnsignedLong(id), 0};
+        }
+        return new long[]{Long.parseUnsignedLong(id.substring(0, index)), Long.parseUnsignedLong(id.substring(index + 1))};
+    }
+
+    private static String asString(Object value) {
+        if (value instanceof byte[]) {
+            return new String((byte[]) value, StandardCharsets.UTF_8);
+        }
+        return value == null ? null : value.toString();
+    }
+
+    public String getLastId() {
+        return lastId;
+    }
+
+    public long getReceivedCount() {
+        return receivedCount.sum();
+    }
+
+    /**
+     * 发现消息被裁剪而清空本地缓存的次数
+     */
+    public long getGapCount() {
+        return gapCount.sum();
+    }
+
+    @Override
+    public void destroy() {
+        running = false;
+        if (topicUnsubscribed) {
+            topicContainer.addMessageListener(messageListener, new ChannelTopic(topic));
+            topicUnsubscribed = false;
+        }
+        // 之后的消息发布到topic
+        redisCaffeineCacheManager.getMessagePublisher().setStream(null, maxLen, streamOnly);
+        RespConnection connection = this.connection;
+        if (connection != null) {
+            connection.close();
+        }
+        if (worker != null) {
+            worker.interrupt();
+        }
+    }
+}
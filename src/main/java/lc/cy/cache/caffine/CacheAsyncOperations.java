@@ -0,0 +1,111 @@
+package lc.cy.cache.caffine;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import lc.cy.cache.config.CacheRedisCaffeineProperties;
+import org.springframework.cache.Cache.ValueWrapper;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * 类名称：CacheAsyncOperations <br>
+ * 类描述：单个缓存的异步接口，本地缓存命中时直接返回已完成的future，访问redis在有界线程池中执行，
+ * 线程池已满时返回失败的future，不在调用线程中访问redis <br>
+ */
+class CacheAsyncOperations {
+
+    private final RedisCaffeineCache cache;
+
+    private final AsyncCache<Object, Object> asyncCaffeineCache;
+
+    // 访问redis的线程池
+    private final Executor executor;
+
+    CacheAsyncOperations(RedisCaffeineCache cache, AsyncCache<Object, Object> asyncCaffeineCache, Executor executor) {
+        this.cache = cache;
+        this.asyncCaffeineCache = asyncCaffeineCache;
+        this.executor = executor;
+    }
+
+    /**
+     * @param redis
+     * @description 异步接口使用的有界线程池，队列满时拒绝，避免阻塞的redis访问占用公共的ForkJoinPool
+     * @version 1.0.0
+     */
+    static ThreadPoolExecutor newExecutor(CacheRedisCaffeineProperties.Redis redis) {
+        int poolSize = Math.max(1, redis.getAsyncPoolSize());
+        AtomicInteger threadNumber = new AtomicInteger(1);
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(poolSize, poolSize, 60L, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(Math.max(1, redis.getAsyncQueueCapacity())), r -> {
+            Thread t = new Thread(r, "redis-caffeine-async-" + threadNumber.getAndIncrement());
+            t.setDaemon(true);
+            return t;
+        }, new ThreadPoolExecutor.AbortPolicy());
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    /**
+     * @param key
+     * @description 异步获取缓存，同一个key并发的读取共用一次redis访问，未命中时返回null
+     * @version 1.0.0
+     */
+    CompletableFuture<ValueWrapper> get(Object key) {
+        CompletableFuture<Object> future = asyncCaffeineCache.get(key,
+                (k, ignored) -> supply(() -> cache.toLocal(cache.readRedis(k))));
+        return future.thenApply(cache::wrapLocal);
+    }
+
+    /**
+     * @param key
+     * @param valueLoader 两级缓存都未命中时执行的异步加载
+     * @description 异步获取缓存，未命中时执行valueLoader并写入缓存，同一个key并发的加载共用一次
+     * @version 1.0.0
+     */
+    <T> CompletableFuture<T> get(Object key, Supplier<CompletableFuture<T>> valueLoader) {
+        CompletableFuture<Object> future = asyncCaffeineCache.get(key, (k, ignored) ->
+                supply(() -> cache.readRedis(k))
+                        .thenCompose(value -> {
+                            if (value != null) {
+                                return CompletableFuture.completedFuture(value);
+                            }
+                            return valueLoader.get().thenApplyAsync(loaded -> cache.writeLoaded(k, loaded), executor);
+                        }).thenApply(cache::toLocal));
+        return future.thenApply(localValue -> (T) cache.unwrapLocal(localValue));
+    }
+
+    CompletableFuture<Void> put(Object key, Object value) {
+        return supply(() -> {
+            cache.put(key, value);
+            return null;
+        });
+    }
+
+    CompletableFuture<Void> evict(Object key) {
+        return supply(() -> {
+            cache.evict(key);
+            return null;
+        });
+    }
+
+    /**
+     * @param supplier
+     * @description 在线程池中执行，线程池已满时返回失败的future
+     * @version 1.0.0
+     */
+    private <T> CompletableFuture<T> supply(Supplier<T> supplier) {
+        try {
+            return CompletableFuture.supplyAsync(supplier, executor);
+        } catch (RejectedExecutionException e) {
+            CompletableFuture<T> failed = new CompletableFuture<>();
+            failed.completeExceptionally(e);
+            return failed;
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package lc.cy.cache.caffine;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * 类名称：CacheInvalidationDispatcher <br>
+ * 类描述：缓存变更消息的分发，按(cacheName, key)的哈希分配到固定数量的单线程通道，同一个key的消息按接收顺序处理，
+ * 不同通道并行处理。通道队列已满时不丢弃消息，改为清空该缓存的全部本地缓存 <br>
+ */
+public class CacheInvalidationDispatcher {
+
+    private final Logger logger = LoggerFactory.getLogger(CacheInvalidationDispatcher.class);
+
+    private ThreadPoolExecutor[] lanes;
+
+    // 通道已满时的处理，参数为cacheName
+    private Consumer<String> overflowHandler;
+
+    private final LongAdder dispatchedCount = new LongAdder();
+
+    private final LongAdder completedCount = new LongAdder();
+
+    private final LongAdder overflowCount = new LongAdder();
+
+    CacheInvalidationDispatcher(int laneCount, int laneCapacity, Consumer<String> overflowHandler) {
+        this.overflowHandler = overflowHandler;
+        int count = laneCount > 0 ? laneCount : Runtime.getRuntime().availableProcessors();
+        int capacity = laneCapacity > 0 ? laneCapacity : 10000;
+        this.lanes = new ThreadPoolExecutor[count];
+        for (int i = 0; i < count; i++) {
+            String threadName = "redis-caffeine-listener-" + i;
+            lanes[i] = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(capacity), r -> {
+                Thread t = new Thread(r, threadName);
+                t.setDaemon(true);
+                return t;
+            }, new ThreadPoolExecutor.AbortPolicy());
+        }
+    }
+
+    /**
+     * @param cacheName
+     * @param key
+     * @description 同一个(cacheName, key)总是分配到同一个通道
+     * @version 1.0.0
+     */
+    public int laneOf(String cacheName, Object key) {
+        int hash = 31 * cacheName.hashCode() + (key == null ? 0 : key.hashCode());
+        hash ^= hash >>> 16;
+        return (hash & Integer.MAX_VALUE) % lanes.length;
+    }
+
+    /**
+     * @param lane
+     * @param cacheName
+     * @param task
+     * @description 在指定通道中执行，通道已满时清空该缓存的全部本地缓存
+     * @version 1.0.0
+     */
+    public void dispatch(int lane, String cacheName, Runnable task) {
+        try {
+            lanes[lane].execute(() -> {
+                try {
+                    task.run();
+                } catch (RuntimeException e) {
+                    logger.warn("handle cache message failed, the cacheName is:{}", cacheName, e);
+                } finally {
+                    completedCount.increment();
+                }
+            });
+            dispatchedCount.increment();
+        } catch (RejectedExecutionException e) {
+            overflowCount.increment();
+            logger.warn("invalidation lane {} is full, clear all local cache, the cacheName is:{}", lane, cacheName);
+            overflowHandler.accept(cacheName);
+        }
+    }
+
+    public int getLaneCount() {
+        return lanes.length;
+    }
+
+    /**
+     * 所有通道中等待处理的消息数
+     */
+    public int getQueueDepth() {
+        int depth = 0;
+        for (ThreadPoolExecutor lane : lanes) {
+            depth += lane.getQueue().size();
+        }
+        return depth;
+    }
+
+    /**
+     * 单个通道中等待处理的最大消息数
+     */
+    public int getMaxLaneDepth() {
+        int max = 0;
+        for (ThreadPoolExecutor lane : lanes) {
+            max = Math.max(max, lane.getQueue().size());
+        }
+        return max;
+    }
+
+    public long getDispatchedCount() {
+        return dispatchedCount.sum();
+    }
+
+    /**
+     * 已处理完成的消息数，与dispatchedCount的差即正在处理及等待处理的消息数
+     */
+    public long getCompletedCount() {
+        return completedCount.sum();
+    }
+
+    /**
+     * 通道已满导致清空整个本地缓存的次数
+     */
+    public long getOverflowCount() {
+        return overflowCount.sum();
+    }
+
+    void shutdown() {
+        for (ThreadPoolExecutor lane : lanes) {
+            lane.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,196 @@
+package lc.cy.cache.caffine;
+
+import com.github.benmanes.caffeine.cache.Policy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.ToLongFunction;
+
+/**
+ * 类名称：CacheMemoryBudget <br>
+ * 类描述：本地缓存的内存预算。配置了总预算时按比例或命中情况在各缓存间分配最大权重；
+ * 开启堆内存检查时，老年代GC后的使用率超过阈值则按比例缩小所有缓存的容量，低于阈值后逐步恢复 <br>
+ */
+class CacheMemoryBudget {
+
+    private final Logger logger = LoggerFactory.getLogger(CacheMemoryBudget.class);
+
+    private static final double SHRINK_RATIO = 0.8;
+
+    private static final double RECOVER_RATIO = 1.1;
+
+    private static final double MIN_FACTOR = 0.1;
+
+    // 低于阈值的此比例后才开始恢复，避免来回抖动
+    private static final double RECOVER_THRESHOLD_RATIO = 0.8;
+
+    // 总预算（单位:字节），小于等于0时各缓存使用自身的配置
+    private long totalWeight;
+
+    private boolean adaptive;
+
+    private Map<String, Double> shares;
+
+    private double heapPressureThreshold;
+
+    // 未配置总预算时每个缓存配置的最大容量
+    private ToLongFunction<String> configuredMaximum;
+
+    // 老年代内存池
+    private MemoryPoolMXBean tenuredPool;
+
+    // 当前的容量系数
+    private volatile double factor = 1.0;
+
+    // 上次分配时各缓存的访问次数
+    private Map<String, Long> lastRequests = new HashMap<>();
+
+    // 上次分配时各缓存的命中次数（本地及redis）
+    private Map<String, Long> lastHits = new HashMap<>();
+
+    CacheMemoryBudget(long totalWeight, boolean adaptive, Map<String, Double> shares, double heapPressureThreshold,
+                      ToLongFunction<String> configuredMaximum) {
+        this.totalWeight = totalWeight;
+        this.adaptive = adaptive;
+        this.shares = shares == null ? new HashMap<>() : shares;
+        this.heapPressureThreshold = heapPressureThreshold;
+        this.configuredMaximum = configuredMaximum;
+        if (heapPressureThreshold > 0) {
+            for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+                // 只有老年代同时支持usage和collectionUsage阈值
+                if (pool.getType() == MemoryType.HEAP && pool.isUsageThresholdSupported()
+                        && pool.isCollectionUsageThresholdSupported()) {
+                    this.tenuredPool = pool;
+                }
+            }
+        }
+    }
+
+    boolean isGlobal() {
+        return totalWeight > 0;
+    }
+
+    /**
+     * @param cacheCount 包含新缓存在内的缓存数量
+     * @description 新建缓存的初始最大权重，创建后由rebalance重新分配
+     * @version 1.0.0
+     */
+    long initialMaximum(int cacheCount) {
+        return Math.max(1L, (long) (totalWeight / Math.max(1, cacheCount) * factor));
+    }
+
+    /**
+     * @param caches
+     * @description 检查堆内存并重新设置各缓存的最大容量
+     * @version 1.0.0
+     */
+    synchronized void rebalance(Collection<RedisCaffeineCache> allCaches) {
+        updateFactor();
+        // 堆外存储的缓存由自身的堆外容量限制
+        List<RedisCaffeineCache> caches = new ArrayList<>(allCaches.size());
+        for (RedisCaffeineCache cache : allCaches) {
+            if (!cache.isOffHeap()) {
+                caches.add(cache);
+            }
+        }
+        Map<String, Long> maximums = isGlobal() ? allocate(caches) : null;
+        for (RedisCaffeineCache cache : caches) {
+            Optional<Policy.Eviction<Object, Object>> eviction = cache.getCaffeineCache().policy().eviction();
+            if (!eviction.isPresent()) {
+                continue;
+            }
+            long base = maximums == null ? configuredMaximum.applyAsLong(cache.getName()) : maximums.get(cache.getName());
+            if (base <= 0) {
+                continue;
+            }
+            long maximum = Math.max(1L, (long) (base * factor));
+            if (eviction.get().getMaximum() != maximum) {
+                eviction.get().setMaximum(maximum);
+            }
+        }
+    }
+
+    private Map<String, Long> allocate(Collection<RedisCaffeineCache> caches) {
+        Map<String, Long> maximums = new HashMap<>();
+        if (caches.isEmpty()) {
+            return maximums;
+        }
+        if (!adaptive) {
+            double totalShare = 0;
+            for (RedisCaffeineCache cache : caches) {
+                totalShare += share(cache.getName());
+            }
+            for (RedisCaffeineCache cache : caches) {
+                maximums.put(cache.getName(), (long) (totalWeight * share(cache.getName()) / totalShare));
+            }
+            return maximums;
+        }
+        // 一半平均分配保证冷门缓存可用，另一半按上个周期的访问次数×命中率（即本地及redis的命中次数）分配，
+        // 命中率低的缓存（多数访问需要执行加载）增加本地容量的收益小，分到的少
+        Map<String, Double> scores = new HashMap<>();
+        double totalScore = 0;
+        for (RedisCaffeineCache cache : caches) {
+            long hits = cache.getL1HitCount() + cache.getL2HitCount();
+            long requests = hits + cache.getMissCount();
+            Long lastHit = lastHits.put(cache.getName(), hits);
+            Long lastRequest = lastRequests.put(cache.getName(), requests);
+            long hitDelta = Math.max(0L, hits - (lastHit == null ? 0L : lastHit));
+            long requestDelta = Math.max(0L, requests - (lastRequest == null ? 0L : lastRequest));
+            double hitRate = requestDelta == 0 ? 0 : Math.min(1.0, (double) hitDelta / requestDelta);
+            double score = requestDelta * hitRate;
+            scores.put(cache.getName(), score);
+            totalScore += score;
+        }
+        long fixed = totalWeight / 2 / caches.size();
+        long adaptiveWeight = totalWeight - fixed * caches.size();
+        for (RedisCaffeineCache cache : caches) {
+            long extra = totalScore == 0 ? adaptiveWeight / caches.size()
+                    : (long) (adaptiveWeight * scores.get(cache.getName()) / totalScore);
+            maximums.put(cache.getName(), fixed + extra);
+        }
+        return maximums;
+    }
+
+    private double share(String cacheName) {
+        Double share = shares.get(cacheName);
+        return share == null || share <= 0 ? 1.0 : share;
+    }
+
+    private void updateFactor() {
+        if (tenuredPool == null) {
+            return;
+        }
+        MemoryUsage usage = tenuredPool.getCollectionUsage();
+        if (usage == null) {
+            usage = tenuredPool.getUsage();
+        }
+        long max = usage.getMax() > 0 ? usage.getMax() : Runtime.getRuntime().maxMemory();
+        double ratio = (double) usage.getUsed() / max;
+        double current = this.factor;
+        double next = current;
+        if (ratio > heapPressureThreshold) {
+            next = Math.max(MIN_FACTOR, current * SHRINK_RATIO);
+        } else if (ratio < heapPressureThreshold * RECOVER_THRESHOLD_RATIO && current < 1.0) {
+            next = Math.min(1.0, current * RECOVER_RATIO);
+        }
+        if (next != current) {
+            this.factor = next;
+            logger.info("adjust local cache capacity, the heap usage after gc is:{}, the capacity factor is:{}",
+                    String.format("%.2f", ratio), String.format("%.2f", next));
+        }
+    }
+
+    double getFactor() {
+        return factor;
+    }
+}
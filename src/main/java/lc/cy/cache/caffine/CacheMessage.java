@@ -1,6 +1,7 @@
 package lc.cy.cache.caffine;
 
 import java.io.Serializable;
+import java.util.List;
 
 public class CacheMessage implements Serializable {
 
@@ -10,6 +11,26 @@ public class CacheMessage implements Serializable {
 
     private Object key;
 
+    /**
+     * 批量发送时合并后的key列表，key和keys都为空时表示清空整个缓存
+     */
+    private List<Object> keys;
+
+    /**
+     * 发送消息的RedisCaffeineCacheManager实例id，接收方据此忽略自己发出的消息
+     */
+    private String origin;
+
+    /**
+     * 开启命名空间版本时清空消息携带的新代号
+     */
+    private Long generation;
+
+    /**
+     * 消息发送时间，毫秒，用于统计消息从发送到接收的延迟
+     */
+    private long timestamp;
+
     public CacheMessage() {
 
     }
@@ -20,6 +41,12 @@ public class CacheMessage implements Serializable {
         this.key = key;
     }
 
+    public CacheMessage(String cacheName, List<Object> keys) {
+        super();
+        this.cacheName = cacheName;
+        this.keys = keys;
+    }
+
     public String getCacheName() {
         return cacheName;
     }
@@ -36,4 +63,36 @@ public class CacheMessage implements Serializable {
         this.key = key;
     }
 
+    public List<Object> getKeys() {
+        return keys;
+    }
+
+    public void setKeys(List<Object> keys) {
+        this.keys = keys;
+    }
+
+    public String getOrigin() {
+        return origin;
+    }
+
+    public void setOrigin(String origin) {
+        this.origin = origin;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public void setTimestamp(long timestamp) {
+        this.timestamp = timestamp;
+    }
+
+    public Long getGeneration() {
+        return generation;
+    }
+
+    public void setGeneration(Long generation) {
+        this.generation = generation;
+    }
+
 }
\ No newline at end of file
@@ -0,0 +1,362 @@
+package lc.cy.cache.caffine;
+
+import lc.cy.cache.codec.CacheMessageCodec;
+import lc.cy.cache.codec.JsonCacheMessageCodec;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.ReturnType;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+
+import java.nio.charset.StandardCharsets;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 类名称：CacheMessagePublisher <br>
+ * 类描述：缓存变更消息发布器，publishWindow大于0时在窗口期内缓冲消息，按cacheName合并去重后批量发送 <br>
+ */
+public class CacheMessagePublisher {
+
+    private final Logger logger = LoggerFactory.getLogger(CacheMessagePublisher.class);
+
+    // stream中保存消息的字段
+    public static final byte[] STREAM_FIELD = "m".getBytes(StandardCharsets.UTF_8);
+
+    // stream裁剪标记key的后缀，保存最后一条被裁剪的消息id
+    public static final String STREAM_TRIMMED_SUFFIX = ":trimmed";
+
+    // 写入stream，超出最大长度的部分累计到一批后再裁剪（与MAXLEN ~相近），裁剪前记录最后一条被裁剪的消息id，
+    // 读取方据此准确判断未读的消息是否被裁剪。ARGV为字段、消息、最大长度、裁剪批量及topic，topic为空时不发布
+    private static final DefaultRedisScript<byte[]> STREAM_SCRIPT = new DefaultRedisScript<>("local id = redis.call('xadd', KEYS[1], '*', ARGV[1], ARGV[2]) "
+            + "local excess = redis.call('xlen', KEYS[1]) - tonumber(ARGV[3]) "
+            + "if excess >= tonumber(ARGV[4]) then "
+            + "local trimmed = redis.call('xrange', KEYS[1], '-', '+', 'count', excess) "
+            + "redis.call('set', KEYS[2], trimmed[#trimmed][1]) "
+            + "redis.call('xtrim', KEYS[1], 'maxlen', ARGV[3]) end "
+            + "if ARGV[5] then redis.call('publish', ARGV[5], ARGV[2]) end "
+            + "return id", byte[].class);
+
+    private static final byte[] STREAM_SCRIPT_BYTES = STREAM_SCRIPT.getScriptAsString().getBytes(StandardCharsets.UTF_8);
+
+    private RedisTemplate<Object, Object> redisTemplate;
+
+    private String topic;
+
+    private byte[] rawTopic;
+
+    private CacheMessageCodec codec;
+
+    // 消息来源实例id
+    private String origin;
+
+    // 缓冲窗口（单位:毫秒），小于等于0时同步发送
+    private long publishWindow;
+
+    // 缓冲的key数量达到此值时立即发送
+    private int publishBatchSize;
+
+    private ScheduledExecutorService scheduler;
+
+    // stream模式下写入的stream，为空时发布到topic
+    private volatile byte[] rawStreamKey;
+
+    private byte[] rawStreamTrimmedKey;
+
+    private byte[] rawStreamMaxLen;
+
+    private byte[] rawStreamTrimBatch;
+
+    // 写入stream时是否不再发布到topic
+    private boolean streamOnly;
+
+    private final Object bufferLock = new Object();
+
+    // cacheName -> 待发送的key，保持写入顺序
+    private Map<String, Set<Object>> bufferedKeys = new LinkedHashMap<>();
+
+    // 待发送清空消息的cacheName -> 新代号
+    private Map<String, Long> bufferedClears = new LinkedHashMap<>();
+
+    private int bufferedCount;
+
+    private final AtomicBoolean flushScheduled = new AtomicBoolean(false);
+
+    private final LongAdder publishCount = new LongAdder();
+
+    private final LongAdder publishedKeyCount = new LongAdder();
+
+    private final LongAdder publishNanos = new LongAdder();
+
+    private final LongAdder publishFailureCount = new LongAdder();
+
+    public CacheMessagePublisher(RedisTemplate<Object, Object> redisTemplate, String topic,
+                                 long publishWindow, int publishBatchSize) {
+        this(redisTemplate, topic, null, new JsonCacheMessageCodec(redisTemplate), publishWindow, publishBatchSize);
+    }
+
+    public CacheMessagePublisher(RedisTemplate<Object, Object> redisTemplate, String topic, String origin,
+                                 CacheMessageCodec codec, long publishWindow, int publishBatchSize) {
+        this.redisTemplate = redisTemplate;
+        this.topic = topic;
+        this.rawTopic = topic.getBytes(StandardCharsets.UTF_8);
+        this.codec = codec;
+        this.origin = origin;
+        this.publishWindow = publishWindow;
+        this.publishBatchSize = publishBatchSize > 0 ? publishBatchSize : Integer.MAX_VALUE;
+        if (publishWindow > 0) {
+            this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "redis-caffeine-publisher");
+                t.setDaemon(true);
+                return t;
+            });
+            this.scheduler.scheduleWithFixedDelay(this::flush, publishWindow, publishWindow, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * @param message
+     * @description 发布缓存变更消息，未开启批量时同步发送，发送失败时抛出异常
+     * @version 1.0.0
+     */
+    public void publish(CacheMessage message) {
+        message.setOrigin(origin);
+        if (scheduler == null) {
+            message.setTimestamp(System.currentTimeMillis());
+            try {
+                send(Collections.singletonList(message), message.getKeys() == null ? 1 : message.getKeys().size());
+            } catch (RuntimeException e) {
+                publishFailureCount.increment();
+                throw e;
+            }
+            return;
+        }
+        boolean full;
+        synchronized (bufferLock) {
+            String cacheName = message.getCacheName();
+            if (message.getKeys() != null) {
+                if (!bufferedClears.containsKey(cacheName)) {
+                    Set<Object> buffered = bufferedKeys.computeIfAbsent(cacheName, k -> new LinkedHashSet<>());
+                    for (Object key : message.getKeys()) {
+                        if (buffered.add(key)) {
+                            bufferedCount++;
+                        }
+                    }
+                }
+            } else if (message.getKey() == null) {
+                // 清空消息覆盖该缓存所有待发送的key
+                Set<Object> dropped = bufferedKeys.remove(cacheName);
+                if (dropped != null) {
+                    bufferedCount -= dropped.size();
+                }
+                if (!bufferedClears.containsKey(cacheName)) {
+                    bufferedCount++;
+                }
+                Long previous = bufferedClears.get(cacheName);
+                Long generation = message.getGeneration();
+                if (previous == null || (generation != null && generation > previous)) {
+                    bufferedClears.put(cacheName, generation);
+                }
+            } else if (!bufferedClears.containsKey(cacheName)
+                    && bufferedKeys.computeIfAbsent(cacheName, k -> new LinkedHashSet<>()).add(message.getKey())) {
+                bufferedCount++;
+            }
+            full = bufferedCount >= publishBatchSize;
+        }
+        if (full && flushScheduled.compareAndSet(false, true)) {
+            scheduler.execute(() -> {
+                flushScheduled.set(false);
+                flush();
+            });
+        }
+    }
+
+    /**
+     * @param message
+     * @description 未开启批量时编码消息，由调用方与数据写入合并在一次请求中发送，发送后调用recordInline；
+     * 开启批量时返回null，调用方仍使用publish放入缓冲区
+     * @version 1.0.0
+     */
+    byte[] encodeInline(CacheMessage message) {
+        if (scheduler != null || rawStreamKey != null) {
+            return null;
+        }
+        message.setOrigin(origin);
+        message.setTimestamp(System.currentTimeMillis());
+        return codec.encode(Collections.singletonList(message));
+    }
+
+    /**
+     * 记录一条与数据写入合并发送的消息
+     */
+    void recordInline(int keyCount, boolean success) {
+        if (success) {
+            publishCount.increment();
+            publishedKeyCount.add(keyCount);
+        } else {
+            publishFailureCount.increment();
+        }
+    }
+
+    byte[] getRawTopic() {
+        return rawTopic;
+    }
+
+    /**
+     * @param streamKey
+     * @param maxLen     stream保留的近似最大消息数
+     * @param streamOnly 为true时只写入stream，否则同时发布到topic，供未读取stream的节点接收
+     * @description 切换为写入stream，由stream监听器在开始读取后设置
+     * @version 1.0.0
+     */
+    public void setStream(String streamKey, long maxLen, boolean streamOnly) {
+        this.rawStreamMaxLen = String.valueOf(maxLen).getBytes(StandardCharsets.UTF_8);
+        // 超出的消息累计到最大长度的1/10（最多100条）后再裁剪，避免每次写入都裁剪
+        this.rawStreamTrimBatch = String.valueOf(Math.max(1, Math.min(100, maxLen / 10))).getBytes(StandardCharsets.UTF_8);
+        this.streamOnly = streamOnly;
+        this.rawStreamTrimmedKey = streamKey == null ? null : (streamKey + STREAM_TRIMMED_SUFFIX).getBytes(StandardCharsets.UTF_8);
+        this.rawStreamKey = streamKey == null ? null : streamKey.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 发送当前缓冲的所有消息，在定时线程中执行，发送失败时只记录不抛出
+     */
+    public void flush() {
+        Map<String, Set<Object>> keys;
+        Map<String, Long> clears;
+        int count;
+        synchronized (bufferLock) {
+            if (bufferedCount == 0) {
+                return;
+            }
+            keys = bufferedKeys;
+            clears = bufferedClears;
+            count = bufferedCount;
+            bufferedKeys = new LinkedHashMap<>();
+            bufferedClears = new LinkedHashMap<>();
+            bufferedCount = 0;
+        }
+        long timestamp = System.currentTimeMillis();
+        List<CacheMessage> batch = new ArrayList<>(keys.size() + clears.size());
+        for (Map.Entry<String, Long> entry : clears.entrySet()) {
+            CacheMessage message = new CacheMessage(entry.getKey(), (Object) null);
+            message.setGeneration(entry.getValue());
+            message.setOrigin(origin);
+            message.setTimestamp(timestamp);
+            batch.add(message);
+        }
+        for (Map.Entry<String, Set<Object>> entry : keys.entrySet()) {
+            CacheMessage message = new CacheMessage(entry.getKey(), new ArrayList<>(entry.getValue()));
+            message.setOrigin(origin);
+            message.setTimestamp(timestamp);
+            batch.add(message);
+        }
+        try {
+            send(batch, count);
+        } catch (Exception e) {
+            publishFailureCount.increment();
+            logger.error("publish cache message failed, the topic is:{}", topic, e);
+        }
+    }
+
+    private void send(List<CacheMessage> messages, int keyCount) {
+        long start = System.nanoTime();
+        try {
+            byte[] body = codec.encode(messages);
+            byte[] streamKey = this.rawStreamKey;
+            if (streamKey != null) {
+                byte[][] keysAndArgs = streamOnly
+                        ? new byte[][]{streamKey, rawStreamTrimmedKey, STREAM_FIELD, body, rawStreamMaxLen, rawStreamTrimBatch}
+                        : new byte[][]{streamKey, rawStreamTrimmedKey, STREAM_FIELD, body, rawStreamMaxLen, rawStreamTrimBatch, rawTopic};
+                redisTemplate.execute((RedisCallback<Object>) connection -> evalStream(connection, keysAndArgs));
+            } else {
+                redisTemplate.execute((RedisCallback<Long>) connection -> connection.publish(rawTopic, body));
+            }
+            publishCount.increment();
+            publishedKeyCount.add(keyCount);
+        } finally {
+            publishNanos.add(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * 使用EVALSHA执行写入stream的脚本，redis中没有缓存该脚本（如重启或执行过SCRIPT FLUSH）时发送完整脚本
+     */
+    private static Object evalStream(RedisConnection connection, byte[][] keysAndArgs) {
+        try {
+            return connection.evalSha(STREAM_SCRIPT.getSha1(), ReturnType.VALUE, 2, keysAndArgs);
+        } catch (RuntimeException e) {
+            if (!isNoScript(e)) {
+                throw e;
+            }
+            return connection.eval(STREAM_SCRIPT_BYTES, ReturnType.VALUE, 2, keysAndArgs);
+        }
+    }
+
+    private static boolean isNoScript(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause.getMessage() != null && cause.getMessage().contains("NOSCRIPT")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 停止定时发送，并发送剩余的消息
+     */
+    public void shutdown() {
+        if (scheduler == null) {
+            return;
+        }
+        scheduler.shutdown();
+        try {
+            scheduler.awaitTermination(publishWindow * 2, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+    }
+
+    /**
+     * 已发送的消息数，批量模式下一批计为一次
+     */
+    public long getPublishCount() {
+        return publishCount.sum();
+    }
+
+    /**
+     * 已发送的key数，与publishCount的比值即平均批大小
+     */
+    public long getPublishedKeyCount() {
+        return publishedKeyCount.sum();
+    }
+
+    /**
+     * 发送消息的累计耗时，单位纳秒
+     */
+    public long getPublishNanos() {
+        return publishNanos.sum();
+    }
+
+    public long getPublishFailureCount() {
+        return publishFailureCount.sum();
+    }
+
+    public String getTopic() {
+        return topic;
+    }
+}
@@ -0,0 +1,70 @@
+package lc.cy.cache.caffine;
+
+/**
+ * 类名称：CacheMetricsRecorder <br>
+ * 类描述：二级缓存的指标记录接口，默认不记录，引入micrometer时由自动配置注册实现 <br>
+ */
+public interface CacheMetricsRecorder {
+
+    String OPERATION_GET = "get";
+
+    String OPERATION_SET = "set";
+
+    String OPERATION_DEL = "del";
+
+    CacheMetricsRecorder NONE = new CacheMetricsRecorder() {
+    };
+
+    /**
+     * 缓存实例创建后注册该缓存的指标
+     *
+     * @param cache
+     */
+    default void bindCache(RedisCaffeineCache cache) {
+    }
+
+    /**
+     * 注册缓存变更消息发布的指标
+     *
+     * @param publisher
+     */
+    default void bindPublisher(CacheMessagePublisher publisher) {
+    }
+
+    /**
+     * 注册缓存变更消息分发通道的指标
+     *
+     * @param dispatcher
+     */
+    default void bindDispatcher(CacheInvalidationDispatcher dispatcher) {
+    }
+
+    /**
+     * 记录一次redis访问耗时
+     *
+     * @param cacheName
+     * @param operation get/set/del
+     * @param nanos
+     */
+    default void recordRedis(String cacheName, String operation, long nanos) {
+    }
+
+    /**
+     * 记录一次valueLoader加载耗时
+     *
+     * @param cacheName
+     * @param nanos
+     * @param success
+     */
+    default void recordLoad(String cacheName, long nanos, boolean success) {
+    }
+
+    /**
+     * 记录收到一条其他节点的缓存变更消息
+     *
+     * @param cacheName
+     * @param lagMillis 消息从发送到接收的耗时，发送方未携带时间戳时为负数
+     */
+    default void recordInvalidationReceived(String cacheName, long lagMillis) {
+    }
+}
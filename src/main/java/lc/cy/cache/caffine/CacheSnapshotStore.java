@@ -0,0 +1,228 @@
+package lc.cy.cache.caffine;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.util.SerializationUtils;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.Serializable;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * 类名称：CacheSnapshotStore <br>
+ * 类描述：本地缓存快照，停机（或定时）时把每个缓存最热的条目写入本地文件，启动时通过内存映射读取并回填本地缓存。
+ * 文件格式：魔数+创建时间+缓存数，每个缓存为名称、代号、条目数及各条目的key和序列化后的值。
+ * 快照超过maxAge或缓存代号已变化时丢弃，开启verify时只保存key（值为空），读取时值通过MGET从redis重新读取 <br>
+ */
+class CacheSnapshotStore {
+
+    private final Logger logger = LoggerFactory.getLogger(CacheSnapshotStore.class);
+
+    private static final int MAGIC = 0x52435331;
+
+    private static final byte KEY_STRING = 1;
+
+    private static final byte KEY_SERIALIZED = 2;
+
+    private static final byte[] EMPTY = new byte[0];
+
+    private Path path;
+
+    // 每个缓存保存的最大条目数
+    private int maxEntries;
+
+    // 快照的最大有效时间（单位:毫秒）
+    private long maxAge;
+
+    private boolean verify;
+
+    private RedisSerializer<Object> valueSerializer;
+
+    CacheSnapshotStore(String path, int maxEntries, long maxAge, boolean verify, RedisSerializer<Object> valueSerializer) {
+        this.path = Paths.get(path);
+        this.maxEntries = maxEntries;
+        this.maxAge = maxAge;
+        this.verify = verify;
+        this.valueSerializer = valueSerializer;
+    }
+
+    /**
+     * @param caches
+     * @description 写入快照，先写临时文件再替换，避免停机过程中写出不完整的文件
+     * @version 1.0.0
+     */
+    synchronized void save(Collection<RedisCaffeineCache> caches) {
+        long start = System.currentTimeMillis();
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        int total = 0;
+        try {
+            if (path.getParent() != null) {
+                Files.createDirectories(path.getParent());
+            }
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp), 64 * 1024))) {
+                out.writeInt(MAGIC);
+                out.writeLong(start);
+                out.writeInt(caches.size());
+                for (RedisCaffeineCache cache : caches) {
+                    Map<byte[], byte[]> encoded = verify ? encodeKeys(cache) : encodeEntries(cache);
+                    writeBytes(out, cache.getName().getBytes(StandardCharsets.UTF_8));
+                    out.writeLong(cache.getGeneration());
+                    out.writeInt(encoded.size());
+                    for (Map.Entry<byte[], byte[]> entry : encoded.entrySet()) {
+                        writeBytes(out, entry.getKey());
+                        writeBytes(out, entry.getValue());
+                    }
+                    total += encoded.size();
+                }
+            }
+            Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            logger.info("save local cache snapshot, the path is:{}, entries:{}, cost:{}ms", path, total,
+                    System.currentTimeMillis() - start);
+        } catch (IOException | RuntimeException e) {
+            logger.warn("save local cache snapshot failed, the path is:{}", path, e);
+        }
+    }
+
+    /**
+     * @param cacheResolver 按名称获取缓存，不允许创建时返回null
+     * @description 读取快照并回填本地缓存
+     * @version 1.0.0
+     */
+    void load(Function<String, RedisCaffeineCache> cacheResolver) {
+        if (!Files.isRegularFile(path)) {
+            return;
+        }
+        long start = System.currentTimeMillis();
+        int total = 0;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.remaining() < 16 || buffer.getInt() != MAGIC) {
+                logger.warn("unknown local cache snapshot format, ignore it, the path is:{}", path);
+                return;
+            }
+            long age = System.currentTimeMillis() - buffer.getLong();
+            if (maxAge > 0 && age > maxAge) {
+                logger.info("local cache snapshot is too old, ignore it, the path is:{}, age:{}ms", path, age);
+                return;
+            }
+            int cacheCount = buffer.getInt();
+            for (int i = 0; i < cacheCount; i++) {
+                String cacheName = new String(readBytes(buffer), StandardCharsets.UTF_8);
+                long generation = buffer.getLong();
+                int count = buffer.getInt();
+                RedisCaffeineCache cache = cacheResolver.apply(cacheName);
+                // 快照之后缓存被清空过时整个缓存的快照作废
+                boolean usable = cache != null && cache.getGeneration() == generation;
+                Map<Object, Object> entries = new LinkedHashMap<>(usable ? count * 2 : 0);
+                for (int j = 0; j < count; j++) {
+                    byte[] key = readBytes(buffer);
+                    byte[] value = readBytes(buffer);
+                    if (!usable) {
+                        continue;
+                    }
+                    Object decodedKey = decodeKey(key);
+                    // 开启verify时保存的快照没有值，关闭verify后读取时跳过这些条目
+                    Object decodedValue = verify || value.length == 0 ? null : valueSerializer.deserialize(value);
+                    if (decodedKey != null && (verify || decodedValue != null)) {
+                        entries.put(decodedKey, decodedValue);
+                    }
+                }
+                if (usable && !entries.isEmpty()) {
+                    total += verify ? cache.reload(entries.keySet()) : cache.restore(entries);
+                }
+            }
+            logger.info("load local cache snapshot, the path is:{}, age:{}ms, entries:{}, cost:{}ms", path, age, total,
+                    System.currentTimeMillis() - start);
+        } catch (IOException | RuntimeException e) {
+            logger.warn("load local cache snapshot failed, the path is:{}", path, e);
+        }
+    }
+
+    private Map<byte[], byte[]> encodeEntries(RedisCaffeineCache cache) {
+        Map<Object, Object> entries = cache.hottest(maxEntries);
+        Map<byte[], byte[]> encoded = new LinkedHashMap<>(entries.size() * 2);
+        for (Map.Entry<Object, Object> entry : entries.entrySet()) {
+            byte[] key = encodeKey(entry.getKey());
+            byte[] value = valueSerializer.serialize(entry.getValue());
+            if (key != null && value != null && value.length > 0) {
+                encoded.put(key, value);
+            }
+        }
+        return encoded;
+    }
+
+    /**
+     * 开启verify时值从redis重新读取，只保存key，值写为空
+     */
+    private Map<byte[], byte[]> encodeKeys(RedisCaffeineCache cache) {
+        Collection<Object> keys = cache.hottestKeys(maxEntries);
+        Map<byte[], byte[]> encoded = new LinkedHashMap<>(keys.size() * 2);
+        for (Object key : keys) {
+            byte[] encodedKey = encodeKey(key);
+            if (encodedKey != null) {
+                encoded.put(encodedKey, EMPTY);
+            }
+        }
+        return encoded;
+    }
+
+    private static byte[] encodeKey(Object key) {
+        if (key instanceof String) {
+            byte[] bytes = ((String) key).getBytes(StandardCharsets.UTF_8);
+            byte[] encoded = new byte[bytes.length + 1];
+            encoded[0] = KEY_STRING;
+            System.arraycopy(bytes, 0, encoded, 1, bytes.length);
+            return encoded;
+        }
+        if (key instanceof Serializable) {
+            byte[] bytes = SerializationUtils.serialize(key);
+            byte[] encoded = new byte[bytes.length + 1];
+            encoded[0] = KEY_SERIALIZED;
+            System.arraycopy(bytes, 0, encoded, 1, bytes.length);
+            return encoded;
+        }
+        return null;
+    }
+
+    private static Object decodeKey(byte[] encoded) {
+        if (encoded.length == 0) {
+            return null;
+        }
+        if (encoded[0] == KEY_STRING) {
+            return new String(encoded, 1, encoded.length - 1, StandardCharsets.UTF_8);
+        }
+        byte[] bytes = new byte[encoded.length - 1];
+        System.arraycopy(encoded, 1, bytes, 0, bytes.length);
+        return SerializationUtils.deserialize(bytes);
+    }
+
+    private static void writeBytes(DataOutputStream out, byte[] bytes) throws IOException {
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static byte[] readBytes(MappedByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0 || length > buffer.remaining()) {
+            // 文件被截断或损坏，不按读到的长度分配内存
+            throw new IllegalStateException("corrupted snapshot, the length is:" + length + ", remaining:" + buffer.remaining());
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return bytes;
+    }
+}
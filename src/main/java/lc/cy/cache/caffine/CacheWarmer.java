@@ -0,0 +1,154 @@
+package lc.cy.cache.caffine;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 类名称：CacheWarmer <br>
+ * 类描述：启动时预热本地缓存，按缓存当前代的key前缀SCAN（集群模式下逐个master节点），每批key通过MGET（按slot拆分）读取后回填，
+ * 缓存达到最大容量后停止。在有界的后台线程池中执行，所有缓存共用一个每秒key数量的限速。
+ * 只有字符串类型的key能从redis的key还原，非字符串key的缓存预热无效 <br>
+ */
+public class CacheWarmer {
+
+    private final Logger logger = LoggerFactory.getLogger(CacheWarmer.class);
+
+    private RedisKeyCleaner keyScanner;
+
+    private RedisSerializer<Object> keySerializer;
+
+    // 每秒最多预热的key数量，小于等于0时不限速
+    private long rateLimit;
+
+    private ThreadPoolExecutor executor;
+
+    private final AtomicLong scanned = new AtomicLong();
+
+    private volatile long start;
+
+    // 各缓存已回填的条目数
+    private final Map<String, Long> loaded = new ConcurrentHashMap<>();
+
+    // 预热失败的缓存及原因
+    private final Map<String, String> failures = new ConcurrentHashMap<>();
+
+    private volatile boolean started;
+
+    private volatile boolean ready;
+
+    CacheWarmer(RedisKeyCleaner keyScanner, RedisSerializer<Object> keySerializer, int threads, long rateLimit) {
+        this.keyScanner = keyScanner;
+        this.keySerializer = keySerializer;
+        this.rateLimit = rateLimit;
+        int poolSize = threads > 0 ? threads : 1;
+        AtomicInteger threadNumber = new AtomicInteger(1);
+        this.executor = new ThreadPoolExecutor(poolSize, poolSize, 10L, TimeUnit.SECONDS, new LinkedBlockingQueue<>(1000), r -> {
+            Thread t = new Thread(r, "redis-caffeine-warmup-" + threadNumber.getAndIncrement());
+            t.setDaemon(true);
+            return t;
+        });
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * @param caches
+     * @description 在后台线程池中预热缓存，全部结束（包括失败）后ready为true
+     * @version 1.0.0
+     */
+    CompletableFuture<Void> warmUp(Collection<RedisCaffeineCache> caches) {
+        this.started = true;
+        this.start = System.currentTimeMillis();
+        List<CompletableFuture<Void>> futures = new ArrayList<>(caches.size());
+        for (RedisCaffeineCache cache : caches) {
+            futures.add(CompletableFuture.runAsync(() -> warmUp(cache), executor));
+        }
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).whenComplete((r, e) -> {
+            this.ready = true;
+            logger.info("warm up local cache finished, the loaded entries is:{}, cost:{}ms", loaded,
+                    System.currentTimeMillis() - start);
+        });
+    }
+
+    private void warmUp(RedisCaffeineCache cache) {
+        String name = cache.getName();
+        String prefix = cache.getCurrentKeyPrefix();
+        AtomicLong count = new AtomicLong();
+        try {
+            keyScanner.scanWhile(prefix.concat("*"), rawKeys -> {
+                if (cache.isFull()) {
+                    return false;
+                }
+                List<Object> keys = new ArrayList<>(rawKeys.size());
+                for (byte[] rawKey : rawKeys) {
+                    Object redisKey = keySerializer.deserialize(rawKey);
+                    String key = redisKey == null ? null : redisKey.toString();
+                    if (key != null && key.startsWith(prefix) && !HotKeyManager.isReplicaKey(key)) {
+                        keys.add(key.substring(prefix.length()));
+                    }
+                }
+                count.addAndGet(cache.reload(keys));
+                loaded.put(name, count.get());
+                throttle(scanned.addAndGet(rawKeys.size()));
+                return !Thread.currentThread().isInterrupted();
+            });
+            loaded.put(name, count.get());
+        } catch (RuntimeException e) {
+            failures.put(name, String.valueOf(e.getMessage()));
+            logger.warn("warm up local cache failed, the cache name is:{}", name, e);
+        }
+    }
+
+    private void throttle(long total) {
+        if (rateLimit <= 0) {
+            return;
+        }
+        long sleep = total * 1000 / rateLimit - (System.currentTimeMillis() - start);
+        if (sleep > 0) {
+            try {
+                Thread.sleep(sleep);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * 是否已开始预热
+     */
+    public boolean isStarted() {
+        return started;
+    }
+
+    /**
+     * 预热是否已结束
+     */
+    public boolean isReady() {
+        return ready;
+    }
+
+    public Map<String, Long> getLoaded() {
+        return Collections.unmodifiableMap(loaded);
+    }
+
+    public Map<String, String> getFailures() {
+        return Collections.unmodifiableMap(failures);
+    }
+
+    void shutdown() {
+        executor.shutdownNow();
+    }
+}
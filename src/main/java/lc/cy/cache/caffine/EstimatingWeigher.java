@@ -0,0 +1,215 @@
+package lc.cy.cache.caffine;
+
+import com.github.benmanes.caffeine.cache.Weigher;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 类名称：EstimatingWeigher <br>
+ * 类描述：按64位jvm（开启压缩指针）估算key和值占用的堆内存字节数，只用于按权重淘汰，不追求精确。
+ * 字符串、数组及集合按内容估算，集合只采样前若干个元素，其他对象按字段估算，嵌套层数有限制。
+ * 每个类的字段布局只反射一次，同一个类前若干个对象按字段估算后取平均值，之后直接使用平均值，不再逐个字段遍历 <br>
+ */
+public class EstimatingWeigher implements Weigher<Object, Object> {
+
+    public static final EstimatingWeigher INSTANCE = new EstimatingWeigher();
+
+    private static final int OBJECT_HEADER = 12;
+
+    private static final int ARRAY_HEADER = 16;
+
+    private static final int REFERENCE = 4;
+
+    // 缓存条目本身（caffeine节点）的开销
+    private static final int ENTRY_OVERHEAD = 64;
+
+    private static final int MAX_DEPTH = 3;
+
+    // 集合采样的元素个数
+    private static final int SAMPLE_SIZE = 16;
+
+    // 每个类的浅大小及需要继续估算的引用字段
+    private static final ClassValue<ClassLayout> LAYOUTS = new ClassValue<ClassLayout>() {
+        @Override
+        protected ClassLayout computeValue(Class<?> type) {
+            return new ClassLayout(type);
+        }
+    };
+
+    @Override
+    public int weigh(Object key, Object value) {
+        long size = ENTRY_OVERHEAD + estimate(key, 0) + estimate(value, 0);
+        return (int) Math.min(size, Integer.MAX_VALUE);
+    }
+
+    /**
+     * @param value
+     * @description 估算对象占用的字节数
+     * @version 1.0.0
+     */
+    public long estimate(Object value) {
+        return estimate(value, 0);
+    }
+
+    private long estimate(Object value, int depth) {
+        if (value == null) {
+            return 0;
+        }
+        if (value instanceof String) {
+            // String对象+byte[]，latin1字符1字节，其他2字节
+            String str = (String) value;
+            return align(24) + align(ARRAY_HEADER + str.length() * (isLatin1(str) ? 1 : 2));
+        }
+        if (value instanceof Number || value instanceof Boolean || value instanceof Character) {
+            return 16 + (value instanceof Long || value instanceof Double ? 8 : 0);
+        }
+        Class<?> type = value.getClass();
+        if (type.isArray()) {
+            return estimateArray(value, depth);
+        }
+        if (value instanceof Collection) {
+            Collection<?> collection = (Collection<?>) value;
+            // 集合本身及每个元素的节点开销按32字节估算
+            return 48 + collection.size() * 32L + sample(collection.iterator(), collection.size(), depth);
+        }
+        if (value instanceof Map) {
+            Map<?, ?> map = (Map<?, ?>) value;
+            return 64 + map.size() * 48L + sample(map.keySet().iterator(), map.size(), depth)
+                    + sample(map.values().iterator(), map.size(), depth);
+        }
+        ClassLayout layout = LAYOUTS.get(type);
+        long size = layout.shallowSize;
+        if (depth >= MAX_DEPTH || layout.references.isEmpty()) {
+            return size;
+        }
+        long averageSize = layout.averageSize;
+        if (averageSize > 0) {
+            return averageSize;
+        }
+        for (Field field : layout.references) {
+            try {
+                size += estimate(field.get(value), depth + 1);
+            } catch (IllegalAccessException | RuntimeException e) {
+                size += REFERENCE;
+            }
+        }
+        layout.sample(size);
+        return size;
+    }
+
+    private long estimateArray(Object array, int depth) {
+        int length = Array.getLength(array);
+        Class<?> componentType = array.getClass().getComponentType();
+        if (componentType.isPrimitive()) {
+            return align(ARRAY_HEADER + (long) length * primitiveSize(componentType));
+        }
+        long size = align(ARRAY_HEADER + (long) length * REFERENCE);
+        if (depth >= MAX_DEPTH || length == 0) {
+            return size;
+        }
+        int sampled = Math.min(length, SAMPLE_SIZE);
+        long total = 0;
+        for (int i = 0; i < sampled; i++) {
+            total += estimate(Array.get(array, i), depth + 1);
+        }
+        return size + total * length / sampled;
+    }
+
+    private long sample(Iterator<?> iterator, int size, int depth) {
+        if (depth >= MAX_DEPTH || size == 0) {
+            return 0;
+        }
+        int sampled = 0;
+        long total = 0;
+        while (iterator.hasNext() && sampled < SAMPLE_SIZE) {
+            total += estimate(iterator.next(), depth + 1);
+            sampled++;
+        }
+        return sampled == 0 ? 0 : total * size / sampled;
+    }
+
+    private static boolean isLatin1(String str) {
+        for (int i = 0; i < str.length(); i++) {
+            if (str.charAt(i) > 0xFF) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int primitiveSize(Class<?> type) {
+        if (type == long.class || type == double.class) {
+            return 8;
+        }
+        if (type == int.class || type == float.class) {
+            return 4;
+        }
+        if (type == short.class || type == char.class) {
+            return 2;
+        }
+        return 1;
+    }
+
+    private static boolean isJdkClass(Class<?> type) {
+        String name = type.getName();
+        return name.startsWith("java.") || name.startsWith("javax.") || name.startsWith("sun.") || name.startsWith("jdk.");
+    }
+
+    private static long align(long size) {
+        return (size + 7) & ~7L;
+    }
+
+    private static class ClassLayout {
+
+        private long shallowSize;
+
+        private List<Field> references = new ArrayList<>();
+
+        // 已估算的对象数及总大小，达到采样数后计算平均值
+        private final AtomicLong sampledCount = new AtomicLong();
+
+        private final AtomicLong sampledSize = new AtomicLong();
+
+        // 同类对象的平均大小，0表示仍在采样
+        private volatile long averageSize;
+
+        ClassLayout(Class<?> type) {
+            long size = OBJECT_HEADER;
+            // jdk内部类不反射访问其字段，避免非法反射访问的警告
+            boolean jdkClass = isJdkClass(type);
+            for (Class<?> c = type; c != null && c != Object.class; c = c.getSuperclass()) {
+                for (Field field : c.getDeclaredFields()) {
+                    if (Modifier.isStatic(field.getModifiers())) {
+                        continue;
+                    }
+                    Class<?> fieldType = field.getType();
+                    if (fieldType.isPrimitive()) {
+                        size += primitiveSize(fieldType);
+                        continue;
+                    }
+                    size += REFERENCE;
+                    // 无法访问的字段（如jdk内部类）只计引用大小
+                    if (!jdkClass && !isJdkClass(c) && field.trySetAccessible()) {
+                        references.add(field);
+                    }
+                }
+            }
+            this.shallowSize = align(size);
+        }
+
+        void sample(long size) {
+            long total = sampledSize.addAndGet(size);
+            if (sampledCount.incrementAndGet() == SAMPLE_SIZE) {
+                averageSize = Math.max(shallowSize, total / SAMPLE_SIZE);
+            }
+        }
+    }
+}
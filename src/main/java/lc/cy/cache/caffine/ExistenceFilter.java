@@ -0,0 +1,148 @@
+package lc.cy.cache.caffine;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 类名称：ExistenceFilter <br>
+ * 类描述：缓存key的布隆过滤器，按key的toString（与redis key的组成一致）计算位置。只会置位不会清除，
+ * 因此只有误判存在，没有误判不存在：写入、其他节点的变更消息都会加入key，启动后需扫描redis中已有的key完成初始化，
+ * 初始化完成前不用于判断。删除的key不会移出，插入数量超过预期后误判率逐渐升高，只是拦截效果下降。
+ * 变更消息可能丢失时由缓存管理器替换为新的空过滤器并重新初始化 <br>
+ */
+class ExistenceFilter {
+
+    private static final int MAX_WORDS = 1 << 25;
+
+    private final AtomicLongArray bits;
+
+    // 位数，为64的倍数
+    private final long bitSize;
+
+    private final int hashCount;
+
+    private final long expectedKeys;
+
+    private final double fpp;
+
+    private final LongAdder insertCount = new LongAdder();
+
+    // 是否已完成初始化
+    private volatile boolean ready;
+
+    /**
+     * @param expectedKeys 预期的key数量
+     * @param fpp          预期数量下的误判率
+     */
+    ExistenceFilter(long expectedKeys, double fpp) {
+        this.expectedKeys = expectedKeys > 0 ? expectedKeys : 1000000;
+        double p = fpp > 0 && fpp < 1 ? fpp : 0.01;
+        this.fpp = p;
+        long size = (long) (-this.expectedKeys * Math.log(p) / (Math.log(2) * Math.log(2)));
+        // 位置由int哈希计算，位数不超过2^31
+        int words = (int) Math.min(MAX_WORDS, Math.max(1, (size + 63) / 64));
+        this.bits = new AtomicLongArray(words);
+        this.bitSize = (long) words * 64;
+        this.hashCount = Math.max(1, (int) Math.round((double) bitSize / this.expectedKeys * Math.log(2)));
+    }
+
+    /**
+     * @param key
+     * @description 加入key
+     * @version 1.0.0
+     */
+    void put(Object key) {
+        long hash = hash(key.toString());
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        boolean changed = false;
+        for (int i = 1; i <= hashCount; i++) {
+            long index = index(h1 + i * h2);
+            int word = (int) (index >>> 6);
+            long mask = 1L << index;
+            long current = bits.get(word);
+            if ((current & mask) == 0) {
+                bits.getAndAccumulate(word, mask, (left, right) -> left | right);
+                changed = true;
+            }
+        }
+        if (changed) {
+            insertCount.increment();
+        }
+    }
+
+    /**
+     * @param key
+     * @description key是否可能存在，返回false时key一定未写入过
+     * @version 1.0.0
+     */
+    boolean mightContain(Object key) {
+        long hash = hash(key.toString());
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 1; i <= hashCount; i++) {
+            long index = index(h1 + i * h2);
+            if ((bits.get((int) (index >>> 6)) & (1L << index)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @param key
+     * @description 已完成初始化且key一定不存在
+     * @version 1.0.0
+     */
+    boolean isAbsent(Object key) {
+        return ready && !mightContain(key);
+    }
+
+    boolean isReady() {
+        return ready;
+    }
+
+    void markReady() {
+        this.ready = true;
+    }
+
+    /**
+     * 置位发生变化的插入次数，近似于不同key的数量
+     */
+    long getApproximateCount() {
+        return insertCount.sum();
+    }
+
+    long getExpectedKeys() {
+        return expectedKeys;
+    }
+
+    /**
+     * 相同容量及误判率的空过滤器，用于丢失变更后重新初始化
+     */
+    ExistenceFilter newEmpty() {
+        return new ExistenceFilter(expectedKeys, fpp);
+    }
+
+    private long index(int combined) {
+        // 取非负后按位数取模
+        return (combined & Integer.MAX_VALUE) % bitSize;
+    }
+
+    /**
+     * 64位FNV-1a后再做一次混合，高低32位作为两个独立的哈希
+     */
+    private static long hash(String value) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < value.length(); i++) {
+            h ^= value.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
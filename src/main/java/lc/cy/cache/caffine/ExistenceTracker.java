@@ -0,0 +1,225 @@
+package lc.cy.cache.caffine;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+
+/**
+ * 类名称：ExistenceTracker <br>
+ * 类描述：单个缓存中redis里不存在的key的判断，包括key的布隆过滤器及不存在的key、空值的本地缓存，两者都未开启时不做任何判断。
+ * 保存不存在的结果前检查失效版本，读取redis期间该key发生过写入或失效时不保存 <br>
+ */
+class ExistenceTracker {
+
+    private static final Logger logger = LoggerFactory.getLogger(ExistenceTracker.class);
+
+    // 不存在的key的本地缓存标记，与缓存的空值区分
+    static final Object ABSENT = new Object();
+
+    private final String name;
+
+    private final InvalidationTombstones tombstones;
+
+    // key的布隆过滤器，未开启时为空
+    private volatile ExistenceFilter filter;
+
+    // 不存在的key及空值的本地缓存，值为ABSENT或NullValue，未开启时为空
+    private Cache<Object, Object> negativeCache;
+
+    // 分段计数，高并发下不争用同一个变量
+    private final LongAdder filterRejectCount = new LongAdder();
+
+    private final LongAdder negativeHitCount = new LongAdder();
+
+    ExistenceTracker(String name, InvalidationTombstones tombstones) {
+        this.name = name;
+        this.tombstones = tombstones;
+    }
+
+    void setFilter(ExistenceFilter filter) {
+        this.filter = filter;
+    }
+
+    void setNegativeCache(Cache<Object, Object> negativeCache) {
+        this.negativeCache = negativeCache;
+    }
+
+    /**
+     * 是否开启不存在的key及空值的本地缓存，开启时空值不保存在本地缓存中
+     */
+    boolean isNegativeCaching() {
+        return negativeCache != null;
+    }
+
+    /**
+     * @param key
+     * @description 布隆过滤器已初始化且判断redis中一定没有该key
+     * @version 1.0.0
+     */
+    boolean isFilteredOut(Object key) {
+        ExistenceFilter current = this.filter;
+        if (current != null && current.isAbsent(key)) {
+            filterRejectCount.increment();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * @param key
+     * @description 读取不存在的key及空值的本地缓存，redis中不存在时返回ABSENT，缓存的空值返回NullValue，未命中返回null
+     * @version 1.0.0
+     */
+    Object get(Object key) {
+        if (negativeCache == null) {
+            return null;
+        }
+        Object marker = negativeCache.getIfPresent(key);
+        if (marker != null) {
+            negativeHitCount.increment();
+        }
+        return marker;
+    }
+
+    /**
+     * @param key
+     * @param marker ABSENT或NullValue
+     * @param stamp  读取redis前的版本，之后该key发生过写入或失效时不保存
+     * @description 保存不存在的key或空值
+     * @version 1.0.0
+     */
+    void put(Object key, Object marker, long stamp) {
+        if (negativeCache == null) {
+            return;
+        }
+        negativeCache.put(key, marker);
+        if (tombstones.isStale(key, stamp)) {
+            negativeCache.asMap().remove(key, marker);
+        }
+    }
+
+    /**
+     * @param key
+     * @param nullValue
+     * @description 保存本节点写入或加载的空值，不检查失效版本
+     * @version 1.0.0
+     */
+    void putNull(Object key, Object nullValue) {
+        negativeCache.put(key, nullValue);
+    }
+
+    void invalidate(Object key) {
+        if (negativeCache != null) {
+            negativeCache.invalidate(key);
+        }
+    }
+
+    void invalidateAll() {
+        if (negativeCache != null) {
+            negativeCache.invalidateAll();
+        }
+    }
+
+    void invalidateIf(Predicate<Object> filter) {
+        if (negativeCache != null) {
+            negativeCache.asMap().keySet().removeIf(filter);
+        }
+    }
+
+    /**
+     * @param key
+     * @description key已由本节点写入redis，加入布隆过滤器并移除不存在的标记
+     * @version 1.0.0
+     */
+    void markExists(Object key) {
+        addToFilter(key);
+        if (negativeCache != null) {
+            // 使并发读取到的不存在结果不能保存
+            tombstones.invalidate(key);
+            negativeCache.invalidate(key);
+        }
+    }
+
+    /**
+     * @param key
+     * @description 其他节点写入或删除了该key，写入时redis中已存在，删除时多加入只会误判存在
+     * @version 1.0.0
+     */
+    void addToFilter(Object key) {
+        ExistenceFilter current = this.filter;
+        if (current != null) {
+            current.put(key);
+        }
+    }
+
+    /**
+     * @param prefix        当前代的key在redis中的完整前缀
+     * @param keyScanner
+     * @param keySerializer
+     * @description 扫描redis中当前代的key加入布隆过滤器，完成后开始用于判断。扫描期间写入的key由写入及变更消息加入
+     * @version 1.0.0
+     */
+    void prime(String prefix, RedisKeyCleaner keyScanner, RedisSerializer<Object> keySerializer) {
+        ExistenceFilter current = this.filter;
+        if (current == null || current.isReady()) {
+            return;
+        }
+        long start = System.currentTimeMillis();
+        keyScanner.scanWhile(prefix.concat("*"), rawKeys -> {
+            for (byte[] rawKey : rawKeys) {
+                Object redisKey = keySerializer.deserialize(rawKey);
+                String key = redisKey == null ? null : redisKey.toString();
+                if (key != null && key.startsWith(prefix) && !HotKeyManager.isReplicaKey(key)) {
+                    current.put(key.substring(prefix.length()));
+                }
+            }
+            // 过滤器已被重置时放弃本次扫描，由新的过滤器重新扫描
+            return !Thread.currentThread().isInterrupted() && this.filter == current;
+        });
+        if (Thread.currentThread().isInterrupted() || this.filter != current) {
+            return;
+        }
+        current.markReady();
+        if (current.getApproximateCount() > current.getExpectedKeys()) {
+            logger.warn("existence filter exceeds the expected keys, the false positive rate will rise, the cache name is:{}, the keys is:{}",
+                    this.name, current.getApproximateCount());
+        }
+        logger.info("existence filter ready, the cache name is:{}, the keys is:{}, cost:{}ms", this.name,
+                current.getApproximateCount(), System.currentTimeMillis() - start);
+    }
+
+    /**
+     * @description 替换为未初始化的空过滤器，之后需重新调用prime。变更消息丢失时其他节点写入的key未加入过滤器，
+     * 继续使用会误判不存在，重置后初始化完成前不用于判断。未开启时返回false
+     * @version 1.0.0
+     */
+    boolean resetFilter() {
+        ExistenceFilter current = this.filter;
+        if (current == null) {
+            return false;
+        }
+        this.filter = current.newEmpty();
+        return true;
+    }
+
+    boolean isFilterReady() {
+        ExistenceFilter current = this.filter;
+        return current != null && current.isReady();
+    }
+
+    long getFilterRejectCount() {
+        return filterRejectCount.sum();
+    }
+
+    long getNegativeHitCount() {
+        return negativeHitCount.sum();
+    }
+
+    long getNegativeSize() {
+        return negativeCache == null ? 0 : negativeCache.estimatedSize();
+    }
+}
@@ -0,0 +1,33 @@
+package lc.cy.cache.caffine;
+
+/**
+ * 类名称：ExpiryPolicy <br>
+ * 类描述：按key和值计算缓存过期时间的扩展接口，同一个缓存中可以同时存放短期和长期的数据。
+ * 本地缓存的过期时间不会超过redis中剩余的过期时间，注册为bean后由自动配置使用 <br>
+ */
+public interface ExpiryPolicy {
+
+    /**
+     * redis中的过期时间，单位毫秒，小于等于0时不过期
+     *
+     * @param cacheName
+     * @param key
+     * @param value         缓存的值，空值为null
+     * @param defaultExpire 配置的过期时间
+     */
+    default long redisExpire(String cacheName, Object key, Object value, long defaultExpire) {
+        return defaultExpire;
+    }
+
+    /**
+     * 本地缓存的过期时间，单位毫秒，小于等于0时不过期
+     *
+     * @param cacheName
+     * @param key
+     * @param value         缓存的值，空值为null
+     * @param defaultExpire 配置的expireAfterWrite，未配置时为expireAfterAccess
+     */
+    default long localExpire(String cacheName, Object key, Object value, long defaultExpire) {
+        return defaultExpire;
+    }
+}
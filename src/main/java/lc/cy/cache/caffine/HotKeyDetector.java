@@ -0,0 +1,149 @@
+package lc.cy.cache.caffine;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 类名称：HotKeyDetector <br>
+ * 类描述：基于count-min sketch的热点key检测，每次访问在4行计数器中各加1，取最小值作为访问次数的估计。
+ * 估计值达到阈值的key成为候选，由定时任务确认为热点；每个统计窗口结束时所有计数减半，访问减少的热点key随之移出。
+ * 为减少命中路径上对共享计数器的写入，阈值较大时按比例采样记录，阈值按同样比例缩小。
+ * 计数器的并发累加不加锁，少量丢失不影响判断 <br>
+ */
+class HotKeyDetector {
+
+    private static final long[] SEEDS = {0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L};
+
+    // 每行计数器的数量
+    private static final int WIDTH = 2048;
+
+    // 最大采样间隔，每次采样记录代表的访问次数
+    private static final int MAX_SAMPLE_INTERVAL = 16;
+
+    // 采样后阈值不低于此值，保证估计的精度
+    private static final int MIN_SAMPLED_THRESHOLD = 16;
+
+    private final int[][] table = new int[SEEDS.length][WIDTH];
+
+    // 每个统计窗口内采样记录次数的阈值
+    private long threshold;
+
+    // 每sampleInterval次访问记录一次
+    private int sampleInterval;
+
+    // 热点key的最大数量
+    private int maxHotKeys;
+
+    private final Set<Object> candidates = ConcurrentHashMap.newKeySet();
+
+    private final Set<Object> hotKeys = ConcurrentHashMap.newKeySet();
+
+    HotKeyDetector(long threshold, int maxHotKeys) {
+        this.sampleInterval = (int) Math.max(1, Math.min(MAX_SAMPLE_INTERVAL, threshold / MIN_SAMPLED_THRESHOLD));
+        this.threshold = Math.max(1, threshold / sampleInterval);
+        this.maxHotKeys = maxHotKeys > 0 ? maxHotKeys : 100;
+    }
+
+    /**
+     * @param key
+     * @description 记录一次访问，估计值达到阈值时加入候选
+     * @version 1.0.0
+     */
+    void record(Object key) {
+        if (sampleInterval > 1 && ThreadLocalRandom.current().nextInt(sampleInterval) != 0) {
+            return;
+        }
+        int hash = spread(key.hashCode());
+        int min = Integer.MAX_VALUE;
+        for (int i = 0; i < SEEDS.length; i++) {
+            int[] row = table[i];
+            int index = indexOf(hash, i);
+            int count = row[index];
+            if (count < Integer.MAX_VALUE) {
+                row[index] = ++count;
+            }
+            min = Math.min(min, count);
+        }
+        if (min >= threshold && candidates.size() < maxHotKeys && !hotKeys.contains(key)) {
+            candidates.add(key);
+        }
+    }
+
+    long estimate(Object key) {
+        int hash = spread(key.hashCode());
+        int min = Integer.MAX_VALUE;
+        for (int i = 0; i < SEEDS.length; i++) {
+            min = Math.min(min, table[i][indexOf(hash, i)]);
+        }
+        return min;
+    }
+
+    boolean isHot(Object key) {
+        return !hotKeys.isEmpty() && hotKeys.contains(key);
+    }
+
+    /**
+     * 统计窗口结束，所有计数减半
+     */
+    void age() {
+        for (int[] row : table) {
+            for (int i = 0; i < row.length; i++) {
+                row[i] >>>= 1;
+            }
+        }
+    }
+
+    /**
+     * 取出当前的候选key，热点数量已满时不再返回
+     */
+    List<Object> drainCandidates() {
+        List<Object> result = new ArrayList<>(candidates.size());
+        for (Object key : candidates) {
+            candidates.remove(key);
+            if (hotKeys.size() + result.size() < maxHotKeys) {
+                result.add(key);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 减半后访问次数低于阈值一半的热点key，即最近一个窗口内访问明显减少
+     */
+    List<Object> coolingKeys() {
+        List<Object> result = new ArrayList<>();
+        for (Object key : hotKeys) {
+            if (estimate(key) < threshold / 2) {
+                result.add(key);
+            }
+        }
+        return result;
+    }
+
+    void promote(Object key) {
+        hotKeys.add(key);
+    }
+
+    void demote(Object key) {
+        hotKeys.remove(key);
+    }
+
+    Set<Object> getHotKeys() {
+        return Collections.unmodifiableSet(hotKeys);
+    }
+
+    private int indexOf(int hash, int row) {
+        long h = (hash + SEEDS[row]) * SEEDS[row];
+        h += h >>> 32;
+        return (int) h & (WIDTH - 1);
+    }
+
+    private static int spread(int hash) {
+        hash = ((hash >>> 16) ^ hash) * 0x45d9f3b;
+        return (hash >>> 16) ^ hash;
+    }
+}
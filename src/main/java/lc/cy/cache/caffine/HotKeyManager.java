@@ -0,0 +1,243 @@
+package lc.cy.cache.caffine;
+
+import com.github.benmanes.caffeine.cache.Policy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * 类名称：HotKeyManager <br>
+ * 类描述：单个缓存的热点key处理：记录访问并按窗口确认热点，热点key在本地缓存中使用更长的过期时间，
+ * 开启副本时在redis中写入多个副本，读取时随机选择，分散单个key所在节点的压力 <br>
+ */
+class HotKeyManager {
+
+    private static final Logger logger = LoggerFactory.getLogger(HotKeyManager.class);
+
+    // 热点key副本的后缀
+    static final String REPLICA_SUFFIX = "#r";
+
+    private final String name;
+
+    private final RedisTemplate<Object, Object> redisTemplate;
+
+    private final HotKeyDetector detector;
+
+    // 热点key在本地缓存中的过期时间
+    private final long localExpire;
+
+    // 热点key在redis中的副本数量
+    private final int replicas;
+
+    // 本地缓存按条目过期时的策略，未使用expireAfter时为空，此时不延长过期时间
+    private final Policy.VarExpiration<Object, Object> varExpiration;
+
+    HotKeyManager(String name, RedisTemplate<Object, Object> redisTemplate, HotKeyDetector detector, long localExpire,
+                  int replicas, Policy.VarExpiration<Object, Object> varExpiration) {
+        this.name = name;
+        this.redisTemplate = redisTemplate;
+        this.detector = detector;
+        this.localExpire = localExpire;
+        this.replicas = replicas;
+        this.varExpiration = varExpiration;
+        if (localExpire > 0 && varExpiration == null) {
+            logger.warn("local cache is not built with variable expiration, hot keys keep the configured expiration, the cache name is:{}", name);
+        }
+    }
+
+    void record(Object key) {
+        detector.record(key);
+    }
+
+    boolean hasReplicas() {
+        return replicas > 0;
+    }
+
+    /**
+     * @param key
+     * @param cacheKey
+     * @description 读取使用的redis key，热点key开启副本时随机选择主key或某个副本
+     * @version 1.0.0
+     */
+    Object readKey(Object key, Object cacheKey) {
+        if (replicas <= 0 || !detector.isHot(key)) {
+            return cacheKey;
+        }
+        int replica = ThreadLocalRandom.current().nextInt(replicas + 1);
+        return replica == 0 ? cacheKey : replicaKey(cacheKey, replica);
+    }
+
+    /**
+     * 副本key，后缀不同使副本分布在不同的slot
+     */
+    static String replicaKey(Object cacheKey, int replica) {
+        return cacheKey.toString().concat(REPLICA_SUFFIX).concat(String.valueOf(replica));
+    }
+
+    /**
+     * 热点key的副本不对应本地缓存的key
+     */
+    static boolean isReplicaKey(String key) {
+        int index = key.lastIndexOf(REPLICA_SUFFIX);
+        if (index < 0 || index + REPLICA_SUFFIX.length() == key.length()) {
+            return false;
+        }
+        for (int i = index + REPLICA_SUFFIX.length(); i < key.length(); i++) {
+            if (!Character.isDigit(key.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @param cacheKey
+     * @param includePrimary
+     * @description 所有副本key，includePrimary为true时包含主key
+     * @version 1.0.0
+     */
+    List<Object> replicaKeys(Object cacheKey, boolean includePrimary) {
+        List<Object> keys = new ArrayList<>(replicas + 1);
+        if (includePrimary) {
+            keys.add(cacheKey);
+        }
+        for (int i = 1; i <= replicas; i++) {
+            keys.add(replicaKey(cacheKey, i));
+        }
+        return keys;
+    }
+
+    /**
+     * @param key
+     * @param cacheKey
+     * @param raw
+     * @param expire
+     * @description 写入后同步副本：本节点认为是热点时写入副本，否则删除副本，
+     * 其他节点上是热点的key可能有副本，不删除会一直读到旧值，由该节点下个窗口刷新时重新写入
+     * @version 1.0.0
+     */
+    void sync(Object key, Object cacheKey, Object raw, long expire) {
+        if (replicas <= 0) {
+            return;
+        }
+        if (detector.isHot(key)) {
+            write(cacheKey, raw, expire);
+        } else {
+            redisTemplate.delete(replicaKeys(cacheKey, false));
+        }
+    }
+
+    /**
+     * @param connection
+     * @param keySerializer
+     * @param key
+     * @param cacheKey
+     * @param rawValue
+     * @param expire
+     * @description 在pipeline中同步副本，与sync相同
+     * @version 1.0.0
+     */
+    void sync(RedisConnection connection, RedisSerializer<Object> keySerializer, Object key, Object cacheKey,
+              byte[] rawValue, long expire) {
+        if (replicas <= 0) {
+            return;
+        }
+        boolean hot = detector.isHot(key);
+        for (int i = 1; i <= replicas; i++) {
+            byte[] rawReplicaKey = keySerializer.serialize(replicaKey(cacheKey, i));
+            if (!hot) {
+                connection.del(rawReplicaKey);
+            } else if (expire > 0) {
+                connection.pSetEx(rawReplicaKey, expire, rawValue);
+            } else {
+                connection.set(rawReplicaKey, rawValue);
+            }
+        }
+    }
+
+    void write(Object cacheKey, Object raw, long expire) {
+        for (int i = 1; i <= replicas; i++) {
+            if (expire > 0) {
+                redisTemplate.opsForValue().set(replicaKey(cacheKey, i), raw, expire, TimeUnit.MILLISECONDS);
+            } else {
+                redisTemplate.opsForValue().set(replicaKey(cacheKey, i), raw);
+            }
+        }
+    }
+
+    /**
+     * 热点key在本地缓存中使用更长的过期时间，不超过redis中的剩余过期时间
+     */
+    void pin(Object key, long redisTtl) {
+        if (localExpire > 0 && varExpiration != null && detector.isHot(key)) {
+            long expire = redisTtl > 0 ? Math.min(localExpire, redisTtl) : localExpire;
+            varExpiration.setExpiresAfter(key, expire, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * @param refreshExecutor
+     * @param redisKey        本地缓存key对应的redis key
+     * @param refresher       从redis刷新热点key的本地缓存，第二个参数为true时刷新后确认为热点
+     * @description 统计窗口结束时执行：计数减半，移出访问减少的热点key并删除其副本，确认新的热点key，
+     * 并在后台从redis刷新所有热点key的本地缓存（同时同步副本），使其在过期或失效前已是最新值
+     * @version 1.0.0
+     */
+    void tick(Executor refreshExecutor, Function<Object, Object> redisKey, BiConsumer<Object, Boolean> refresher) {
+        detector.age();
+        for (Object key : detector.coolingKeys()) {
+            detector.demote(key);
+            if (replicas > 0) {
+                redisTemplate.delete(replicaKeys(redisKey.apply(key), false));
+            }
+            logger.debug("hot key cooled down, the cache name is:{}, the key is:{}", this.name, key);
+        }
+        List<Object> promoted = detector.drainCandidates();
+        for (Object key : promoted) {
+            logger.info("hot key detected, the cache name is:{}, the key is:{}", this.name, key);
+        }
+        for (Object key : detector.getHotKeys()) {
+            submitRefresh(key, refreshExecutor, refresher, false);
+        }
+        for (Object key : promoted) {
+            // 先同步副本再标记为热点，避免读取到不存在或旧的副本
+            submitRefresh(key, refreshExecutor, refresher, true);
+        }
+    }
+
+    private void submitRefresh(Object key, Executor refreshExecutor, BiConsumer<Object, Boolean> refresher, boolean promote) {
+        try {
+            refreshExecutor.execute(() -> {
+                try {
+                    refresher.accept(key, promote);
+                } catch (RuntimeException e) {
+                    logger.warn("refresh hot key failed, the cache name is:{}, the key is:{}", this.name, key, e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // 刷新线程池已满，等下一个窗口
+            logger.debug("refresh pool is full, skip refreshing hot key, the key is:{}", key);
+        }
+    }
+
+    void promote(Object key) {
+        detector.promote(key);
+    }
+
+    Set<Object> getHotKeys() {
+        return new HashSet<>(detector.getHotKeys());
+    }
+}
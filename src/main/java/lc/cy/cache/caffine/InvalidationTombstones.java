@@ -0,0 +1,75 @@
+package lc.cy.cache.caffine;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 类名称：InvalidationTombstones <br>
+ * 类描述：本地缓存失效的版本记录，用于拒绝过期的回填。每次失效分配一个单调递增的版本，按key的哈希记录在固定大小的槽位中，
+ * 读取redis前取当前版本，回填本地缓存后若该key的槽位版本更大，说明读取期间已发生失效，读到的可能是旧值。
+ * 写入方先写redis再发送消息，失效之后开始的读取一定能读到新值，因此只需比较读取开始时的版本，不需要在redis的值中保存版本。
+ * 槽位冲突时只会多拒绝一次回填，不影响正确性 <br>
+ */
+class InvalidationTombstones {
+
+    private static final int DEFAULT_SLOTS = 4096;
+
+    private final AtomicLong version = new AtomicLong();
+
+    private final AtomicLongArray slots;
+
+    private final int mask;
+
+    // 最近一次清空整个本地缓存时的版本
+    private volatile long clearedVersion;
+
+    InvalidationTombstones() {
+        this(DEFAULT_SLOTS);
+    }
+
+    InvalidationTombstones(int size) {
+        int slotCount = Integer.highestOneBit(Math.max(16, size));
+        this.slots = new AtomicLongArray(slotCount);
+        this.mask = slotCount - 1;
+    }
+
+    /**
+     * 读取redis前的版本
+     */
+    long stamp() {
+        return version.get();
+    }
+
+    /**
+     * @param key
+     * @description 记录key的失效，需在清理本地缓存之前调用
+     * @version 1.0.0
+     */
+    void invalidate(Object key) {
+        long current = version.incrementAndGet();
+        slots.accumulateAndGet(indexOf(key), current, Math::max);
+    }
+
+    /**
+     * 记录整个本地缓存的清空
+     */
+    void invalidateAll() {
+        clearedVersion = version.incrementAndGet();
+    }
+
+    /**
+     * @param key
+     * @param stamp 读取redis前的版本
+     * @description 读取开始之后该key是否发生过失效
+     * @version 1.0.0
+     */
+    boolean isStale(Object key, long stamp) {
+        return clearedVersion > stamp || slots.get(indexOf(key)) > stamp;
+    }
+
+    private int indexOf(Object key) {
+        int hash = key.hashCode();
+        hash ^= hash >>> 16;
+        return hash & mask;
+    }
+}
@@ -0,0 +1,158 @@
+package lc.cy.cache.caffine;
+
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 类名称：JitterExpiry <br>
+ * 类描述：本地缓存带随机抖动的过期策略，每个条目的过期时间在[expire * (1 - jitter), expire]之间，
+ * 避免批量写入的条目在同一时刻过期。caffeine的expireAfter不能与expireAfterWrite、expireAfterAccess同时使用，
+ * 两者都配置时记录每个条目写入后的过期时刻，访问后的过期时间不超过该时刻 <br>
+ */
+class JitterExpiry implements Expiry<Object, Object> {
+
+    // 写入后过期时间（单位:毫秒），小于等于0时不按写入过期
+    final long expireAfterWrite;
+
+    // 访问后过期时间（单位:毫秒），小于等于0时不按访问过期
+    final long expireAfterAccess;
+
+    private final double jitter;
+
+    // key -> 写入后的过期时刻，只在同时按写入和访问过期时记录
+    private final Map<Object, WriteDeadline> writeDeadlines;
+
+    JitterExpiry(long expireAfterWrite, long expireAfterAccess, double jitter) {
+        this(expireAfterWrite, expireAfterAccess, jitter, expireAfterWrite > 0 && expireAfterAccess > 0);
+    }
+
+    /**
+     * @param expireAfterWrite
+     * @param expireAfterAccess
+     * @param jitter
+     * @param trackWrite        访问后过期的条目是否还受写入后过期时间限制
+     * @description 构造方法
+     * @version 1.0.0
+     */
+    JitterExpiry(long expireAfterWrite, long expireAfterAccess, double jitter, boolean trackWrite) {
+        this.expireAfterWrite = expireAfterWrite;
+        this.expireAfterAccess = expireAfterAccess;
+        this.jitter = jitter;
+        this.writeDeadlines = trackWrite ? new ConcurrentHashMap<>() : null;
+    }
+
+    @Override
+    public long expireAfterCreate(Object key, Object value, long currentTime) {
+        return expireAfterWrite(key, value, currentTime);
+    }
+
+    @Override
+    public long expireAfterUpdate(Object key, Object value, long currentTime, long currentDuration) {
+        return expireAfterWrite(key, value, currentTime);
+    }
+
+    @Override
+    public long expireAfterRead(Object key, Object value, long currentTime, long currentDuration) {
+        long access = accessExpire(key, value);
+        if (access <= 0) {
+            return currentDuration;
+        }
+        long duration = TimeUnit.MILLISECONDS.toNanos(jitter(access, jitter));
+        if (writeDeadlines != null) {
+            WriteDeadline deadline = writeDeadlines.get(key);
+            // 没有对应的记录时不延长当前的过期时间
+            long remaining = deadline != null && deadline.value == value ? deadline.nanos - currentTime : currentDuration;
+            duration = Math.min(duration, remaining);
+        }
+        // 访问不缩短当前的过期时间，热点key延长的过期时间保持到下次写入
+        return Math.max(duration, currentDuration);
+    }
+
+    private long expireAfterWrite(Object key, Object value, long currentTime) {
+        long write = writeExpire(key, value);
+        long access = accessExpire(key, value);
+        long writeNanos = write > 0 ? TimeUnit.MILLISECONDS.toNanos(jitter(write, jitter)) : Long.MAX_VALUE;
+        if (writeDeadlines != null) {
+            if (write > 0) {
+                writeDeadlines.put(key, new WriteDeadline(value, currentTime + writeNanos));
+            } else {
+                writeDeadlines.remove(key);
+            }
+        }
+        long accessNanos = access > 0 ? TimeUnit.MILLISECONDS.toNanos(jitter(access, jitter)) : Long.MAX_VALUE;
+        return Math.min(writeNanos, accessNanos);
+    }
+
+    /**
+     * @param key
+     * @param value
+     * @description 条目写入后的过期时间，单位毫秒，小于等于0时不按写入过期
+     * @version 1.0.0
+     */
+    long writeExpire(Object key, Object value) {
+        return expireAfterWrite;
+    }
+
+    /**
+     * @param key
+     * @param value
+     * @description 条目访问后的过期时间，单位毫秒，小于等于0时不按访问过期
+     * @version 1.0.0
+     */
+    long accessExpire(Object key, Object value) {
+        return expireAfterAccess;
+    }
+
+    /**
+     * 是否记录了写入后的过期时刻，为true时需要在条目移除时调用onRemoval
+     */
+    boolean isTrackingWrite() {
+        return writeDeadlines != null;
+    }
+
+    /**
+     * @param key
+     * @param value
+     * @param cause
+     * @description 条目移除后删除其写入后的过期时刻，被替换的条目已在更新时重新记录
+     * @version 1.0.0
+     */
+    void onRemoval(Object key, Object value, RemovalCause cause) {
+        if (writeDeadlines != null && cause != RemovalCause.REPLACED) {
+            writeDeadlines.computeIfPresent(key, (k, deadline) -> deadline.value == value ? null : deadline);
+        }
+    }
+
+    /**
+     * @param expire
+     * @param jitter 0到1之间，小于等于0时不抖动
+     * @description 在expire的基础上随机减少最多jitter比例
+     * @version 1.0.0
+     */
+    static long jitter(long expire, double jitter) {
+        if (jitter <= 0 || expire <= 0) {
+            return expire;
+        }
+        long range = (long) (expire * Math.min(jitter, 1.0));
+        return range <= 0 ? expire : expire - ThreadLocalRandom.current().nextLong(range);
+    }
+
+    private static class WriteDeadline {
+
+        // 写入的值，用于区分移除后重新写入的条目
+        private final Object value;
+
+        // 过期时刻，与caffeine的ticker同一时间基准，单位纳秒
+        private final long nanos;
+
+        WriteDeadline(Object value, long nanos) {
+            this.value = value;
+            this.nanos = nanos;
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package lc.cy.cache.caffine;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+
+import java.util.Collections;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * 类名称：LoadLease <br>
+ * 类描述：跨节点加载互斥，同一个key在集群内只有持有租约的节点执行加载，其他节点轮询redis等待其加载结果 <br>
+ */
+class LoadLease {
+
+    private static final Logger logger = LoggerFactory.getLogger(LoadLease.class);
+
+    private static final String LEASE_PREFIX = "redis-caffeine:lease:";
+
+    private static final long POLL_INTERVAL = 50L;
+
+    private static final RedisScript<Long> RELEASE_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('get', KEYS[1]) == ARGV[1] then return redis.call('del', KEYS[1]) else return 0 end", Long.class);
+
+    private final RedisTemplate<Object, Object> redisTemplate;
+
+    // 租约的过期时间（单位:毫秒）
+    private final long timeout;
+
+    // 未获取到租约时等待的最长时间（单位:毫秒）
+    private final long wait;
+
+    LoadLease(RedisTemplate<Object, Object> redisTemplate, long timeout, long wait) {
+        this.redisTemplate = redisTemplate;
+        this.timeout = timeout;
+        this.wait = wait;
+    }
+
+    /**
+     * @param cacheKey
+     * @description 获取租约，成功时返回释放租约使用的token，其他节点持有时返回null
+     * @version 1.0.0
+     */
+    String tryAcquire(Object cacheKey) {
+        String token = UUID.randomUUID().toString();
+        Boolean acquired = redisTemplate.opsForValue().setIfAbsent(leaseKey(cacheKey), token, timeout, TimeUnit.MILLISECONDS);
+        return Boolean.TRUE.equals(acquired) ? token : null;
+    }
+
+    /**
+     * @param cacheKey
+     * @param token
+     * @description 释放租约，只删除自己持有的租约
+     * @version 1.0.0
+     */
+    void release(Object cacheKey, String token) {
+        try {
+            redisTemplate.execute(RELEASE_SCRIPT, Collections.singletonList(leaseKey(cacheKey)), token);
+        } catch (Exception e) {
+            logger.warn("release load lease failed, the redisKey is:{}", cacheKey, e);
+        }
+    }
+
+    /**
+     * @param cacheKey
+     * @param reader   读取redis中的值
+     * @description 其他节点持有租约时轮询redis等待其加载结果，租约释放或等待超时后返回null
+     * @version 1.0.0
+     */
+    Object awaitHolder(Object cacheKey, Function<Object, Object> reader) {
+        long deadline = System.currentTimeMillis() + wait;
+        Object leaseKey = leaseKey(cacheKey);
+        while (System.currentTimeMillis() < deadline) {
+            try {
+                Thread.sleep(POLL_INTERVAL);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return null;
+            }
+            Object value = reader.apply(cacheKey);
+            if (value != null) {
+                return value;
+            }
+            if (!Boolean.TRUE.equals(redisTemplate.hasKey(leaseKey))) {
+                // 持有者加载失败或已释放，再读一次redis后由当前节点加载
+                return reader.apply(cacheKey);
+            }
+        }
+        return null;
+    }
+
+    private static Object leaseKey(Object cacheKey) {
+        return LEASE_PREFIX.concat(cacheKey.toString());
+    }
+}
@@ -0,0 +1,232 @@
+package lc.cy.cache.caffine;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 类名称：OffHeapArena <br>
+ * 类描述：堆外内存分配器，按2的幂划分大小等级，内存块（固定大小的direct ByteBuffer）按需分配给某个等级并切分槽位，
+ * 释放的槽位回到所属内存块复用。内存块的槽位全部释放后不再属于任何等级，可分配给其他等级，
+ * 避免值大小分布变化后空闲内存被旧的等级占用。总量不超过capacity，分配过的direct内存不归还 <br>
+ */
+class OffHeapArena {
+
+    private static final int MIN_SLOT_SHIFT = 6;
+
+    private static final int DEFAULT_SLAB_SIZE = 4 * 1024 * 1024;
+
+    // 总容量（单位:字节）
+    private long capacity;
+
+    private int slabSize;
+
+    // 各大小等级中还有空闲槽位的内存块
+    private ArrayDeque<Slab>[] partialSlabs;
+
+    // 未分配给任何等级的内存块
+    private ArrayDeque<Slab> emptySlabs = new ArrayDeque<>();
+
+    // 读取时不加锁，新增内存块时整体替换
+    private volatile List<Slab> slabs = new ArrayList<>();
+
+    private final AtomicLong usedBytes = new AtomicLong();
+
+    OffHeapArena(long capacity) {
+        this.capacity = capacity;
+        this.slabSize = (int) Math.max(1 << MIN_SLOT_SHIFT, Math.min(DEFAULT_SLAB_SIZE, Integer.highestOneBit((int)
+                Math.min(capacity, Integer.MAX_VALUE))));
+        int classes = Integer.numberOfTrailingZeros(slabSize) - MIN_SLOT_SHIFT + 1;
+        this.partialSlabs = new ArrayDeque[classes];
+        for (int i = 0; i < classes; i++) {
+            partialSlabs[i] = new ArrayDeque<>();
+        }
+    }
+
+    /**
+     * @param bytes
+     * @description 写入堆外内存，超过单个内存块大小或容量不足时返回null
+     * @version 1.0.0
+     */
+    OffHeapValue allocate(byte[] bytes) {
+        if (bytes.length > slabSize) {
+            return null;
+        }
+        int sizeClass = sizeClass(bytes.length);
+        long slot = take(sizeClass);
+        if (slot < 0) {
+            return null;
+        }
+        usedBytes.addAndGet(slotSize(sizeClass));
+        int slabIndex = (int) (slot >>> 32);
+        int offset = (int) slot;
+        // 复制在锁外进行
+        ByteBuffer buffer = slabs.get(slabIndex).buffer.duplicate();
+        buffer.position(offset);
+        buffer.put(bytes);
+        return new OffHeapValue(this, slabIndex, offset, bytes.length, sizeClass);
+    }
+
+    byte[] read(OffHeapValue value) {
+        byte[] bytes = new byte[value.getLength()];
+        ByteBuffer buffer = slabs.get(value.getSlabIndex()).buffer.duplicate();
+        buffer.position(value.getOffset());
+        buffer.get(bytes);
+        return bytes;
+    }
+
+    void free(OffHeapValue value) {
+        usedBytes.addAndGet(-slotSize(value.getSizeClass()));
+        release(slabs.get(value.getSlabIndex()), value.getOffset());
+    }
+
+    /**
+     * 从该等级的内存块中取一个槽位，没有时使用空的内存块或新分配一个，返回内存块下标（高32位）及偏移量（低32位），容量不足时返回-1
+     */
+    private synchronized long take(int sizeClass) {
+        ArrayDeque<Slab> partial = partialSlabs[sizeClass];
+        Slab slab = partial.peekFirst();
+        if (slab == null) {
+            slab = emptySlabs.pollFirst();
+            if (slab == null) {
+                slab = newSlab();
+                if (slab == null) {
+                    return -1;
+                }
+            }
+            slab.assign(sizeClass, slotSize(sizeClass));
+            partial.addFirst(slab);
+            slab.partial = true;
+        }
+        int offset = slab.take();
+        if (!slab.hasFree()) {
+            partial.pollFirst();
+            slab.partial = false;
+        }
+        return ((long) slab.index << 32) | offset;
+    }
+
+    private synchronized void release(Slab slab, int offset) {
+        slab.release(offset);
+        if (slab.used == 0) {
+            // 槽位全部释放，内存块可分配给任意等级
+            if (slab.partial) {
+                partialSlabs[slab.sizeClass].remove(slab);
+                slab.partial = false;
+            }
+            slab.reset();
+            emptySlabs.addFirst(slab);
+        } else if (!slab.partial) {
+            partialSlabs[slab.sizeClass].addFirst(slab);
+            slab.partial = true;
+        }
+    }
+
+    private Slab newSlab() {
+        List<Slab> current = this.slabs;
+        if ((long) (current.size() + 1) * slabSize > capacity) {
+            return null;
+        }
+        Slab slab = new Slab(current.size(), ByteBuffer.allocateDirect(slabSize));
+        List<Slab> next = new ArrayList<>(current);
+        next.add(slab);
+        this.slabs = next;
+        return slab;
+    }
+
+    int slotSize(int sizeClass) {
+        return 1 << (sizeClass + MIN_SLOT_SHIFT);
+    }
+
+    private int sizeClass(int length) {
+        if (length <= 1 << MIN_SLOT_SHIFT) {
+            return 0;
+        }
+        return 32 - Integer.numberOfLeadingZeros(length - 1) - MIN_SLOT_SHIFT;
+    }
+
+    /**
+     * 已使用的字节数，按槽位大小计算
+     */
+    long getUsedBytes() {
+        return usedBytes.get();
+    }
+
+    /**
+     * 已分配的堆外内存字节数
+     */
+    long getAllocatedBytes() {
+        return (long) slabs.size() * slabSize;
+    }
+
+    /**
+     * 一个内存块，只在分配器的锁内修改
+     */
+    private class Slab {
+
+        private final int index;
+
+        private final ByteBuffer buffer;
+
+        private int sizeClass = -1;
+
+        private int slotSize;
+
+        // 已使用的槽位数
+        private int used;
+
+        // 尚未切分过的起始偏移量，槽位按需切分
+        private int carved;
+
+        // 释放后可复用的偏移量
+        private int[] freeOffsets = new int[16];
+
+        private int freeCount;
+
+        // 是否在所在等级的partialSlabs中
+        private boolean partial;
+
+        Slab(int index, ByteBuffer buffer) {
+            this.index = index;
+            this.buffer = buffer;
+        }
+
+        void assign(int sizeClass, int slotSize) {
+            this.sizeClass = sizeClass;
+            this.slotSize = slotSize;
+        }
+
+        boolean hasFree() {
+            return freeCount > 0 || carved + slotSize <= slabSize;
+        }
+
+        int take() {
+            used++;
+            if (freeCount > 0) {
+                return freeOffsets[--freeCount];
+            }
+            int offset = carved;
+            carved += slotSize;
+            return offset;
+        }
+
+        void release(int offset) {
+            used--;
+            if (freeCount == freeOffsets.length) {
+                freeOffsets = Arrays.copyOf(freeOffsets, freeCount * 2);
+            }
+            freeOffsets[freeCount++] = offset;
+        }
+
+        void reset() {
+            sizeClass = -1;
+            slotSize = 0;
+            carved = 0;
+            freeCount = 0;
+            freeOffsets = new int[16];
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package lc.cy.cache.caffine;
+
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.github.benmanes.caffeine.cache.Weigher;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 类名称：OffHeapStore <br>
+ * 类描述：本地缓存的堆外存储模式，序列化后超过threshold字节的值写入堆外内存，本地缓存中只保存句柄，
+ * 命中时再反序列化。估算的堆内大小不足threshold的值不做序列化，堆外容量不足或超过单个内存块的值仍以对象保存在堆内 <br>
+ */
+class OffHeapStore {
+
+    private OffHeapArena arena;
+
+    private RedisSerializer<Object> serializer;
+
+    // 小于此字节数的值保存在堆内
+    private int threshold;
+
+    // 达到threshold但堆外容量不足或超过单个内存块而保存在堆内的次数
+    private final LongAdder heapFallbackCount = new LongAdder();
+
+    OffHeapStore(long capacity, int threshold, RedisSerializer<Object> serializer) {
+        this.arena = new OffHeapArena(capacity);
+        this.threshold = threshold;
+        this.serializer = serializer;
+    }
+
+    /**
+     * @param storeValue
+     * @description 转换为本地缓存中保存的值。估算的堆内大小不足threshold的值直接保存在堆内，不做序列化
+     * @version 1.0.0
+     */
+    Object toLocal(Object storeValue) {
+        if (storeValue == null || EstimatingWeigher.INSTANCE.estimate(storeValue) < threshold) {
+            return storeValue;
+        }
+        byte[] bytes = serializer.serialize(storeValue);
+        if (bytes == null || bytes.length < threshold) {
+            return storeValue;
+        }
+        OffHeapValue value = arena.allocate(bytes);
+        if (value == null) {
+            heapFallbackCount.increment();
+            return storeValue;
+        }
+        return value;
+    }
+
+    /**
+     * @param localValue
+     * @description 本地缓存中的值还原为缓存值，句柄已释放时返回null
+     * @version 1.0.0
+     */
+    Object fromLocal(Object localValue) {
+        if (!(localValue instanceof OffHeapValue)) {
+            return localValue;
+        }
+        byte[] bytes = ((OffHeapValue) localValue).read();
+        return bytes == null ? null : serializer.deserialize(bytes);
+    }
+
+    /**
+     * 本地缓存按堆外占用加权，堆内的值按估算大小加权
+     */
+    Weigher<Object, Object> weigher() {
+        return (key, value) -> value instanceof OffHeapValue ? ((OffHeapValue) value).getSlotSize()
+                : EstimatingWeigher.INSTANCE.weigh(key, value);
+    }
+
+    /**
+     * 条目移除时释放堆外槽位
+     */
+    void onRemoval(Object key, Object value, RemovalCause cause) {
+        if (value instanceof OffHeapValue) {
+            ((OffHeapValue) value).release();
+        }
+    }
+
+    long getUsedBytes() {
+        return arena.getUsedBytes();
+    }
+
+    long getAllocatedBytes() {
+        return arena.getAllocatedBytes();
+    }
+
+    long getHeapFallbackCount() {
+        return heapFallbackCount.sum();
+    }
+}
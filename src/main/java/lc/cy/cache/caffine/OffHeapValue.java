@@ -0,0 +1,79 @@
+package lc.cy.cache.caffine;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 类名称：OffHeapValue <br>
+ * 类描述：本地缓存中保存的堆外值句柄。缓存持有一个引用，读取时临时增加引用，
+ * 条目被移除且没有读取中的线程时才释放槽位，避免读到被复用的内存 <br>
+ */
+class OffHeapValue {
+
+    private OffHeapArena arena;
+
+    private int slabIndex;
+
+    private int offset;
+
+    private int length;
+
+    private int sizeClass;
+
+    // 初始的1个引用属于本地缓存
+    private final AtomicInteger refs = new AtomicInteger(1);
+
+    OffHeapValue(OffHeapArena arena, int slabIndex, int offset, int length, int sizeClass) {
+        this.arena = arena;
+        this.slabIndex = slabIndex;
+        this.offset = offset;
+        this.length = length;
+        this.sizeClass = sizeClass;
+    }
+
+    /**
+     * 读取值，槽位已释放时返回null
+     */
+    byte[] read() {
+        int current;
+        do {
+            current = refs.get();
+            if (current <= 0) {
+                return null;
+            }
+        } while (!refs.compareAndSet(current, current + 1));
+        try {
+            return arena.read(this);
+        } finally {
+            release();
+        }
+    }
+
+    /**
+     * 释放一个引用，最后一个引用释放时归还槽位
+     */
+    void release() {
+        if (refs.decrementAndGet() == 0) {
+            arena.free(this);
+        }
+    }
+
+    int getSlabIndex() {
+        return slabIndex;
+    }
+
+    int getOffset() {
+        return offset;
+    }
+
+    int getLength() {
+        return length;
+    }
+
+    int getSizeClass() {
+        return sizeClass;
+    }
+
+    int getSlotSize() {
+        return arena.slotSize(sizeClass);
+    }
+}
@@ -0,0 +1,52 @@
+package lc.cy.cache.caffine;
+
+import org.springframework.cache.support.NullValue;
+
+/**
+ * 类名称：PolicyExpiry <br>
+ * 类描述：由ExpiryPolicy计算每个条目的本地缓存过期时间，不超过同一条目在redis中的过期时间。
+ * 配置了expireAfterWrite时策略作用于写入后过期时间，expireAfterAccess照常生效；只配置expireAfterAccess时策略作用于访问后过期时间 <br>
+ */
+class PolicyExpiry extends JitterExpiry {
+
+    private String cacheName;
+
+    private ExpiryPolicy policy;
+
+    // 配置的redis过期时间（单位:毫秒）
+    private long redisExpire;
+
+    PolicyExpiry(String cacheName, ExpiryPolicy policy, long expireAfterWrite, long expireAfterAccess,
+                 long redisExpire, double jitter) {
+        // redis的过期时间限制写入后的过期时刻，访问后过期的条目同样需要记录
+        super(expireAfterWrite, expireAfterAccess, jitter, expireAfterAccess > 0);
+        this.cacheName = cacheName;
+        this.policy = policy;
+        this.redisExpire = redisExpire;
+    }
+
+    @Override
+    long writeExpire(Object key, Object value) {
+        Object userValue = userValue(value);
+        long local = expireAfterWrite > 0 || expireAfterAccess <= 0
+                ? policy.localExpire(cacheName, key, userValue, expireAfterWrite) : 0;
+        long redis = policy.redisExpire(cacheName, key, userValue, redisExpire);
+        if (redis > 0 && (local <= 0 || redis < local)) {
+            return redis;
+        }
+        return local;
+    }
+
+    @Override
+    long accessExpire(Object key, Object value) {
+        if (expireAfterAccess <= 0) {
+            return 0;
+        }
+        return expireAfterWrite > 0 ? expireAfterAccess
+                : policy.localExpire(cacheName, key, userValue(value), expireAfterAccess);
+    }
+
+    private static Object userValue(Object value) {
+        return value instanceof NullValue ? null : value;
+    }
+}
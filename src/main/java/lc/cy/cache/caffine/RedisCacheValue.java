@@ -0,0 +1,79 @@
+package lc.cy.cache.caffine;
+
+import java.io.Serializable;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 类名称：RedisCacheValue <br>
+ * 类描述：开启提前重算时写入redis的值，额外记录加载耗时和过期时间。
+ * 读取时按XFetch算法，越接近过期、加载越慢的值越有可能被提前重算，避免同一时刻大量key过期后集中回源 <br>
+ */
+public class RedisCacheValue implements Serializable {
+
+    private static final long serialVersionUID = -2415396741825062375L;
+
+    private Object value;
+
+    /**
+     * 加载耗时，单位毫秒
+     */
+    private long delta;
+
+    /**
+     * 过期时间戳，单位毫秒
+     */
+    private long expireAt;
+
+    public RedisCacheValue() {
+
+    }
+
+    public RedisCacheValue(Object value, long delta, long expireAt) {
+        this.value = value;
+        this.delta = delta;
+        this.expireAt = expireAt;
+    }
+
+    /**
+     * @param beta 大于1时更倾向于提前重算
+     * @description 是否需要提前重算：now - delta * beta * ln(rand) >= expireAt
+     * @version 1.0.0
+     */
+    public boolean shouldRecompute(double beta) {
+        double random = 1.0 - ThreadLocalRandom.current().nextDouble();
+        return System.currentTimeMillis() - delta * beta * Math.log(random) >= expireAt;
+    }
+
+    /**
+     * @param value
+     * @description 取出原始值，非RedisCacheValue时原样返回
+     * @version 1.0.0
+     */
+    public static Object unwrap(Object value) {
+        return value instanceof RedisCacheValue ? ((RedisCacheValue) value).getValue() : value;
+    }
+
+    public Object getValue() {
+        return value;
+    }
+
+    public void setValue(Object value) {
+        this.value = value;
+    }
+
+    public long getDelta() {
+        return delta;
+    }
+
+    public void setDelta(long delta) {
+        this.delta = delta;
+    }
+
+    public long getExpireAt() {
+        return expireAt;
+    }
+
+    public void setExpireAt(long expireAt) {
+        this.expireAt = expireAt;
+    }
+}
@@ -1,21 +1,45 @@
 package lc.cy.cache.caffine;
 
+import com.github.benmanes.caffeine.cache.AsyncCache;
 import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Policy;
 import lc.cy.cache.config.CacheRedisCaffeineProperties;
-import lc.cy.util.JsonUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.cache.support.AbstractValueAdaptingCache;
+import org.springframework.cache.support.NullValue;
+import org.springframework.data.redis.connection.ClusterSlotHashUtil;
+import org.springframework.data.redis.connection.RedisClusterConnection;
+import org.springframework.data.redis.core.RedisCallback;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.serializer.RedisSerializer;
 import org.springframework.util.Assert;
 import org.springframework.util.StringUtils;
 
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalLong;
 import java.util.Set;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.locks.ReentrantLock;
-import java.util.stream.Collectors;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 public class RedisCaffeineCache extends AbstractValueAdaptingCache {
 
@@ -23,10 +47,53 @@ public class RedisCaffeineCache extends AbstractValueAdaptingCache {
 
     private static final char COMMA = ',';
 
+    private static final String GENERATION_SUFFIX = "#generation";
+
+    private static final AtomicLongFieldUpdater<RedisCaffeineCache> GENERATION_UPDATER =
+            AtomicLongFieldUpdater.newUpdater(RedisCaffeineCache.class, "generation");
+
+    // 批量回填本地缓存时每次MGET的key数量
+    private static final int RELOAD_BATCH_SIZE = 500;
+
+    private static final Object ABSENT = ExistenceTracker.ABSENT;
+
+    // 写入并发布消息，ARGV为值、过期时间（毫秒，0为不过期）、topic及消息，没有消息时只写入
+    private static final RedisScript<byte[]> PUT_SCRIPT = new DefaultRedisScript<>(
+            "if ARGV[2] == '0' then redis.call('set', KEYS[1], ARGV[1]) "
+                    + "else redis.call('set', KEYS[1], ARGV[1], 'px', ARGV[2]) end "
+                    + "if ARGV[4] then redis.call('publish', ARGV[3], ARGV[4]) end "
+                    + "return nil", byte[].class);
+
+    // 不存在时写入并发布消息，返回nil；已存在时返回当前值
+    private static final RedisScript<byte[]> PUT_IF_ABSENT_SCRIPT = new DefaultRedisScript<>(
+            "local ok "
+                    + "if ARGV[2] == '0' then ok = redis.call('set', KEYS[1], ARGV[1], 'nx') "
+                    + "else ok = redis.call('set', KEYS[1], ARGV[1], 'nx', 'px', ARGV[2]) end "
+                    + "if ok then "
+                    + "if ARGV[4] then redis.call('publish', ARGV[3], ARGV[4]) end "
+                    + "return nil end "
+                    + "return redis.call('get', KEYS[1])", byte[].class);
+
+    // 脚本参数及返回值已是序列化后的字节，原样传递
+    private static final RedisSerializer<byte[]> RAW_SERIALIZER = new RedisSerializer<byte[]>() {
+        @Override
+        public byte[] serialize(byte[] bytes) {
+            return bytes;
+        }
+
+        @Override
+        public byte[] deserialize(byte[] bytes) {
+            return bytes;
+        }
+    };
+
     private String name;
 
     private RedisTemplate<Object, Object> redisTemplate;
 
+    private AsyncCache<Object, Object> asyncCaffeineCache;
+
+    // asyncCaffeineCache的同步视图
     private Cache<Object, Object> caffeineCache;
 
     private String cachePrefix;
@@ -36,18 +103,100 @@ public class RedisCaffeineCache extends AbstractValueAdaptingCache {
 
     private String topic;
 
+    private CacheMessagePublisher messagePublisher;
+
+    private RedisKeyCleaner keyCleaner;
+
+    // 异步接口
+    private CacheAsyncOperations asyncOperations;
+
+    private volatile CacheMetricsRecorder metricsRecorder = CacheMetricsRecorder.NONE;
+
+    // 是否开启命名空间版本，开启后清空缓存只需递增代号
+    private boolean namespaceVersion;
+
+    // 当前代号，作为redis key的一部分
+    private volatile long generation;
+
+    // 是否为集群模式，首次使用时判断
+    private volatile Boolean cluster;
+
+    // 是否由redis服务端推送失效通知（CLIENT TRACKING），推送连接断开时退回发布消息
+    private volatile boolean serverTracking;
+
+    // 本地缓存中是否出现过非字符串的key
+    private volatile boolean nonStringKeys;
+
     private CacheRedisCaffeineProperties caffeineProperties;
 
+    // 跨节点加载互斥，未开启时为空
+    private LoadLease loadLease;
+
+    // 访问日志采样率，0为关闭
+    private double traceSampleRate;
+
+    // redis过期时间的随机抖动比例
+    private double expireJitter;
+
+    // 是否开启提前重算
+    private boolean earlyRecompute;
+
+    private double earlyRecomputeBeta;
+
+    // 按条目计算过期时间，为空时使用配置的过期时间
+    private volatile ExpiryPolicy expiryPolicy;
+
+    // 本地缓存按条目过期时的策略，未使用expireAfter时为空
+    private Policy.VarExpiration<Object, Object> varExpiration;
+
+    // 本地缓存的堆外存储，未开启时为空
+    private OffHeapStore offHeapStore;
+
+    // 后台刷新时redis中已没有该key时使用的加载方法，为空时刷新结果为空，条目被移除
+    private volatile Function<Object, Object> refreshLoader;
+
+    // 热点key处理，未开启热点检测时为空
+    private HotKeyManager hotKeys;
+
+    // 本地缓存失效的版本记录，拒绝读取redis期间已失效的回填
+    private final InvalidationTombstones tombstones = new InvalidationTombstones();
+
+    // 不存在的key的判断
+    private final ExistenceTracker existence;
+
+    // 分段计数，高并发下不争用同一个变量
+    private final LongAdder l1HitCount = new LongAdder();
+
+    private final LongAdder l2HitCount = new LongAdder();
+
+    private final LongAdder missCount = new LongAdder();
+
     protected RedisCaffeineCache(boolean allowNullValues) {
         super(allowNullValues);
+        this.existence = new ExistenceTracker(null, tombstones);
+    }
+
+    public RedisCaffeineCache(String name, RedisTemplate<Object, Object> redisTemplate,
+                              AsyncCache<Object, Object> caffeineCache, CacheRedisCaffeineProperties cacheRedisCaffeineProperties) {
+        this(name, redisTemplate, caffeineCache, cacheRedisCaffeineProperties,
+                new CacheMessagePublisher(redisTemplate, cacheRedisCaffeineProperties.getRedis().getTopic(), 0, 0),
+                new RedisKeyCleaner(redisTemplate, cacheRedisCaffeineProperties.getRedis().getScanCount(),
+                        cacheRedisCaffeineProperties.getRedis().getClearBatchSize(),
+                        cacheRedisCaffeineProperties.getRedis().getClearRateLimit()),
+                CacheAsyncOperations.newExecutor(cacheRedisCaffeineProperties.getRedis()));
     }
 
     public RedisCaffeineCache(String name, RedisTemplate<Object, Object> redisTemplate,
-                              Cache<Object, Object> caffeineCache, CacheRedisCaffeineProperties cacheRedisCaffeineProperties) {
+                              AsyncCache<Object, Object> caffeineCache, CacheRedisCaffeineProperties cacheRedisCaffeineProperties,
+                              CacheMessagePublisher messagePublisher, RedisKeyCleaner keyCleaner, Executor asyncExecutor) {
         super(cacheRedisCaffeineProperties.isAllowNull());
         this.name = name;
         this.redisTemplate = redisTemplate;
-        this.caffeineCache = caffeineCache;
+        this.asyncCaffeineCache = caffeineCache;
+        this.caffeineCache = caffeineCache.synchronous();
+        this.varExpiration = this.caffeineCache.policy().expireVariably().orElse(null);
+        this.asyncOperations = new CacheAsyncOperations(this, caffeineCache, asyncExecutor);
+        this.existence = new ExistenceTracker(name, tombstones);
         this.caffeineProperties = cacheRedisCaffeineProperties;
         this.cachePrefix = cacheRedisCaffeineProperties.getCachePrefix();
         this.redisExpires = cacheRedisCaffeineProperties.getRedis().getDefaultExpires();
@@ -56,6 +205,25 @@ public class RedisCaffeineCache extends AbstractValueAdaptingCache {
             this.redisExpires = expires.get(name).longValue();
         }
         this.topic = cacheRedisCaffeineProperties.getRedis().getTopic();
+        this.messagePublisher = messagePublisher;
+        this.keyCleaner = keyCleaner;
+        this.namespaceVersion = cacheRedisCaffeineProperties.getRedis().isNamespaceVersion();
+        if (this.namespaceVersion) {
+            this.generation = readGeneration();
+        }
+        if (cacheRedisCaffeineProperties.getRedis().getLoadLease().isEnabled()) {
+            this.loadLease = new LoadLease(redisTemplate, cacheRedisCaffeineProperties.getRedis().getLoadLease().getTimeout(),
+                    cacheRedisCaffeineProperties.getRedis().getLoadLease().getWait());
+        }
+        this.traceSampleRate = cacheRedisCaffeineProperties.getTraceSampleRate();
+        this.expireJitter = cacheRedisCaffeineProperties.getRedis().getExpireJitter();
+        this.earlyRecompute = cacheRedisCaffeineProperties.getRedis().isEarlyRecompute();
+        this.earlyRecomputeBeta = cacheRedisCaffeineProperties.getRedis().getEarlyRecomputeBeta();
+        if (cacheRedisCaffeineProperties.getHotKey().getThreshold() > 0) {
+            this.hotKeys = new HotKeyManager(name, redisTemplate, new HotKeyDetector(cacheRedisCaffeineProperties.getHotKey().getThreshold(),
+                    cacheRedisCaffeineProperties.getHotKey().getMaxKeys()), cacheRedisCaffeineProperties.getHotKey().getLocalExpire(),
+                    cacheRedisCaffeineProperties.getHotKey().getReplicas(), this.varExpiration);
+        }
     }
 
     @Override
@@ -70,168 +238,1354 @@ public class RedisCaffeineCache extends AbstractValueAdaptingCache {
 
     @Override
     public <T> T get(Object key, Callable<T> valueLoader) {
-        Object value = lookup(key);
+        if (hotKeys != null) {
+            hotKeys.record(key);
+        }
+        Object value = fromLocal(caffeineCache.getIfPresent(key));
         if (value != null) {
-            return (T) value;
+            l1HitCount.increment();
+            return (T) fromStoreValue(value);
         }
+        Object negative = existence.get(key);
+        if (negative instanceof NullValue) {
+            l1HitCount.increment();
+            return null;
+        }
+        // redis中一定没有时直接执行valueLoader
+        boolean skipRedis = negative == ABSENT || existence.isFilteredOut(key);
 
-        try {
-            value = lookup(key);
-            if (value != null) {
-                return (T) value;
+        // 将加载中的future放入caffeine，同一个key在本节点内只有一个线程执行加载，其他线程等待该future
+        CompletableFuture<Object> loading = new CompletableFuture<>();
+        CompletableFuture<Object> existing = asyncCaffeineCache.asMap().putIfAbsent(key, loading);
+        if (existing == null) {
+            long[] redisTtl = {0};
+            try {
+                value = load(key, valueLoader, redisTtl, skipRedis);
+            } catch (RuntimeException | Error e) {
+                loading.completeExceptionally(e);
+                throw e;
+            }
+            if (existence.isNegativeCaching() && value instanceof NullValue) {
+                // 空值单独保存，加载结果为null时caffeine会移除该条目
+                loading.complete(null);
+                existence.putNull(key, value);
+                return null;
             }
-            value = valueLoader.call();
-            Object storeValue = toStoreValue(value);
-            put(key, storeValue);
-            return (T) value;
-        } catch (Exception e) {
-            throw new ValueRetrievalException(key, valueLoader, e.getCause());
+            // 加载结果为null时caffeine会移除该条目
+            loading.complete(toLocal(value));
+            capLocal(key, redisTtl[0]);
+            pin(key, redisTtl[0]);
+            return (T) fromStoreValue(value);
         }
+        Object localValue = join(existing);
+        value = fromLocal(localValue);
+        if (value == null && localValue != null) {
+            // 堆外的值在读取前已被淘汰，直接加载
+            value = load(key, valueLoader, new long[1], false);
+        }
+        return (T) fromStoreValue(value);
     }
 
-    @Override
-    public void put(Object key, Object value) {
-        if (!super.isAllowNullValues() && value == null) {
-            this.evict(key);
-            return;
+    private static Object join(CompletableFuture<Object> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw e;
         }
-        long expire = getRedisExpire(key);
-        if (expire > 0) {
-            redisTemplate.opsForValue().set(redisKey(key), toStoreValue(value), expire, TimeUnit.MILLISECONDS);
-        } else {
-            redisTemplate.opsForValue().set(redisKey(key), toStoreValue(value));
+    }
+
+    /**
+     * @param key
+     * @description 异步获取缓存，本地缓存命中时直接返回已完成的future，否则在异步线程池中读取redis，
+     * 同一个key并发的读取共用一次redis访问，未命中时返回null
+     * @version 1.0.0
+     */
+    public CompletableFuture<ValueWrapper> getAsync(Object key) {
+        return asyncOperations.get(key);
+    }
+
+    /**
+     * @param key
+     * @param valueLoader 两级缓存都未命中时执行的异步加载
+     * @description 异步获取缓存，未命中时执行valueLoader并写入缓存，同一个key并发的加载共用一次
+     * @version 1.0.0
+     */
+    public <T> CompletableFuture<T> getAsync(Object key, Supplier<CompletableFuture<T>> valueLoader) {
+        return asyncOperations.get(key, valueLoader);
+    }
+
+    /**
+     * @param key
+     * @param value
+     * @description 异步写入缓存
+     * @version 1.0.0
+     */
+    public CompletableFuture<Void> putAsync(Object key, Object value) {
+        return asyncOperations.put(key, value);
+    }
+
+    /**
+     * @param key
+     * @description 异步失效缓存
+     * @version 1.0.0
+     */
+    public CompletableFuture<Void> evictAsync(Object key) {
+        return asyncOperations.evict(key);
+    }
+
+    /**
+     * 异步接口读取redis中的值
+     */
+    Object readRedis(Object key) {
+        return getRedis(redisKey(key));
+    }
+
+    /**
+     * @param key
+     * @param loaded
+     * @description 异步加载的结果写入redis并通知其他节点，返回缓存值，不允许空值时返回null
+     * @version 1.0.0
+     */
+    Object writeLoaded(Object key, Object loaded) {
+        if (loaded == null && !super.isAllowNullValues()) {
+            return null;
         }
-        push(JsonUtil.toJson(new CacheMessage(this.name, key)));
+        Object storeValue = toStoreValue(loaded);
+        setRedisAndPush(key, storeValue, -1);
+        return storeValue;
+    }
 
-        caffeineCache.put(key, toStoreValue(value));
+    ValueWrapper wrapLocal(Object localValue) {
+        return toValueWrapper(fromLocal(localValue));
     }
 
-    @Override
-    public ValueWrapper putIfAbsent(Object key, Object value) {
+    Object unwrapLocal(Object localValue) {
+        return fromStoreValue(fromLocal(localValue));
+    }
+
+    /**
+     * @param key
+     * @param valueLoader
+     * @param redisTtl    返回redis中的剩余过期时间，未知时为0
+     * @param skipRedis   redis中一定没有该key，不再读取
+     * @description 本地缓存未命中时加载数据，先读redis，再执行valueLoader并回写redis。
+     * 开启提前重算时，redis中的值接近过期会按概率提前执行valueLoader，重算期间其他节点及重算失败时仍使用旧值
+     * @version 1.0.0
+     */
+    private Object load(Object key, Callable<?> valueLoader, long[] redisTtl, boolean skipRedis) {
         Object cacheKey = redisKey(key);
-        Object prevValue = null;
-        ReentrantLock lock = new ReentrantLock();
-        try {
-            // 此处可能在多实例下会有同时设置动作，可以接受
-            lock.lock();
-            prevValue = redisTemplate.opsForValue().get(cacheKey);
-            if (prevValue == null) {
-                long expire = getRedisExpire(key);
-                if (expire > 0) {
-                    redisTemplate.opsForValue().set(redisKey(key), toStoreValue(value), expire, TimeUnit.MILLISECONDS);
-                } else {
-                    redisTemplate.opsForValue().set(redisKey(key), toStoreValue(value));
-                }
+        Object raw = skipRedis ? null : getRedisRaw(key, cacheKey, expiryPolicy == null ? null : redisTtl);
+        if (raw != null) {
+            if (!earlyRecompute || !(raw instanceof RedisCacheValue)
+                    || !((RedisCacheValue) raw).shouldRecompute(earlyRecomputeBeta)) {
+                l2HitCount.increment();
+                return RedisCacheValue.unwrap(raw);
+            }
+            logger.debug("recompute before expiration, the redisKey is:{}", cacheKey);
+        } else {
+            missCount.increment();
+        }
+        // 提前重算时的旧值
+        Object stale = RedisCacheValue.unwrap(raw);
 
-                push(JsonUtil.toJson(new CacheMessage(this.name, key)));
+        String leaseToken = null;
+        if (loadLease != null) {
+            leaseToken = loadLease.tryAcquire(cacheKey);
+            if (leaseToken == null) {
+                if (stale != null) {
+                    return stale;
+                }
+                Object value = loadLease.awaitHolder(cacheKey, this::getRedis);
+                if (value != null) {
+                    return value;
+                }
+                logger.debug("wait load lease timeout, load by self, the redisKey is:{}", cacheKey);
+            }
+        }
 
-                caffeineCache.put(key, toStoreValue(value));
+        try {
+            Object loaded;
+            long start = System.nanoTime();
+            try {
+                loaded = valueLoader.call();
+            } catch (Exception e) {
+                metricsRecorder.recordLoad(this.name, System.nanoTime() - start, false);
+                if (stale != null) {
+                    logger.warn("recompute before expiration failed, use the current value, the redisKey is:{}", cacheKey, e);
+                    return stale;
+                }
+                throw new ValueRetrievalException(key, valueLoader, e);
+            }
+            long loadNanos = System.nanoTime() - start;
+            metricsRecorder.recordLoad(this.name, loadNanos, true);
+            if (loaded == null && !super.isAllowNullValues()) {
+                return null;
             }
+            Object storeValue = toStoreValue(loaded);
+            redisTtl[0] = setRedisAndPush(key, storeValue, loadNanos);
+            return storeValue;
         } finally {
-            lock.unlock();
+            if (leaseToken != null) {
+                loadLease.release(cacheKey, leaseToken);
+            }
         }
-        return toValueWrapper(prevValue);
     }
 
-    @Override
-    public void evict(Object key) {
-        // 先清除redis中缓存数据，然后清除caffeine中的缓存，避免短时间内如果先清除caffeine缓存后其他请求会再从redis里加载到caffeine中
-        redisTemplate.delete(redisKey(key));
+    /**
+     * @param key
+     * @description 后台刷新本地缓存，先读redis，redis中没有时执行refreshLoader并回写redis，返回null时caffeine移除该条目
+     * @version 1.0.0
+     */
+    Object refreshValue(Object key) {
+        Object value = RedisCacheValue.unwrap(getRedisRaw(key, redisKey(key), null));
+        if (value != null) {
+            return value;
+        }
+        Function<Object, Object> loader = this.refreshLoader;
+        if (loader == null) {
+            // 下次访问时走完整的加载流程
+            return null;
+        }
+        Object loaded;
+        long start = System.nanoTime();
+        try {
+            loaded = loader.apply(key);
+        } catch (RuntimeException e) {
+            metricsRecorder.recordLoad(this.name, System.nanoTime() - start, false);
+            throw e;
+        }
+        long loadNanos = System.nanoTime() - start;
+        metricsRecorder.recordLoad(this.name, loadNanos, true);
+        if (loaded == null && !super.isAllowNullValues()) {
+            return null;
+        }
+        Object storeValue = toStoreValue(loaded);
+        setRedisAndPush(key, storeValue, loadNanos);
+        return storeValue;
+    }
 
-        push(JsonUtil.toJson(new CacheMessage(this.name, key)));
+    /**
+     * 后台刷新的结果转换为本地缓存中保存的值
+     */
+    Object refreshLocal(Object key) {
+        return toLocal(refreshValue(key));
+    }
 
-        caffeineCache.invalidate(key);
+    Object toLocal(Object storeValue) {
+        return offHeapStore == null ? storeValue : offHeapStore.toLocal(storeValue);
     }
 
-    @Override
-    protected Object lookup(Object key) {
+    private Object fromLocal(Object localValue) {
+        return offHeapStore == null ? localValue : offHeapStore.fromLocal(localValue);
+    }
 
-        Object value = caffeineCache.getIfPresent(key);
-        if (value != null) {
-            logger.info("load from caffeine,name:{},key:{},value:{}", this.name, key, value);
-            return value;
+    /**
+     * @param limit
+     * @description 按淘汰策略排序的最热条目，值为缓存值，未配置容量时按遍历顺序取前limit个
+     * @version 1.0.0
+     */
+    Map<Object, Object> hottest(int limit) {
+        Optional<Policy.Eviction<Object, Object>> eviction = caffeineCache.policy().eviction();
+        Map<Object, Object> source = eviction.isPresent() ? eviction.get().hottest(limit) : caffeineCache.asMap();
+        Map<Object, Object> result = new LinkedHashMap<>(Math.min(limit, source.size()) * 2);
+        for (Map.Entry<Object, Object> entry : source.entrySet()) {
+            if (result.size() >= limit) {
+                break;
+            }
+            Object value = fromLocal(entry.getValue());
+            if (value != null) {
+                result.put(entry.getKey(), value);
+            }
         }
+        return result;
+    }
 
-        Object cacheKey = redisKey(key);
-        value = redisTemplate.opsForValue().get(cacheKey);
-        if (value != null) {
-            logger.debug("load from redis and put in caffeine, the redisKey is:{},value:{}", cacheKey, value);
-            caffeineCache.put(key, value);
+    /**
+     * @param limit
+     * @description 最常访问的key，不读取值
+     * @version 1.0.0
+     */
+    Collection<Object> hottestKeys(int limit) {
+        Optional<Policy.Eviction<Object, Object>> eviction = caffeineCache.policy().eviction();
+        Set<Object> source = eviction.isPresent() ? eviction.get().hottest(limit).keySet() : caffeineCache.asMap().keySet();
+        List<Object> result = new ArrayList<>(Math.min(limit, source.size()));
+        for (Object key : source) {
+            if (result.size() >= limit) {
+                break;
+            }
+            result.add(key);
         }
-        return value;
+        return result;
     }
 
-    private Object redisKey(Object key) {
-        String realKey = key.toString();
-        String prefix = this.cachePrefix;
-        // 如果不包含逗号
-        return this.name.concat(":").concat(StringUtils.isEmpty(prefix) ? realKey : prefix.concat(":").concat(realKey));
+    /**
+     * @param entries
+     * @description 回填本地缓存，已存在的key不覆盖，返回回填的数量
+     * @version 1.0.0
+     */
+    int restore(Map<Object, Object> entries) {
+        return restore(entries, Long.MAX_VALUE);
     }
 
-    private long getRedisExpire(Object key) {
-        return redisExpires;
+    /**
+     * @param entries
+     * @param stamp   读取redis前的版本，读取期间已失效的key不回填
+     * @description 回填本地缓存，已存在的key不覆盖，返回回填的数量
+     * @version 1.0.0
+     */
+    private int restore(Map<Object, Object> entries, long stamp) {
+        int count = 0;
+        for (Map.Entry<Object, Object> entry : entries.entrySet()) {
+            Object localValue = toLocal(entry.getValue());
+            if (caffeineCache.asMap().putIfAbsent(entry.getKey(), localValue) != null) {
+                if (localValue instanceof OffHeapValue) {
+                    ((OffHeapValue) localValue).release();
+                }
+            } else if (tombstones.isStale(entry.getKey(), stamp)) {
+                caffeineCache.asMap().remove(entry.getKey(), localValue);
+            } else {
+                count++;
+            }
+        }
+        return count;
     }
 
     /**
-     * @param message
-     * @description 缓存变更时通知其他节点清理本地缓存
+     * @param keys
+     * @description 从redis批量读取并回填本地缓存，每批一次MGET（集群模式下按slot拆分），返回回填的数量
      * @version 1.0.0
      */
-    private void push(String message) {
-        redisTemplate.convertAndSend(topic, message);
+    public int reload(Collection<?> keys) {
+        int count = 0;
+        List<Object> batch = new ArrayList<>(RELOAD_BATCH_SIZE);
+        for (Object key : keys) {
+            batch.add(key);
+            if (batch.size() >= RELOAD_BATCH_SIZE) {
+                count += reloadBatch(batch);
+                batch = new ArrayList<>(RELOAD_BATCH_SIZE);
+            }
+        }
+        if (!batch.isEmpty()) {
+            count += reloadBatch(batch);
+        }
+        return count;
     }
 
-    @Override
-    public void clear() {
-        // 先清除redis中缓存数据，然后清除caffeine中的缓存，避免短时间内如果先清除caffeine缓存后其他请求会再从redis里加载到caffeine中
-        Set<Object> keys = redisTemplate.keys(this.name.concat(":*"));
-        if (keys != null && !keys.isEmpty()) {
-            logger.info("clear redis cache, the keys is:{}", keys.stream().map(x -> x.toString()).collect(Collectors.joining(",")));
-            redisTemplate.delete(keys);
+    private int reloadBatch(List<Object> keys) {
+        List<Object> cacheKeys = new ArrayList<>(keys.size());
+        for (Object key : keys) {
+            cacheKeys.add(redisKey(key));
+        }
+        long stamp = tombstones.stamp();
+        List<Object> values = multiGetRedis(cacheKeys);
+        Map<Object, Object> entries = new LinkedHashMap<>(keys.size() * 2);
+        for (int i = 0; i < keys.size(); i++) {
+            if (values.get(i) != null) {
+                entries.put(keys.get(i), values.get(i));
+            }
         }
+        return restore(entries, stamp);
+    }
 
-        push(JsonUtil.toJson(new CacheMessage(this.name, null)));
+    void setOffHeapStore(OffHeapStore offHeapStore) {
+        this.offHeapStore = offHeapStore;
+    }
 
-        caffeineCache.invalidateAll();
+    /**
+     * 本地缓存是否使用堆外存储
+     */
+    public boolean isOffHeap() {
+        return offHeapStore != null;
+    }
+
+    /**
+     * 堆外存储已使用的字节数，未开启时为0
+     */
+    public long getOffHeapUsedBytes() {
+        return offHeapStore == null ? 0 : offHeapStore.getUsedBytes();
+    }
+
+    /**
+     * 堆外容量不足或值超过单个内存块而保存在堆内的次数，未开启时为0
+     */
+    public long getOffHeapFallbackCount() {
+        return offHeapStore == null ? 0 : offHeapStore.getHeapFallbackCount();
+    }
+
+    void setExistenceFilter(ExistenceFilter existenceFilter) {
+        existence.setFilter(existenceFilter);
+    }
+
+    void setNegativeCache(Cache<Object, Object> negativeCache) {
+        existence.setNegativeCache(negativeCache);
+    }
+
+    /**
+     * @description 扫描redis中当前代的key加入布隆过滤器，完成后开始用于判断。扫描期间写入的key由写入及变更消息加入
+     * @version 1.0.0
+     */
+    void primeExistenceFilter() {
+        existence.prime(getCurrentKeyPrefix(), keyCleaner, (RedisSerializer<Object>) redisTemplate.getKeySerializer());
+    }
+
+    /**
+     * @description 替换为未初始化的空过滤器，之后需重新调用primeExistenceFilter，未开启时返回false
+     * @version 1.0.0
+     */
+    boolean resetExistenceFilter() {
+        return existence.resetFilter();
+    }
+
+    /**
+     * 布隆过滤器是否已初始化完成，未开启时返回false
+     */
+    public boolean isExistenceFilterReady() {
+        return existence.isFilterReady();
+    }
+
+    /**
+     * 布隆过滤器判断不存在而未访问redis的次数
+     */
+    public long getFilterRejectCount() {
+        return existence.getFilterRejectCount();
+    }
+
+    /**
+     * 不存在的key及空值的本地缓存命中次数
+     */
+    public long getNegativeHitCount() {
+        return existence.getNegativeHitCount();
+    }
+
+    /**
+     * 本地缓存的不存在的key及空值的数量，未开启时为0
+     */
+    public long getNegativeSize() {
+        return existence.getNegativeSize();
+    }
+
+    /**
+     * @param refreshLoader
+     * @description 设置后台刷新时redis已过期的加载方法，仅在配置了refreshAfterWrite时生效
+     * @version 1.0.0
+     */
+    public void setRefreshLoader(Function<Object, Object> refreshLoader) {
+        this.refreshLoader = refreshLoader;
+    }
+
+    @Override
+    public void put(Object key, Object value) {
+        if (!super.isAllowNullValues() && value == null) {
+            this.evict(key);
+            return;
+        }
+        Object storeValue = toStoreValue(value);
+        long expire = setRedisAndPush(key, storeValue, -1);
+
+        // 使本节点并发读取到的旧值不能覆盖
+        tombstones.invalidate(key);
+        putLocal(key, storeValue, expire);
     }
 
     /**
      * @param key
-     * @description 清理本地缓存
+     * @param storeValue
+     * @param expire
+     * @description 写入redis成功后更新本地缓存，开启不存在key的本地缓存时空值保存在其中
      * @version 1.0.0
      */
-    public void clearLocal(Object key) {
-        logger.info("clear local cache, the key is : {}", key);
-        if (key == null) {
-            clearAllLocal();
-        } else {
+    private void putLocal(Object key, Object storeValue, long expire) {
+        if (existence.isNegativeCaching() && storeValue instanceof NullValue) {
             caffeineCache.invalidate(key);
+            existence.putNull(key, storeValue);
+            return;
         }
+        caffeineCache.put(key, toLocal(storeValue));
+        capLocal(key, expire);
+        pin(key, expire);
     }
 
     /**
-     * 清除本地所有缓存
+     * @param keys
+     * @description 批量获取缓存，本地缓存未命中的key通过一次MGET（集群模式下按slot拆分）从redis获取并回填本地缓存，
+     * 返回已命中的key和值，缓存的空值以null返回
+     * @version 1.0.0
      */
-    public void clearAllLocal() {
-        logger.info("clear local all cache");
-        caffeineCache.invalidateAll();
+    public <K> Map<K, Object> getAll(Collection<K> keys) {
+        return getAll(keys, null);
     }
 
     /**
-     * 清除redis缓存
-     *
-     * @param prefix
+     * @param keys
+     * @param bulkLoader 两级缓存都未命中的key交由此回调批量加载，加载结果写入缓存，可为空
+     * @description 批量获取缓存
+     * @version 1.0.0
      */
-    public void clearRedis(String prefix) {
-        // 先查找
-        Assert.hasText(prefix, "'prefix' must has value!");
-        // 判断不出来是哪种模式，尝试一下集群模式
-        String pattern = name + ":" + (prefix.endsWith("*") ? prefix : prefix + "*");
-
-        Set<Object> keys = redisTemplate.keys(pattern);
-        if (null != keys && !keys.isEmpty()) {
-            logger.info("clear redis cache, the keys is:{}", keys.stream().map(x -> x.toString()).collect(Collectors.joining(",")));
-            redisTemplate.delete(keys);
+    public <K> Map<K, Object> getAll(Collection<K> keys, Function<Collection<K>, Map<K, ?>> bulkLoader) {
+        Map<K, Object> result = new LinkedHashMap<>(keys.size() * 2);
+        List<K> misses = new ArrayList<>();
+        List<K> loadKeys = new ArrayList<>();
+        long stamp = tombstones.stamp();
+        for (K key : keys) {
+            Object value = fromLocal(caffeineCache.getIfPresent(key));
+            if (value != null) {
+                l1HitCount.increment();
+                result.put(key, fromStoreValue(value));
+                continue;
+            }
+            Object negative = existence.get(key);
+            if (negative instanceof NullValue) {
+                l1HitCount.increment();
+                result.put(key, null);
+            } else if (negative == ABSENT) {
+                missCount.increment();
+                loadKeys.add(key);
+            } else if (existence.isFilteredOut(key)) {
+                missCount.increment();
+                existence.put(key, ABSENT, stamp);
+                loadKeys.add(key);
+            } else {
+                misses.add(key);
+            }
         }
+
+        if (!misses.isEmpty()) {
+            List<Object> cacheKeys = new ArrayList<>(misses.size());
+            for (K key : misses) {
+                cacheKeys.add(redisKey(key));
+            }
+            List<Object> values = multiGetRedis(cacheKeys);
+            for (int i = 0; i < misses.size(); i++) {
+                K key = misses.get(i);
+                Object value = values.get(i);
+                if (value != null) {
+                    l2HitCount.increment();
+                    install(key, value, stamp, 0);
+                    result.put(key, fromStoreValue(value));
+                } else {
+                    missCount.increment();
+                    existence.put(key, ABSENT, stamp);
+                    loadKeys.add(key);
+                }
+            }
+        }
+        if (bulkLoader == null || loadKeys.isEmpty()) {
+            return result;
+        }
+
+        Map<K, ?> loaded;
+        try {
+            loaded = bulkLoader.apply(loadKeys);
+        } catch (RuntimeException e) {
+            throw new ValueRetrievalException(loadKeys, null, e);
+        }
+        Map<Object, Object> toPut = new LinkedHashMap<>();
+        for (K key : loadKeys) {
+            Object value = loaded == null ? null : loaded.get(key);
+            if (value != null || super.isAllowNullValues()) {
+                toPut.put(key, value);
+                result.put(key, value);
+            }
+        }
+        putAll(toPut);
+        return result;
+    }
+
+    /**
+     * @param values
+     * @description 批量写入缓存，redis写入使用pipeline（集群模式下逐个写入），所有key合并为一条变更消息发送
+     * @version 1.0.0
+     */
+    public void putAll(Map<?, ?> values) {
+        if (values.isEmpty()) {
+            return;
+        }
+        Map<Object, Object> storeValues = new LinkedHashMap<>(values.size() * 2);
+        for (Map.Entry<?, ?> entry : values.entrySet()) {
+            if (!super.isAllowNullValues() && entry.getValue() == null) {
+                this.evict(entry.getKey());
+                continue;
+            }
+            storeValues.put(entry.getKey(), toStoreValue(entry.getValue()));
+        }
+        if (storeValues.isEmpty()) {
+            return;
+        }
+        Map<Object, Long> expires = new HashMap<>(storeValues.size() * 2);
+        storeValues.forEach((key, value) -> expires.put(key, getRedisExpire(key, value)));
+        if (isCluster()) {
+            // jedis集群连接不支持pipeline
+            storeValues.forEach((key, value) -> setRedis(key, value, -1, expires.get(key)));
+        } else {
+            RedisSerializer<Object> keySerializer = (RedisSerializer<Object>) redisTemplate.getKeySerializer();
+            RedisSerializer<Object> valueSerializer = (RedisSerializer<Object>) redisTemplate.getValueSerializer();
+            redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                for (Map.Entry<Object, Object> entry : storeValues.entrySet()) {
+                    Object cacheKey = redisKey(entry.getKey());
+                    byte[] rawKey = keySerializer.serialize(cacheKey);
+                    byte[] rawValue = valueSerializer.serialize(entry.getValue());
+                    long expire = expires.get(entry.getKey());
+                    if (expire > 0) {
+                        connection.pSetEx(rawKey, expire, rawValue);
+                    } else {
+                        connection.set(rawKey, rawValue);
+                    }
+                    if (hotKeys != null) {
+                        hotKeys.sync(connection, keySerializer, entry.getKey(), cacheKey, rawValue, expire);
+                    }
+                }
+                return null;
+            });
+        }
+        push(new CacheMessage(this.name, new ArrayList<>(storeValues.keySet())));
+
+        for (Object key : storeValues.keySet()) {
+            // 使本节点并发读取到的旧值不能覆盖
+            tombstones.invalidate(key);
+            existence.markExists(key);
+        }
+        if (existence.isNegativeCaching()) {
+            // 空值单独保存
+            storeValues.entrySet().removeIf(entry -> {
+                if (!(entry.getValue() instanceof NullValue)) {
+                    return false;
+                }
+                caffeineCache.invalidate(entry.getKey());
+                existence.putNull(entry.getKey(), entry.getValue());
+                return true;
+            });
+        }
+        if (offHeapStore == null) {
+            caffeineCache.putAll(storeValues);
+        } else {
+            storeValues.forEach((key, value) -> caffeineCache.put(key, offHeapStore.toLocal(value)));
+        }
+        if (varExpiration != null) {
+            expires.forEach(this::capLocal);
+        }
+    }
+
+    /**
+     * @param cacheKeys
+     * @description 批量读取redis，返回值与cacheKeys顺序一致，集群模式下按slot分组，每个slot一次MGET
+     * @version 1.0.0
+     */
+    private List<Object> multiGetRedis(List<Object> cacheKeys) {
+        if (!isCluster()) {
+            List<Object> values = redisTemplate.opsForValue().multiGet(cacheKeys);
+            if (values == null) {
+                return Collections.nCopies(cacheKeys.size(), null);
+            }
+            List<Object> result = new ArrayList<>(values.size());
+            for (Object value : values) {
+                result.add(RedisCacheValue.unwrap(value));
+            }
+            return result;
+        }
+        RedisSerializer<Object> keySerializer = (RedisSerializer<Object>) redisTemplate.getKeySerializer();
+        Map<Integer, List<Integer>> slots = new HashMap<>();
+        for (int i = 0; i < cacheKeys.size(); i++) {
+            int slot = ClusterSlotHashUtil.calculateSlot(keySerializer.serialize(cacheKeys.get(i)));
+            slots.computeIfAbsent(slot, k -> new ArrayList<>()).add(i);
+        }
+        Object[] values = new Object[cacheKeys.size()];
+        for (List<Integer> indexes : slots.values()) {
+            List<Object> slotKeys = new ArrayList<>(indexes.size());
+            for (Integer index : indexes) {
+                slotKeys.add(cacheKeys.get(index));
+            }
+            List<Object> slotValues = redisTemplate.opsForValue().multiGet(slotKeys);
+            if (slotValues == null) {
+                continue;
+            }
+            for (int i = 0; i < indexes.size(); i++) {
+                values[indexes.get(i)] = RedisCacheValue.unwrap(slotValues.get(i));
+            }
+        }
+        return Arrays.asList(values);
+    }
+
+    private boolean isCluster() {
+        Boolean result = this.cluster;
+        if (result == null) {
+            result = redisTemplate.execute((RedisCallback<Boolean>) connection -> connection instanceof RedisClusterConnection);
+            this.cluster = result;
+        }
+        return Boolean.TRUE.equals(result);
+    }
+
+    @Override
+    public ValueWrapper putIfAbsent(Object key, Object value) {
+        Object storeValue = toStoreValue(value);
+        long expire = getRedisExpire(key, storeValue);
+        // redis中的SET NX保证多实例下只有一个写入成功
+        Object prevValue = writeRedis(PUT_IF_ABSENT_SCRIPT, key, storeValue, expire);
+        if (prevValue == null) {
+            tombstones.invalidate(key);
+            putLocal(key, storeValue, expire);
+        }
+        return toValueWrapper(RedisCacheValue.unwrap(prevValue));
+    }
+
+    /**
+     * @param script     PUT_SCRIPT或PUT_IF_ABSENT_SCRIPT
+     * @param key
+     * @param storeValue
+     * @param expire
+     * @description 写入redis并通知其他节点。非集群模式下未开启批量发送时，SET和PUBLISH在一个脚本中执行，只需一次网络往返；
+     * 集群模式下不支持脚本，使用SET（NX）后再发布。putIfAbsent时返回已存在的值，写入成功返回null
+     * @version 1.0.0
+     */
+    private Object writeRedis(RedisScript<byte[]> script, Object key, Object storeValue, long expire) {
+        boolean absent = script == PUT_IF_ABSENT_SCRIPT;
+        Object cacheKey = redisKey(key);
+        CacheMessage message = new CacheMessage(this.name, key);
+        long start = System.nanoTime();
+        Object prevValue = null;
+        boolean written;
+        if (isCluster()) {
+            if (absent) {
+                Boolean ok = expire > 0
+                        ? redisTemplate.opsForValue().setIfAbsent(cacheKey, storeValue, expire, TimeUnit.MILLISECONDS)
+                        : redisTemplate.opsForValue().setIfAbsent(cacheKey, storeValue);
+                written = Boolean.TRUE.equals(ok);
+                prevValue = written ? null : getRedisRaw(cacheKey);
+            } else if (expire > 0) {
+                redisTemplate.opsForValue().set(cacheKey, storeValue, expire, TimeUnit.MILLISECONDS);
+                written = true;
+            } else {
+                redisTemplate.opsForValue().set(cacheKey, storeValue);
+                written = true;
+            }
+            if (written) {
+                push(message);
+            }
+        } else {
+            byte[] body = serverTracking ? null : messagePublisher.encodeInline(message);
+            RedisSerializer<Object> valueSerializer = (RedisSerializer<Object>) redisTemplate.getValueSerializer();
+            Object[] args = body == null
+                    ? new Object[]{valueSerializer.serialize(storeValue), rawExpire(expire)}
+                    : new Object[]{valueSerializer.serialize(storeValue), rawExpire(expire), messagePublisher.getRawTopic(), body};
+            byte[] raw;
+            try {
+                raw = redisTemplate.execute(script, RAW_SERIALIZER, RAW_SERIALIZER,
+                        Collections.singletonList(cacheKey), args);
+            } catch (RuntimeException e) {
+                if (body != null) {
+                    messagePublisher.recordInline(1, false);
+                }
+                throw e;
+            }
+            written = raw == null;
+            prevValue = written ? null : valueSerializer.deserialize(raw);
+            if (written && body != null) {
+                messagePublisher.recordInline(1, true);
+            } else if (written) {
+                push(message);
+            }
+        }
+        if (written) {
+            existence.markExists(key);
+            syncReplicas(key, cacheKey, storeValue, expire);
+        }
+        metricsRecorder.recordRedis(this.name, CacheMetricsRecorder.OPERATION_SET, System.nanoTime() - start);
+        return prevValue;
+    }
+
+    private static byte[] rawExpire(long expire) {
+        return String.valueOf(Math.max(0L, expire)).getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public void evict(Object key) {
+        // 先清除redis中缓存数据，然后清除caffeine中的缓存，避免短时间内如果先清除caffeine缓存后其他请求会再从redis里加载到caffeine中
+        long start = System.nanoTime();
+        Object cacheKey = redisKey(key);
+        if (hotKeys != null && hotKeys.hasReplicas()) {
+            // 曾经是热点的key可能还有副本，一并删除
+            redisTemplate.delete(hotKeys.replicaKeys(cacheKey, true));
+        } else {
+            redisTemplate.delete(cacheKey);
+        }
+        metricsRecorder.recordRedis(this.name, CacheMetricsRecorder.OPERATION_DEL, System.nanoTime() - start);
+
+        push(new CacheMessage(this.name, key));
+
+        tombstones.invalidate(key);
+        caffeineCache.invalidate(key);
+        existence.invalidate(key);
+    }
+
+    @Override
+    protected Object lookup(Object key) {
+        if (hotKeys != null) {
+            hotKeys.record(key);
+        }
+
+        Object value = fromLocal(caffeineCache.getIfPresent(key));
+        if (value != null) {
+            l1HitCount.increment();
+            if (traceSampleRate > 0) {
+                trace("load from caffeine", key, value);
+            }
+            return value;
+        }
+        Object negative = existence.get(key);
+        if (negative instanceof NullValue) {
+            l1HitCount.increment();
+            return negative;
+        }
+        if (negative == ABSENT) {
+            missCount.increment();
+            return null;
+        }
+        long stamp = tombstones.stamp();
+        if (existence.isFilteredOut(key)) {
+            missCount.increment();
+            existence.put(key, ABSENT, stamp);
+            return null;
+        }
+
+        Object cacheKey = redisKey(key);
+        long[] redisTtl = {0};
+        value = RedisCacheValue.unwrap(getRedisRaw(key, cacheKey, expiryPolicy == null ? null : redisTtl));
+        if (value != null) {
+            l2HitCount.increment();
+            if (traceSampleRate > 0) {
+                trace("load from redis and put in caffeine", key, value);
+            }
+            install(key, value, stamp, redisTtl[0]);
+        } else {
+            missCount.increment();
+            existence.put(key, ABSENT, stamp);
+        }
+        return value;
+    }
+
+    /**
+     * @param event
+     * @param key
+     * @param value
+     * @description 按采样率输出访问日志，只输出值的类型，避免格式化整个值
+     * @version 1.0.0
+     */
+    private void trace(String event, Object key, Object value) {
+        if (logger.isDebugEnabled() && ThreadLocalRandom.current().nextDouble() < traceSampleRate) {
+            logger.debug("{},name:{},key:{},valueType:{}", event, this.name, key, value.getClass().getName());
+        }
+    }
+
+    void setMetricsRecorder(CacheMetricsRecorder metricsRecorder) {
+        this.metricsRecorder = metricsRecorder;
+    }
+
+    public Cache<Object, Object> getCaffeineCache() {
+        return caffeineCache;
+    }
+
+    /**
+     * 本地缓存命中次数
+     */
+    public long getL1HitCount() {
+        return l1HitCount.sum();
+    }
+
+    /**
+     * 本地缓存未命中、redis命中次数
+     */
+    public long getL2HitCount() {
+        return l2HitCount.sum();
+    }
+
+    /**
+     * 两级缓存都未命中次数
+     */
+    public long getMissCount() {
+        return missCount.sum();
+    }
+
+    private Object redisKey(Object key) {
+        if (!nonStringKeys && !(key instanceof String)) {
+            nonStringKeys = true;
+        }
+        String realKey = key.toString();
+        String prefix = this.cachePrefix;
+        // 如果不包含逗号
+        return keyspace().concat(StringUtils.isEmpty(prefix) ? realKey : prefix.concat(":").concat(realKey));
+    }
+
+    /**
+     * @param key
+     * @param cacheKey
+     * @param redisTtl 为空时不读取剩余过期时间
+     * @description 读取redis中的原始值，热点key开启副本时随机读取主key或某个副本，副本不存在时再读主key
+     * @version 1.0.0
+     */
+    private Object getRedisRaw(Object key, Object cacheKey, long[] redisTtl) {
+        Object readKey = hotKeys == null ? cacheKey : hotKeys.readKey(key, cacheKey);
+        Object raw = redisTtl == null ? getRedisRaw(readKey) : getRedisRaw(readKey, redisTtl);
+        if (raw == null && readKey != cacheKey) {
+            raw = redisTtl == null ? getRedisRaw(cacheKey) : getRedisRaw(cacheKey, redisTtl);
+        }
+        return raw;
+    }
+
+    private void syncReplicas(Object key, Object cacheKey, Object raw, long expire) {
+        if (hotKeys != null) {
+            hotKeys.sync(key, cacheKey, raw, expire);
+        }
+    }
+
+    private void pin(Object key, long redisTtl) {
+        if (hotKeys != null) {
+            hotKeys.pin(key, redisTtl);
+        }
+    }
+
+    /**
+     * @param refreshExecutor
+     * @description 统计窗口结束时确认热点key，并在后台从redis刷新热点key的本地缓存
+     * @version 1.0.0
+     */
+    void hotKeyTick(Executor refreshExecutor) {
+        if (hotKeys != null) {
+            hotKeys.tick(refreshExecutor, this::redisKey, this::refreshHotKey);
+        }
+    }
+
+    private void refreshHotKey(Object key, boolean promote) {
+        Object cacheKey = redisKey(key);
+        long[] redisTtl = {0};
+        long stamp = tombstones.stamp();
+        Object raw = getRedisRaw(cacheKey, redisTtl);
+        if (raw != null) {
+            hotKeys.write(cacheKey, raw, redisTtl[0]);
+        }
+        if (promote) {
+            hotKeys.promote(key);
+        }
+        if (raw == null) {
+            // redis中已失效，下次访问时走完整的加载流程
+            return;
+        }
+        install(key, RedisCacheValue.unwrap(raw), stamp, redisTtl[0]);
+    }
+
+    /**
+     * @param key
+     * @param value
+     * @param stamp    读取redis前的版本
+     * @param redisTtl
+     * @description 将redis中读到的值回填本地缓存。写入后再检查版本，检查之前发生的失效由此处移除，之后发生的失效会清理写入的值
+     * @version 1.0.0
+     */
+    private void install(Object key, Object value, long stamp, long redisTtl) {
+        if (existence.isNegativeCaching() && value instanceof NullValue) {
+            existence.put(key, value, stamp);
+            return;
+        }
+        Object localValue = toLocal(value);
+        caffeineCache.put(key, localValue);
+        if (tombstones.isStale(key, stamp)) {
+            caffeineCache.asMap().remove(key, localValue);
+            logger.debug("reject stale value read before invalidation, the key is:{}", key);
+            return;
+        }
+        capLocal(key, redisTtl);
+        pin(key, redisTtl);
+    }
+
+    /**
+     * 当前的热点key，未开启热点检测时为空
+     */
+    public Set<Object> getHotKeys() {
+        return hotKeys == null ? Collections.emptySet() : hotKeys.getHotKeys();
+    }
+
+    /**
+     * 当前代的key在redis中的完整前缀，包含缓存名、代号及cachePrefix，用于扫描预热
+     */
+    String getCurrentKeyPrefix() {
+        String prefix = this.cachePrefix;
+        return StringUtils.isEmpty(prefix) ? keyspace() : keyspace().concat(prefix).concat(":");
+    }
+
+    /**
+     * 本地缓存是否已达到最大容量（按权重时为最大权重），未配置容量时始终返回false
+     */
+    boolean isFull() {
+        Optional<Policy.Eviction<Object, Object>> eviction = caffeineCache.policy().eviction();
+        if (!eviction.isPresent()) {
+            return false;
+        }
+        OptionalLong weightedSize = eviction.get().weightedSize();
+        long used = weightedSize.isPresent() ? weightedSize.getAsLong() : caffeineCache.estimatedSize();
+        return used >= eviction.get().getMaximum();
+    }
+
+    /**
+     * 当前代的key前缀，代号为0时与未开启命名空间版本时相同，兼容已有数据
+     */
+    private String keyspace() {
+        long current = this.generation;
+        return current > 0 ? this.name.concat(":v").concat(String.valueOf(current)).concat(":") : this.name.concat(":");
+    }
+
+    private byte[] rawGenerationKey() {
+        RedisSerializer<Object> keySerializer = (RedisSerializer<Object>) redisTemplate.getKeySerializer();
+        return keySerializer.serialize(this.name.concat(GENERATION_SUFFIX));
+    }
+
+    private long readGeneration() {
+        byte[] raw = redisTemplate.execute((RedisCallback<byte[]>) connection -> connection.get(rawGenerationKey()));
+        return raw == null ? 0 : Long.parseLong(new String(raw, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @param newGeneration
+     * @description 收到其他节点的清空消息时更新本地缓存的代号，只会递增
+     * @version 1.0.0
+     */
+    public void updateGeneration(long newGeneration) {
+        long current;
+        do {
+            current = this.generation;
+            if (newGeneration <= current) {
+                return;
+            }
+        } while (!GENERATION_UPDATER.compareAndSet(this, current, newGeneration));
+        logger.debug("update cache generation, the cache name is:{}, the generation is:{}", this.name, newGeneration);
+    }
+
+    public long getGeneration() {
+        return generation;
+    }
+
+    /**
+     * @param key
+     * @param storeValue
+     * @description 写入redis的过期时间，配置了ExpiryPolicy时按条目计算，开启抖动时每个key随机提前
+     * @version 1.0.0
+     */
+    private long getRedisExpire(Object key, Object storeValue) {
+        ExpiryPolicy policy = this.expiryPolicy;
+        long expire = policy == null ? redisExpires : policy.redisExpire(this.name, key, fromStoreValue(storeValue), redisExpires);
+        return JitterExpiry.jitter(expire, expireJitter);
+    }
+
+    /**
+     * @param key
+     * @param storeValue
+     * @param loadNanos 加载耗时，开启提前重算时与值一起写入，小于0时只写入值
+     * @description 写入redis并通知其他节点，返回使用的过期时间
+     * @version 1.0.0
+     */
+    private long setRedisAndPush(Object key, Object storeValue, long loadNanos) {
+        long expire = getRedisExpire(key, storeValue);
+        writeRedis(PUT_SCRIPT, key, envelope(storeValue, loadNanos, expire), expire);
+        return expire;
+    }
+
+    private Object envelope(Object storeValue, long loadNanos, long expire) {
+        if (earlyRecompute && loadNanos >= 0 && expire > 0) {
+            return new RedisCacheValue(storeValue, TimeUnit.NANOSECONDS.toMillis(loadNanos),
+                    System.currentTimeMillis() + expire);
+        }
+        return storeValue;
+    }
+
+    /**
+     * 只写入redis，不发送消息
+     */
+    private void setRedis(Object key, Object storeValue, long loadNanos, long expire) {
+        long start = System.nanoTime();
+        storeValue = envelope(storeValue, loadNanos, expire);
+        Object cacheKey = redisKey(key);
+        if (expire > 0) {
+            redisTemplate.opsForValue().set(cacheKey, storeValue, expire, TimeUnit.MILLISECONDS);
+        } else {
+            redisTemplate.opsForValue().set(cacheKey, storeValue);
+        }
+        syncReplicas(key, cacheKey, storeValue, expire);
+        metricsRecorder.recordRedis(this.name, CacheMetricsRecorder.OPERATION_SET, System.nanoTime() - start);
+    }
+
+    private Object getRedis(Object cacheKey) {
+        return RedisCacheValue.unwrap(getRedisRaw(cacheKey));
+    }
+
+    /**
+     * @param cacheKey
+     * @param redisTtl 返回剩余的过期时间（单位:毫秒），不过期时小于等于0
+     * @description 读取redis中的原始值及剩余过期时间，非集群模式下GET和PTTL在一次pipeline中发送
+     * @version 1.0.0
+     */
+    private Object getRedisRaw(Object cacheKey, long[] redisTtl) {
+        long start = System.nanoTime();
+        Object value;
+        Long ttl;
+        if (isCluster()) {
+            value = redisTemplate.opsForValue().get(cacheKey);
+            ttl = value == null ? null : redisTemplate.getExpire(cacheKey, TimeUnit.MILLISECONDS);
+        } else {
+            byte[] rawKey = ((RedisSerializer<Object>) redisTemplate.getKeySerializer()).serialize(cacheKey);
+            List<Object> results = redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                connection.get(rawKey);
+                connection.pTtl(rawKey);
+                return null;
+            });
+            value = results.get(0);
+            ttl = (Long) results.get(1);
+        }
+        metricsRecorder.recordRedis(this.name, CacheMetricsRecorder.OPERATION_GET, System.nanoTime() - start);
+        redisTtl[0] = ttl == null ? 0 : ttl;
+        return value;
+    }
+
+    /**
+     * @param key
+     * @param redisTtl
+     * @description 本地缓存的过期时间不超过redis中的剩余过期时间
+     * @version 1.0.0
+     */
+    private void capLocal(Object key, long redisTtl) {
+        if (varExpiration == null || redisTtl <= 0) {
+            return;
+        }
+        OptionalLong current = varExpiration.getExpiresAfter(key, TimeUnit.MILLISECONDS);
+        if (current.isPresent() && current.getAsLong() > redisTtl) {
+            varExpiration.setExpiresAfter(key, redisTtl, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    void setExpiryPolicy(ExpiryPolicy expiryPolicy) {
+        this.expiryPolicy = expiryPolicy;
+    }
+
+    void setExpireJitter(double expireJitter) {
+        this.expireJitter = expireJitter;
+    }
+
+    /**
+     * redis中的原始值，开启提前重算时可能为RedisCacheValue
+     */
+    private Object getRedisRaw(Object cacheKey) {
+        long start = System.nanoTime();
+        Object value = redisTemplate.opsForValue().get(cacheKey);
+        metricsRecorder.recordRedis(this.name, CacheMetricsRecorder.OPERATION_GET, System.nanoTime() - start);
+        return value;
+    }
+
+    /**
+     * @param message
+     * @description 缓存变更时通知其他节点清理本地缓存
+     * @version 1.0.0
+     */
+    private void push(CacheMessage message) {
+        if (serverTracking && (message.getKey() != null || message.getKeys() != null)) {
+            // key的变更由redis服务端推送失效通知
+            return;
+        }
+        messagePublisher.publish(message);
+    }
+
+    @Override
+    public void clear() {
+        if (namespaceVersion) {
+            clearByGeneration();
+            return;
+        }
+        // 先清除redis中缓存数据，然后清除caffeine中的缓存，避免短时间内如果先清除caffeine缓存后其他请求会再从redis里加载到caffeine中
+        keyCleaner.clear(this.name.concat(":*"));
+
+        push(new CacheMessage(this.name, (Object) null));
+
+        invalidateAllLocal();
+    }
+
+    /**
+     * @description 异步清空缓存，redis中的key在后台分批删除，删除完成后通知各节点清理本地缓存
+     * @version 1.0.0
+     */
+    public CompletableFuture<Long> clearAsync() {
+        if (namespaceVersion) {
+            clearByGeneration();
+            return CompletableFuture.completedFuture(0L);
+        }
+        return keyCleaner.clearAsync(this.name.concat(":*")).thenApply(deleted -> {
+            push(new CacheMessage(this.name, (Object) null));
+            invalidateAllLocal();
+            return deleted;
+        });
+    }
+
+    /**
+     * @description 递增缓存的代号使旧代的key全部失效，旧代的key依靠过期时间自然淘汰
+     * @version 1.0.0
+     */
+    private void clearByGeneration() {
+        long oldGeneration = this.generation;
+        String oldKeyspace = keyspace();
+        Long newGeneration = redisTemplate.execute((RedisCallback<Long>) connection -> connection.incr(rawGenerationKey()));
+        updateGeneration(newGeneration);
+
+        CacheMessage message = new CacheMessage(this.name, (Object) null);
+        message.setGeneration(newGeneration);
+        push(message);
+
+        invalidateAllLocal();
+        if (redisExpires <= 0) {
+            // 没有过期时间的旧代key不会自然淘汰，在后台删除
+            if (oldGeneration > 0) {
+                keyCleaner.clearAsync(oldKeyspace.concat("*"));
+            } else {
+                // 第0代的命名空间为name:，同样匹配新代的name:vN:，需排除
+                keyCleaner.clearAsync(oldKeyspace.concat("*"), rawKey -> !isVersionedKey(rawKey), null);
+            }
+        }
+    }
+
+    /**
+     * @param key
+     * @description 清理本地缓存
+     * @version 1.0.0
+     */
+    public void clearLocal(Object key) {
+        logger.debug("clear local cache, the key is : {}", key);
+        if (key == null) {
+            clearAllLocal();
+        } else {
+            existence.addToFilter(key);
+            tombstones.invalidate(key);
+            caffeineCache.invalidate(key);
+            existence.invalidate(key);
+        }
+    }
+
+    /**
+     * @param redisKey
+     * @description 根据redis中的key清理本地缓存，用于redis服务端推送的失效通知，key不属于当前缓存时返回false
+     * @version 1.0.0
+     */
+    public boolean clearLocalByRedisKey(String redisKey) {
+        String namePrefix = this.name.concat(":");
+        if (!redisKey.startsWith(namePrefix)) {
+            return false;
+        }
+        String rest = redisKey.substring(namePrefix.length());
+        if (namespaceVersion) {
+            // 任意代的key都对应同一个本地缓存key
+            int end = rest.indexOf(':');
+            if (end > 1 && rest.charAt(0) == 'v' && isDigits(rest, 1, end)) {
+                rest = rest.substring(end + 1);
+            }
+        }
+        if (!StringUtils.isEmpty(cachePrefix)) {
+            String prefix = cachePrefix.concat(":");
+            if (!rest.startsWith(prefix)) {
+                return false;
+            }
+            rest = rest.substring(prefix.length());
+        }
+        String realKey = rest;
+        // 按toString计算位置，与原始key一致
+        existence.addToFilter(realKey);
+        tombstones.invalidate(realKey);
+        caffeineCache.invalidate(realKey);
+        existence.invalidate(realKey);
+        if (nonStringKeys) {
+            // 本地缓存中存在非字符串的key，只能按toString匹配，无法按key记录失效版本
+            tombstones.invalidateAll();
+            caffeineCache.asMap().keySet().removeIf(key -> !(key instanceof String) && realKey.equals(key.toString()));
+            existence.invalidateIf(key -> !(key instanceof String) && realKey.equals(key.toString()));
+        }
+        return true;
+    }
+
+    private static boolean isDigits(String value, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (!Character.isDigit(value.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    void setServerTracking(boolean serverTracking) {
+        this.serverTracking = serverTracking;
+    }
+
+    /**
+     * 当前缓存在redis中的key前缀
+     */
+    public String getRedisKeyPrefix() {
+        return this.name.concat(":");
+    }
+
+    /**
+     * 清除本地所有缓存
+     */
+    public void clearAllLocal() {
+        logger.debug("clear local all cache");
+        invalidateAllLocal();
+    }
+
+    private void invalidateAllLocal() {
+        tombstones.invalidateAll();
+        caffeineCache.invalidateAll();
+        existence.invalidateAll();
+    }
+
+    /**
+     * @param rawKey
+     * @description redis中的key是否属于某一代的命名空间，即name:vN:开头
+     * @version 1.0.0
+     */
+    private boolean isVersionedKey(byte[] rawKey) {
+        String redisKey = new String(rawKey, StandardCharsets.UTF_8);
+        int start = this.name.length() + 1;
+        if (!redisKey.startsWith(this.name.concat(":v"))) {
+            return false;
+        }
+        int end = redisKey.indexOf(':', start + 1);
+        if (end <= start + 1) {
+            return false;
+        }
+        for (int i = start + 1; i < end; i++) {
+            if (!Character.isDigit(redisKey.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 清除redis缓存
+     *
+     * @param prefix
+     */
+    public void clearRedis(String prefix) {
+        // 先查找
+        Assert.hasText(prefix, "'prefix' must has value!");
+        String pattern = keyspace() + (prefix.endsWith("*") ? prefix : prefix + "*");
+
+        keyCleaner.clear(pattern);
+    }
+
+    /**
+     * @param prefix
+     * @description 在后台线程中分批删除当前代中以prefix开头的redis缓存，返回删除的key数量
+     * @version 1.0.0
+     */
+    public CompletableFuture<Long> clearRedisAsync(String prefix) {
+        Assert.hasText(prefix, "'prefix' must has value!");
+        String pattern = keyspace() + (prefix.endsWith("*") ? prefix : prefix + "*");
+        return keyCleaner.clearAsync(pattern);
     }
-}
\ No newline at end of file
+}
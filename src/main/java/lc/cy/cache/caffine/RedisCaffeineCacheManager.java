@@ -8,23 +8,40 @@ package lc.cy.cache.caffine;
  * @author: liuchen11
  */
 
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.CacheLoader;
 import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalListener;
+import com.github.benmanes.caffeine.cache.Weigher;
+import lc.cy.cache.codec.CacheMessageCodec;
+import lc.cy.cache.codec.JsonCacheMessageCodec;
 import lc.cy.cache.config.CacheRedisCaffeineProperties;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
 import org.springframework.cache.Cache;
 import org.springframework.cache.CacheManager;
-import org.springframework.data.redis.connection.RedisClusterConnection;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.serializer.RedisSerializer;
 import org.springframework.util.Assert;
 import org.springframework.util.StringUtils;
 
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 
-public class RedisCaffeineCacheManager implements CacheManager {
+public class RedisCaffeineCacheManager implements CacheManager, InitializingBean, DisposableBean {
 
     private final Logger logger = LoggerFactory.getLogger(RedisCaffeineCacheManager.class);
 
@@ -38,18 +55,160 @@ public class RedisCaffeineCacheManager implements CacheManager {
 
     private Set<String> cacheNames;
 
+    private CacheMessagePublisher messagePublisher;
+
+    private RedisKeyCleaner keyCleaner;
+
+    // 缓存异步接口访问redis的有界线程池
+    private ThreadPoolExecutor asyncExecutor;
+
+    // 本地缓存后台刷新的有界线程池
+    private ThreadPoolExecutor refreshExecutor;
+
+    private volatile CacheMetricsRecorder metricsRecorder = CacheMetricsRecorder.NONE;
+
+    private volatile boolean serverTracking;
+
+    // 按条目计算过期时间，为空时使用配置的过期时间
+    private volatile ExpiryPolicy expiryPolicy;
+
+    // 按权重淘汰时估算条目大小
+    private volatile Weigher<Object, Object> weigher = EstimatingWeigher.INSTANCE;
+
+    // 本地缓存的内存预算，未配置总预算且未开启堆内存检查时为空
+    private CacheMemoryBudget memoryBudget;
+
+    private ScheduledExecutorService budgetScheduler;
+
+    // 本地缓存快照，未配置路径时为空
+    private CacheSnapshotStore snapshotStore;
+
+    private ScheduledExecutorService snapshotScheduler;
+
+    // 缓存变更消息的分发通道
+    private CacheInvalidationDispatcher invalidationDispatcher;
+
+    // 热点key检测的定时任务，未开启时为空
+    private ScheduledExecutorService hotKeyScheduler;
+
+    // 启动预热，未开启时为空
+    private CacheWarmer cacheWarmer;
+
+    // 扫描redis初始化布隆过滤器的线程池，没有缓存开启布隆过滤器时为空
+    private ThreadPoolExecutor filterExecutor;
+
+    // 已提交但尚未开始扫描的缓存，重复重置时只扫描一次
+    private final Set<String> pendingPrimes = ConcurrentHashMap.newKeySet();
+
+    private List<Consumer<RedisCaffeineCache>> cacheCreationListeners = new CopyOnWriteArrayList<>();
+
+    // 当前实例的唯一标识，随缓存变更消息发送，用于忽略自己发出的消息
+    private final String instanceId = UUID.randomUUID().toString();
+
     public RedisCaffeineCacheManager(CacheRedisCaffeineProperties cacheRedisCaffeineProperties,
                                      RedisTemplate<Object, Object> redisTemplate) {
+        this(cacheRedisCaffeineProperties, redisTemplate, new JsonCacheMessageCodec(redisTemplate));
+    }
+
+    public RedisCaffeineCacheManager(CacheRedisCaffeineProperties cacheRedisCaffeineProperties,
+                                     RedisTemplate<Object, Object> redisTemplate, CacheMessageCodec messageCodec) {
         super();
         this.cacheRedisCaffeineProperties = cacheRedisCaffeineProperties;
         this.redisTemplate = redisTemplate;
         this.dynamic = cacheRedisCaffeineProperties.isDynamic();
         this.cacheNames = cacheRedisCaffeineProperties.getCacheNames();
+        CacheRedisCaffeineProperties.Redis redis = cacheRedisCaffeineProperties.getRedis();
+        this.invalidationDispatcher = new CacheInvalidationDispatcher(redis.getListenerLanes(), redis.getListenerLaneCapacity(),
+                this::resetLocal);
+        this.messagePublisher = new CacheMessagePublisher(redisTemplate, redis.getTopic(), instanceId, messageCodec,
+                redis.getPublishWindow(), redis.getPublishBatchSize());
+        this.keyCleaner = new RedisKeyCleaner(redisTemplate, redis.getScanCount(), redis.getClearBatchSize(),
+                redis.getClearRateLimit());
+        // 队列满时拒绝，由缓存以失败的future返回，不在调用线程中访问redis
+        this.asyncExecutor = CacheAsyncOperations.newExecutor(redis);
+        AtomicInteger refreshThreadNumber = new AtomicInteger(1);
+        this.refreshExecutor = new ThreadPoolExecutor(redis.getRefreshPoolSize(), redis.getRefreshPoolSize(), 60L, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(redis.getRefreshQueueCapacity()), r -> {
+            Thread t = new Thread(r, "redis-caffeine-refresh-" + refreshThreadNumber.getAndIncrement());
+            t.setDaemon(true);
+            return t;
+        }, new ThreadPoolExecutor.AbortPolicy());
+        this.refreshExecutor.allowCoreThreadTimeOut(true);
+        if (cacheRedisCaffeineProperties.getBudget().getMaximumWeight() > 0 || cacheRedisCaffeineProperties.getBudget().getHeapPressureThreshold() > 0) {
+            this.memoryBudget = new CacheMemoryBudget(cacheRedisCaffeineProperties.getBudget().getMaximumWeight(),
+                    "adaptive".equalsIgnoreCase(cacheRedisCaffeineProperties.getBudget().getMode()),
+                    cacheRedisCaffeineProperties.getBudget().getShares(), cacheRedisCaffeineProperties.getBudget().getHeapPressureThreshold(),
+                    this::configuredMaximum);
+            this.budgetScheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "redis-caffeine-budget");
+                t.setDaemon(true);
+                return t;
+            });
+            long interval = cacheRedisCaffeineProperties.getBudget().getInterval() > 0 ? cacheRedisCaffeineProperties.getBudget().getInterval() : 10000;
+            this.budgetScheduler.scheduleWithFixedDelay(this::rebalance, interval, interval, TimeUnit.MILLISECONDS);
+        }
+        if (StringUtils.hasText(cacheRedisCaffeineProperties.getSnapshot().getPath())) {
+            this.snapshotStore = new CacheSnapshotStore(cacheRedisCaffeineProperties.getSnapshot().getPath(),
+                    cacheRedisCaffeineProperties.getSnapshot().getEntries(), cacheRedisCaffeineProperties.getSnapshot().getMaxAge(),
+                    cacheRedisCaffeineProperties.getSnapshot().isVerify(), (RedisSerializer<Object>) redisTemplate.getValueSerializer());
+        }
+        if (cacheRedisCaffeineProperties.getHotKey().getThreshold() > 0) {
+            this.hotKeyScheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "redis-caffeine-hotkey");
+                t.setDaemon(true);
+                return t;
+            });
+            long window = cacheRedisCaffeineProperties.getHotKey().getWindow() > 0 ? cacheRedisCaffeineProperties.getHotKey().getWindow() : 10000;
+            this.hotKeyScheduler.scheduleWithFixedDelay(this::hotKeyTick, window, window, TimeUnit.MILLISECONDS);
+        }
+        if (cacheRedisCaffeineProperties.getWarmUp().isEnabled()) {
+            this.cacheWarmer = new CacheWarmer(keyCleaner, (RedisSerializer<Object>) redisTemplate.getKeySerializer(),
+                    cacheRedisCaffeineProperties.getWarmUp().getThreads(), cacheRedisCaffeineProperties.getWarmUp().getRateLimit());
+        }
+        Map<String, CacheRedisCaffeineProperties.Caffeine> caffeineMap = cacheRedisCaffeineProperties.getCaffeine();
+        if (caffeineMap != null && caffeineMap.values().stream().anyMatch(caffeine -> caffeine.getExistenceFilter().isEnabled())) {
+            this.filterExecutor = new ThreadPoolExecutor(1, 1, 10L, TimeUnit.SECONDS, new LinkedBlockingQueue<>(1000), r -> {
+                Thread t = new Thread(r, "redis-caffeine-filter");
+                t.setDaemon(true);
+                return t;
+            });
+            this.filterExecutor.allowCoreThreadTimeOut(true);
+        }
+    }
+
+    /**
+     * 启动时读取本地缓存快照，并在后台预热cacheNames中配置的缓存
+     */
+    @Override
+    public void afterPropertiesSet() {
+        if (snapshotStore != null) {
+            snapshotStore.load(name -> (RedisCaffeineCache) getCache(name));
+        }
+        if (cacheWarmer != null) {
+            List<RedisCaffeineCache> caches = new ArrayList<>();
+            for (String name : cacheRedisCaffeineProperties.getCacheNames()) {
+                Cache cache = getCache(name);
+                if (cache != null) {
+                    caches.add((RedisCaffeineCache) cache);
+                }
+            }
+            cacheWarmer.warmUp(caches);
+        }
+        long interval = cacheRedisCaffeineProperties.getSnapshot().getInterval();
+        if (snapshotStore != null && interval > 0) {
+            this.snapshotScheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "redis-caffeine-snapshot");
+                t.setDaemon(true);
+                return t;
+            });
+            this.snapshotScheduler.scheduleWithFixedDelay(() -> snapshotStore.save(getCaches()), interval, interval,
+                    TimeUnit.MILLISECONDS);
+        }
     }
 
     @Override
     public Cache getCache(String name) {
-        if(!StringUtils.isEmpty(name)) {
+        if(StringUtils.isEmpty(name)) {
             return null;
         }
         Cache cache = cacheMap.get(name);
@@ -60,35 +219,213 @@ public class RedisCaffeineCacheManager implements CacheManager {
             return cache;
         }
 
-        cache = new RedisCaffeineCache(name, redisTemplate, caffeineCache(name), cacheRedisCaffeineProperties);
-        Cache oldCache = cacheMap.putIfAbsent(name, cache);
+        // 只有放入cacheMap的实例才会创建，并发获取同一个缓存时不会多读取一次代号或多分配堆外内存
+        RedisCaffeineCache[] created = new RedisCaffeineCache[1];
+        cache = cacheMap.computeIfAbsent(name, key -> created[0] = createCache(key));
+        RedisCaffeineCache createdCache = created[0];
+        if (cache != createdCache) {
+            return cache;
+        }
         logger.debug("create cache instance, the cache name is : {}", name);
-        return oldCache == null ? cache : oldCache;
+        bindMetrics(createdCache);
+        if (caffeineConfig(name).getExistenceFilter().isEnabled() && filterExecutor != null) {
+            primeExistenceFilter(createdCache);
+        }
+        if (memoryBudget != null && memoryBudget.isGlobal()) {
+            memoryBudget.rebalance(getCaches());
+        }
+        for (Consumer<RedisCaffeineCache> listener : cacheCreationListeners) {
+            listener.accept(createdCache);
+        }
+        return createdCache;
     }
 
-    public com.github.benmanes.caffeine.cache.Cache<Object, Object> caffeineCache(String name) {
-        Map<String, CacheRedisCaffeineProperties.Caffeine> caffeineMap = cacheRedisCaffeineProperties.getCaffeine();
-        CacheRedisCaffeineProperties.Caffeine caffeineConfig = caffeineMap.get(name);
-        if (caffeineConfig == null) {
-            caffeineConfig = new CacheRedisCaffeineProperties.Caffeine();
+    /**
+     * @param name
+     * @description 创建缓存实例，在cacheMap.computeIfAbsent中执行，不能再访问cacheMap中的其他缓存
+     * @version 1.0.0
+     */
+    private RedisCaffeineCache createCache(String name) {
+        CacheRedisCaffeineProperties.Caffeine caffeineConfig = caffeineConfig(name);
+        RedisRefreshLoader refreshLoader = caffeineConfig.getRefreshAfterWrite() > 0
+                ? new RedisRefreshLoader(refreshExecutor) : null;
+        OffHeapStore offHeapStore = caffeineConfig.getOffHeap().getCapacity() > 0 ? new OffHeapStore(caffeineConfig.getOffHeap().getCapacity(),
+                caffeineConfig.getOffHeap().getThreshold(), (RedisSerializer<Object>) redisTemplate.getValueSerializer()) : null;
+        RedisCaffeineCache cache = new RedisCaffeineCache(name, redisTemplate, caffeineAsyncCache(name, refreshLoader, offHeapStore),
+                cacheRedisCaffeineProperties, messagePublisher, keyCleaner, asyncExecutor);
+        cache.setOffHeapStore(offHeapStore);
+        if (refreshLoader != null) {
+            refreshLoader.bind(cache);
+        }
+        cache.setServerTracking(serverTracking);
+        cache.setExpiryPolicy(expiryPolicy);
+        cache.setExpireJitter(expireJitter(name));
+        if (caffeineConfig.getNegative().getExpire() > 0) {
+            cache.setNegativeCache(Caffeine.newBuilder()
+                    .expireAfterWrite(caffeineConfig.getNegative().getExpire(), TimeUnit.MILLISECONDS)
+                    .maximumSize(caffeineConfig.getNegative().getMaximumSize() > 0 ? caffeineConfig.getNegative().getMaximumSize() : 10000)
+                    .build());
         }
-        Caffeine<Object, Object> cacheBuilder = Caffeine.newBuilder();
-        if (caffeineConfig.getExpireAfterAccess() > 0) {
-            cacheBuilder.expireAfterAccess(caffeineConfig.getExpireAfterAccess(), TimeUnit.MILLISECONDS);
+        if (caffeineConfig.getExistenceFilter().isEnabled() && filterExecutor != null) {
+            cache.setExistenceFilter(new ExistenceFilter(caffeineConfig.getExistenceFilter().getExpectedKeys(),
+                    caffeineConfig.getExistenceFilter().getFpp()));
+        }
+        return cache;
+    }
+
+    public com.github.benmanes.caffeine.cache.Cache<Object, Object> caffeineCache(String name) {
+        return caffeineAsyncCache(name).synchronous();
+    }
+
+    public AsyncCache<Object, Object> caffeineAsyncCache(String name) {
+        return caffeineAsyncCache(name, null, null);
+    }
+
+    /**
+     * @param name
+     * @param loader       刷新使用的加载器，为空时不开启refreshAfterWrite
+     * @param offHeapStore 堆外存储，为空时值保存在堆内
+     * @description 创建本地缓存
+     * @version 1.0.0
+     */
+    private AsyncCache<Object, Object> caffeineAsyncCache(String name, CacheLoader<Object, Object> loader,
+                                                          OffHeapStore offHeapStore) {
+        CacheRedisCaffeineProperties.Caffeine caffeineConfig = caffeineConfig(name);
+        Caffeine<Object, Object> cacheBuilder = Caffeine.newBuilder().recordStats();
+        double expireJitter = expireJitter(name);
+        // 热点key需要按条目延长本地缓存的过期时间
+        boolean variableExpire = expireJitter > 0 || cacheRedisCaffeineProperties.getHotKey().getThreshold() > 0;
+        ExpiryPolicy policy = this.expiryPolicy;
+        JitterExpiry expiry = null;
+        if (policy != null) {
+            expiry = new PolicyExpiry(name, policy, caffeineConfig.getExpireAfterWrite(),
+                    caffeineConfig.getExpireAfterAccess(), redisExpires(name), expireJitter);
+        } else if (variableExpire) {
+            expiry = new JitterExpiry(caffeineConfig.getExpireAfterWrite(), caffeineConfig.getExpireAfterAccess(), expireJitter);
         }
-        if (caffeineConfig.getExpireAfterWrite() > 0) {
-            cacheBuilder.expireAfterWrite(caffeineConfig.getExpireAfterWrite(), TimeUnit.MILLISECONDS);
+        if (expiry != null) {
+            cacheBuilder.expireAfter(expiry);
+        } else {
+            if (caffeineConfig.getExpireAfterAccess() > 0) {
+                cacheBuilder.expireAfterAccess(caffeineConfig.getExpireAfterAccess(), TimeUnit.MILLISECONDS);
+            }
+            if (caffeineConfig.getExpireAfterWrite() > 0) {
+                cacheBuilder.expireAfterWrite(caffeineConfig.getExpireAfterWrite(), TimeUnit.MILLISECONDS);
+            }
         }
         if (caffeineConfig.getInitialCapacity() > 0) {
             cacheBuilder.initialCapacity(caffeineConfig.getInitialCapacity());
         }
-        if (caffeineConfig.getMaximumSize() > 0) {
+        long maximumWeight = memoryBudget != null && memoryBudget.isGlobal()
+                ? memoryBudget.initialMaximum(cacheMap.size() + 1) : caffeineConfig.getMaximumWeight();
+        if (offHeapStore != null) {
+            // 按堆外占用淘汰，移除时释放堆外槽位
+            cacheBuilder.maximumWeight(caffeineConfig.getOffHeap().getCapacity()).weigher(offHeapStore.weigher());
+        } else if (maximumWeight > 0) {
+            cacheBuilder.maximumWeight(maximumWeight).weigher(weigher);
+        } else if (caffeineConfig.getMaximumSize() > 0) {
             cacheBuilder.maximumSize(caffeineConfig.getMaximumSize());
         }
+        RemovalListener<Object, Object> removalListener = removalListener(offHeapStore, expiry);
+        if (removalListener != null) {
+            cacheBuilder.removalListener(removalListener);
+        }
+        if (loader == null) {
+            // refreshAfterWrite必须指定加载器
+            return cacheBuilder.buildAsync();
+        }
         if (caffeineConfig.getRefreshAfterWrite() > 0) {
             cacheBuilder.refreshAfterWrite(caffeineConfig.getRefreshAfterWrite(), TimeUnit.MILLISECONDS);
         }
-        return cacheBuilder.build();
+        return cacheBuilder.buildAsync(loader);
+    }
+
+    /**
+     * @param offHeapStore
+     * @param expiry
+     * @description 本地缓存条目移除时释放堆外槽位、删除记录的写入过期时刻，都不需要时返回null
+     * @version 1.0.0
+     */
+    private static RemovalListener<Object, Object> removalListener(OffHeapStore offHeapStore, JitterExpiry expiry) {
+        boolean trackingWrite = expiry != null && expiry.isTrackingWrite();
+        if (offHeapStore == null) {
+            return trackingWrite ? expiry::onRemoval : null;
+        }
+        if (!trackingWrite) {
+            return offHeapStore::onRemoval;
+        }
+        return (key, value, cause) -> {
+            offHeapStore.onRemoval(key, value, cause);
+            expiry.onRemoval(key, value, cause);
+        };
+    }
+
+    /**
+     * 未配置总预算时缓存配置的最大容量，按权重时为字节数，否则为条目数
+     */
+    private long configuredMaximum(String name) {
+        CacheRedisCaffeineProperties.Caffeine caffeineConfig = caffeineConfig(name);
+        return caffeineConfig.getMaximumWeight() > 0 ? caffeineConfig.getMaximumWeight() : caffeineConfig.getMaximumSize();
+    }
+
+    /**
+     * @param cache
+     * @description 在后台扫描redis初始化缓存的布隆过滤器，失败时过滤器不生效
+     * @version 1.0.0
+     */
+    private void primeExistenceFilter(RedisCaffeineCache cache) {
+        if (!pendingPrimes.add(cache.getName())) {
+            return;
+        }
+        try {
+            filterExecutor.execute(() -> {
+                // 开始扫描后的重置会中止本次扫描，需重新提交
+                pendingPrimes.remove(cache.getName());
+                try {
+                    cache.primeExistenceFilter();
+                } catch (RuntimeException e) {
+                    logger.warn("prime existence filter failed, the cache name is:{}", cache.getName(), e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            pendingPrimes.remove(cache.getName());
+            logger.warn("prime existence filter rejected, the cache name is:{}", cache.getName());
+        }
+    }
+
+    private void hotKeyTick() {
+        for (RedisCaffeineCache cache : getCaches()) {
+            try {
+                cache.hotKeyTick(refreshExecutor);
+            } catch (RuntimeException e) {
+                logger.warn("detect hot keys failed, the cache name is:{}", cache.getName(), e);
+            }
+        }
+    }
+
+    private void rebalance() {
+        try {
+            memoryBudget.rebalance(getCaches());
+        } catch (RuntimeException e) {
+            logger.warn("rebalance local cache memory budget failed", e);
+        }
+    }
+
+    private long redisExpires(String name) {
+        Map<String, Long> expires = cacheRedisCaffeineProperties.getRedis().getExpires();
+        Long expire = expires == null ? null : expires.get(name);
+        return expire == null ? cacheRedisCaffeineProperties.getRedis().getDefaultExpires() : expire;
+    }
+
+    private double expireJitter(String name) {
+        double expireJitter = caffeineConfig(name).getExpireJitter();
+        return expireJitter >= 0 ? expireJitter : cacheRedisCaffeineProperties.getRedis().getExpireJitter();
+    }
+
+    private CacheRedisCaffeineProperties.Caffeine caffeineConfig(String name) {
+        Map<String, CacheRedisCaffeineProperties.Caffeine> caffeineMap = cacheRedisCaffeineProperties.getCaffeine();
+        CacheRedisCaffeineProperties.Caffeine caffeineConfig = caffeineMap == null ? null : caffeineMap.get(name);
+        return caffeineConfig == null ? new CacheRedisCaffeineProperties.Caffeine() : caffeineConfig;
     }
 
     @Override
@@ -110,37 +447,161 @@ public class RedisCaffeineCacheManager implements CacheManager {
     }
 
     public void clearRedis(String cacheName, String prefix) {
-        // 先查找
         Assert.hasText(prefix, "'prefix' must has value!");
-        // 判断不出来是哪种模式，尝试一下集群模式
-        String pattern = (cacheName + ":" + prefix + "*");
-        RedisClusterConnection conn = null;
-        try {
-            conn = redisTemplate.getConnectionFactory().getClusterConnection();
-
-            Set<byte[]> keys = conn.keys(pattern.getBytes());
-            logger.info("Got keys for key:{},size:{}", pattern, keys.size());
-            // 先转换下
-            Set<Object> sets = new HashSet<>();
-            Iterator<byte[]> iter = keys.iterator();
-            while (iter.hasNext()) {
-                String key = new String(iter.next());
-                logger.info(" Start to del key:{}", key);
-                sets.add(key);
-            }
-            redisTemplate.delete(sets);
+        Cache cache = cacheMap.get(cacheName);
+        if (cache != null) {
+            // 缓存实例知道当前的命名空间代号
+            ((RedisCaffeineCache) cache).clearRedis(prefix);
+            return;
+        }
+        keyCleaner.clear(cacheName + ":" + prefix + "*");
+    }
+
+    /**
+     * @param cacheName
+     * @param prefix
+     * @description 在后台线程中分批删除redis缓存，返回删除的key数量
+     * @version 1.0.0
+     */
+    public CompletableFuture<Long> clearRedisAsync(String cacheName, String prefix) {
+        Assert.hasText(prefix, "'prefix' must has value!");
+        Cache cache = cacheMap.get(cacheName);
+        if (cache != null) {
+            // 与clearRedis一致，由缓存实例按当前代号的命名空间删除
+            return ((RedisCaffeineCache) cache).clearRedisAsync(prefix);
+        }
+        return keyCleaner.clearAsync(cacheName + ":" + prefix + "*");
+    }
+
+    /**
+     * @param redisKey
+     * @description 根据redis中的key清理对应缓存的本地缓存
+     * @version 1.0.0
+     */
+    public void clearLocalByRedisKey(String redisKey) {
+        for (Cache cache : cacheMap.values()) {
+            ((RedisCaffeineCache) cache).clearLocalByRedisKey(redisKey);
+        }
+    }
+
+    /**
+     * 清除所有缓存的本地缓存
+     */
+    public void clearAllLocal() {
+        for (Cache cache : cacheMap.values()) {
+            ((RedisCaffeineCache) cache).clearAllLocal();
+        }
+    }
+
+    /**
+     * @description 变更消息可能丢失时（消息积压丢弃、stream被裁剪、推送连接断开）清除所有缓存的本地缓存，
+     * 并重置布隆过滤器后在后台重新扫描，避免丢失的写入被误判为不存在
+     * @version 1.0.0
+     */
+    public void resetAllLocal() {
+        for (Cache cache : cacheMap.values()) {
+            resetLocal((RedisCaffeineCache) cache);
+        }
+    }
+
+    /**
+     * @param cacheName
+     * @description 变更消息可能丢失时清除指定缓存的本地缓存，并重置布隆过滤器
+     * @version 1.0.0
+     */
+    public void resetLocal(String cacheName) {
+        if (StringUtils.isEmpty(cacheName)) {
+            return;
+        }
+        Cache cache = cacheMap.get(cacheName);
+        if (cache != null) {
+            resetLocal((RedisCaffeineCache) cache);
+        }
+    }
+
+    private void resetLocal(RedisCaffeineCache cache) {
+        cache.clearAllLocal();
+        if (cache.resetExistenceFilter() && filterExecutor != null) {
+            primeExistenceFilter(cache);
+        }
+    }
+
+    /**
+     * @param expiryPolicy
+     * @description 设置按条目计算过期时间的策略，只对之后创建的缓存生效
+     * @version 1.0.0
+     */
+    public void setExpiryPolicy(ExpiryPolicy expiryPolicy) {
+        this.expiryPolicy = expiryPolicy;
+    }
+
+    /**
+     * @param weigher
+     * @description 设置按权重淘汰时估算条目大小的方法，只对之后创建的缓存生效
+     * @version 1.0.0
+     */
+    public void setWeigher(Weigher<Object, Object> weigher) {
+        this.weigher = weigher == null ? EstimatingWeigher.INSTANCE : weigher;
+    }
+
+    /**
+     * @param serverTracking
+     * @description 开启后key级别的变更不再发布消息，由redis服务端推送失效通知，清空及代号变更仍发布消息
+     * @version 1.0.0
+     */
+    public void setServerTracking(boolean serverTracking) {
+        this.serverTracking = serverTracking;
+        for (Cache cache : cacheMap.values()) {
+            ((RedisCaffeineCache) cache).setServerTracking(serverTracking);
+        }
+    }
+
+    public boolean isServerTracking() {
+        return serverTracking;
+    }
+
+    /**
+     * @param listener
+     * @description 注册缓存实例创建后的回调
+     * @version 1.0.0
+     */
+    public void addCacheCreationListener(Consumer<RedisCaffeineCache> listener) {
+        cacheCreationListeners.add(listener);
+    }
+
+    /**
+     * 启动预热，未开启预热时返回null
+     */
+    public CacheWarmer getCacheWarmer() {
+        return cacheWarmer;
+    }
+
+    /**
+     * 已创建的缓存实例
+     */
+    public Collection<RedisCaffeineCache> getCaches() {
+        List<RedisCaffeineCache> caches = new ArrayList<>(cacheMap.size());
+        for (Cache cache : cacheMap.values()) {
+            caches.add((RedisCaffeineCache) cache);
+        }
+        return caches;
+    }
+
+    /**
+     * @param cacheName
+     * @param generation
+     * @description 更新缓存的命名空间代号
+     * @version 1.0.0
+     */
+    public void updateGeneration(String cacheName, long generation) {
+        if(StringUtils.isEmpty(cacheName)) {
             return;
-        } catch (Exception e) {
-            logger.error("It is not cluster mode!{},{}", cacheName, prefix, e);
-        } finally {
-            if (null != conn)
-                conn.close();
         }
-        Set<Object> keys = redisTemplate.keys(cacheName + ":" + prefix + "*");
-        logger.info("Got keys for key:{},size:{}", pattern, keys.size());
-        if (null != keys && !keys.isEmpty()) {
-            redisTemplate.delete(keys);
+        Cache cache = cacheMap.get(cacheName);
+        if (cache == null) {
+            return;
         }
+        ((RedisCaffeineCache) cache).updateGeneration(generation);
     }
 
     public void clearCaffeine(String cacheName) {
@@ -153,4 +614,66 @@ public class RedisCaffeineCacheManager implements CacheManager {
         redisCaffeineCache.clearAllLocal();
     }
 
+    /**
+     * @param metricsRecorder
+     * @description 设置指标记录器，已创建的缓存立即注册，之后创建的缓存在创建时注册
+     * @version 1.0.0
+     */
+    public synchronized void setMetricsRecorder(CacheMetricsRecorder metricsRecorder) {
+        this.metricsRecorder = metricsRecorder;
+        metricsRecorder.bindPublisher(messagePublisher);
+        metricsRecorder.bindDispatcher(invalidationDispatcher);
+        for (Cache cache : cacheMap.values()) {
+            bindMetrics((RedisCaffeineCache) cache);
+        }
+    }
+
+    private synchronized void bindMetrics(RedisCaffeineCache cache) {
+        cache.setMetricsRecorder(metricsRecorder);
+        metricsRecorder.bindCache(cache);
+    }
+
+    public CacheMetricsRecorder getMetricsRecorder() {
+        return metricsRecorder;
+    }
+
+    public String getInstanceId() {
+        return instanceId;
+    }
+
+    public CacheInvalidationDispatcher getInvalidationDispatcher() {
+        return invalidationDispatcher;
+    }
+
+    public CacheMessagePublisher getMessagePublisher() {
+        return messagePublisher;
+    }
+
+    @Override
+    public void destroy() {
+        if (hotKeyScheduler != null) {
+            hotKeyScheduler.shutdownNow();
+        }
+        if (cacheWarmer != null) {
+            cacheWarmer.shutdown();
+        }
+        if (filterExecutor != null) {
+            filterExecutor.shutdownNow();
+        }
+        if (snapshotScheduler != null) {
+            snapshotScheduler.shutdownNow();
+        }
+        if (snapshotStore != null) {
+            snapshotStore.save(getCaches());
+        }
+        messagePublisher.shutdown();
+        invalidationDispatcher.shutdown();
+        keyCleaner.shutdown();
+        asyncExecutor.shutdown();
+        refreshExecutor.shutdown();
+        if (budgetScheduler != null) {
+            budgetScheduler.shutdownNow();
+        }
+    }
+
 }
\ No newline at end of file
@@ -1,5 +1,11 @@
 package lc.cy.cache.caffine;
 
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
 /**
  * 类名称： <br>
  * 类描述： <br>
@@ -12,7 +18,7 @@ public class RedisCaffeineTemplate {
     private RedisCaffeineCacheManager redisCaffeineManager;
 
     public RedisCaffeineTemplate(RedisCaffeineCacheManager redisCaffeineCacheManager) {
-        this.redisCaffeineManager = redisCaffeineManager;
+        this.redisCaffeineManager = redisCaffeineCacheManager;
     }
 
     /**
@@ -23,6 +29,16 @@ public class RedisCaffeineTemplate {
 
     }
 
+    /**
+     * 异步清除redis缓存，返回删除的key数量
+     *
+     * @param cacheName
+     * @param prefix
+     */
+    public CompletableFuture<Long> clearRedisKeysAsync(String cacheName, String prefix) {
+        return redisCaffeineManager.clearRedisAsync(cacheName, prefix);
+    }
+
     /**
      * 清除caffeine缓存
      *
@@ -52,4 +68,55 @@ public class RedisCaffeineTemplate {
     public void put(String cacheName, String key, Object value) {
         redisCaffeineManager.getCache(cacheName).put(key, value);
     }
+
+    /**
+     * 批量获取缓存，返回已命中的key和值
+     *
+     * @param cacheName
+     * @param keys
+     */
+    public Map<String, Object> getAll(String cacheName, Collection<String> keys) {
+        return getAll(cacheName, keys, null);
+    }
+
+    /**
+     * 批量获取缓存，两级缓存都未命中的key交由bulkLoader加载并写入缓存
+     *
+     * @param cacheName
+     * @param keys
+     * @param bulkLoader
+     */
+    public Map<String, Object> getAll(String cacheName, Collection<String> keys,
+                                      Function<Collection<String>, Map<String, ?>> bulkLoader) {
+        return ((RedisCaffeineCache) redisCaffeineManager.getCache(cacheName)).getAll(keys, bulkLoader);
+    }
+
+    /**
+     * 设置本地缓存后台刷新时redis已过期的加载方法，需配置refreshAfterWrite
+     *
+     * @param cacheName
+     * @param refreshLoader
+     */
+    public void setRefreshLoader(String cacheName, Function<Object, Object> refreshLoader) {
+        ((RedisCaffeineCache) redisCaffeineManager.getCache(cacheName)).setRefreshLoader(refreshLoader);
+    }
+
+    /**
+     * 当前的热点key，需配置hotKey.threshold
+     *
+     * @param cacheName
+     */
+    public Set<Object> getHotKeys(String cacheName) {
+        return ((RedisCaffeineCache) redisCaffeineManager.getCache(cacheName)).getHotKeys();
+    }
+
+    /**
+     * 批量存入缓存
+     *
+     * @param cacheName
+     * @param values
+     */
+    public void putAll(String cacheName, Map<String, ?> values) {
+        ((RedisCaffeineCache) redisCaffeineManager.getCache(cacheName)).putAll(values);
+    }
 }
@@ -0,0 +1,298 @@
+package lc.cy.cache.caffine;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.redis.connection.ClusterSlotHashUtil;
+import org.springframework.data.redis.connection.RedisClusterConnection;
+import org.springframework.data.redis.connection.RedisClusterNode;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ScanOptions;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisCluster;
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.ScanParams;
+import redis.clients.jedis.ScanResult;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
+import java.util.function.Predicate;
+
+/**
+ * 类名称：RedisKeyCleaner <br>
+ * 类描述：基于SCAN游标分批扫描key并用UNLINK分批删除，集群模式下逐个master节点扫描，避免KEYS阻塞redis及一次性加载所有key <br>
+ */
+public class RedisKeyCleaner {
+
+    private final Logger logger = LoggerFactory.getLogger(RedisKeyCleaner.class);
+
+    // 每删除多少个key打印一次进度
+    private static final long PROGRESS_LOG_INTERVAL = 10000;
+
+    private RedisTemplate<Object, Object> redisTemplate;
+
+    // 每次SCAN的COUNT
+    private int scanCount;
+
+    // 每批UNLINK的key数量
+    private int batchSize;
+
+    // 每秒最多删除的key数量，小于等于0时不限速
+    private long rateLimit;
+
+    private ExecutorService executor;
+
+    public RedisKeyCleaner(RedisTemplate<Object, Object> redisTemplate, int scanCount, int batchSize, long rateLimit) {
+        this.redisTemplate = redisTemplate;
+        this.scanCount = scanCount > 0 ? scanCount : 1000;
+        this.batchSize = batchSize > 0 ? batchSize : 500;
+        this.rateLimit = rateLimit;
+        AtomicInteger threadNumber = new AtomicInteger(1);
+        this.executor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(1000), r -> {
+            Thread t = new Thread(r, "redis-caffeine-cleaner-" + threadNumber.getAndIncrement());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * @param pattern
+     * @description 同步删除匹配pattern的所有key，返回删除的key数量
+     * @version 1.0.0
+     */
+    public long clear(String pattern) {
+        return clear(pattern, null);
+    }
+
+    /**
+     * @param pattern
+     * @param progress 每批删除后回调当前累计删除数量，可为空
+     * @description 同步删除匹配pattern的所有key，返回删除的key数量
+     * @version 1.0.0
+     */
+    public long clear(String pattern, LongConsumer progress) {
+        return clear(pattern, null, progress);
+    }
+
+    /**
+     * @param pattern
+     * @param filter   只删除返回true的key，可为空
+     * @param progress 每批删除后回调当前累计删除数量，可为空
+     * @description 同步删除匹配pattern且通过filter的所有key，返回删除的key数量。线程被中断（如shutdown）时停止删除
+     * @version 1.0.0
+     */
+    public long clear(String pattern, Predicate<byte[]> filter, LongConsumer progress) {
+        long start = System.currentTimeMillis();
+        AtomicLong deleted = new AtomicLong();
+        scanWhile(pattern, scanned -> {
+            if (Thread.currentThread().isInterrupted()) {
+                return false;
+            }
+            List<byte[]> keys = scanned;
+            if (filter != null) {
+                keys = new ArrayList<>(scanned.size());
+                for (byte[] key : scanned) {
+                    if (filter.test(key)) {
+                        keys.add(key);
+                    }
+                }
+            }
+            long count = unlink(keys);
+            long total = deleted.addAndGet(count);
+            if (progress != null) {
+                progress.accept(total);
+            }
+            if (total / PROGRESS_LOG_INTERVAL != (total - count) / PROGRESS_LOG_INTERVAL) {
+                logger.info("clearing redis keys, the pattern is:{}, deleted:{}", pattern, total);
+            }
+            return throttle(total, start);
+        });
+        if (Thread.currentThread().isInterrupted()) {
+            logger.warn("clear redis keys interrupted, the pattern is:{}, deleted:{}, cost:{}ms", pattern, deleted.get(),
+                    System.currentTimeMillis() - start);
+        } else {
+            logger.info("clear redis keys finished, the pattern is:{}, deleted:{}, cost:{}ms", pattern, deleted.get(),
+                    System.currentTimeMillis() - start);
+        }
+        return deleted.get();
+    }
+
+    /**
+     * @param pattern
+     * @description 在后台线程中删除匹配pattern的所有key
+     * @version 1.0.0
+     */
+    public CompletableFuture<Long> clearAsync(String pattern) {
+        return clearAsync(pattern, null);
+    }
+
+    public CompletableFuture<Long> clearAsync(String pattern, LongConsumer progress) {
+        return clearAsync(pattern, null, progress);
+    }
+
+    /**
+     * @param pattern
+     * @param filter   只删除返回true的key，可为空
+     * @param progress 每批删除后回调当前累计删除数量，可为空
+     * @description 在后台线程中删除匹配pattern且通过filter的所有key
+     * @version 1.0.0
+     */
+    public CompletableFuture<Long> clearAsync(String pattern, Predicate<byte[]> filter, LongConsumer progress) {
+        try {
+            return CompletableFuture.supplyAsync(() -> clear(pattern, filter, progress), executor);
+        } catch (RejectedExecutionException e) {
+            // 排队的删除任务已满或已关闭，以失败的future返回，不向调用方同步抛出
+            logger.warn("clear redis keys rejected, the pattern is:{}", pattern);
+            CompletableFuture<Long> failed = new CompletableFuture<>();
+            failed.completeExceptionally(e);
+            return failed;
+        }
+    }
+
+    /**
+     * @param pattern
+     * @param consumer 每扫描到batchSize个key回调一次
+     * @description 游标方式扫描匹配pattern的key，集群模式下逐个扫描master节点
+     * @version 1.0.0
+     */
+    public void scan(String pattern, Consumer<List<byte[]>> consumer) {
+        scanWhile(pattern, keys -> {
+            consumer.accept(keys);
+            return true;
+        });
+    }
+
+    /**
+     * @param pattern
+     * @param consumer 每扫描到batchSize个key回调一次，返回false时停止扫描
+     * @description 游标方式扫描匹配pattern的key，集群模式下逐个扫描master节点
+     * @version 1.0.0
+     */
+    public void scanWhile(String pattern, Predicate<List<byte[]>> consumer) {
+        redisTemplate.execute((RedisCallback<Object>) connection -> {
+            if (connection instanceof RedisClusterConnection) {
+                scanCluster((RedisClusterConnection) connection, pattern, consumer);
+            } else {
+                scanStandalone(connection, pattern, consumer);
+            }
+            return null;
+        });
+    }
+
+    private void scanStandalone(RedisConnection connection, String pattern, Predicate<List<byte[]>> consumer) {
+        ScanOptions options = ScanOptions.scanOptions().match(pattern).count(scanCount).build();
+        List<byte[]> batch = new ArrayList<>(batchSize);
+        // jedis的游标关闭时会关闭所属连接，连接由redisTemplate.execute统一释放，这里不能再关闭游标，
+        // 否则连接归还连接池后会被再次关闭，导致其他线程取到已关闭的连接
+        Cursor<byte[]> cursor = connection.scan(options);
+        while (cursor.hasNext()) {
+            batch.add(cursor.next());
+            if (batch.size() >= batchSize) {
+                if (!consumer.test(batch)) {
+                    return;
+                }
+                batch = new ArrayList<>(batchSize);
+            }
+        }
+        if (!batch.isEmpty()) {
+            consumer.test(batch);
+        }
+    }
+
+    private void scanCluster(RedisClusterConnection connection, String pattern, Predicate<List<byte[]>> consumer) {
+        // jedis集群连接不支持跨节点SCAN，直接使用各master节点的连接池逐个扫描
+        Map<String, JedisPool> pools = ((JedisCluster) connection.getNativeConnection()).getClusterNodes();
+        ScanParams params = new ScanParams().match(pattern.getBytes(StandardCharsets.UTF_8)).count(scanCount);
+        for (RedisClusterNode node : connection.clusterGetNodes()) {
+            if (!node.isMaster()) {
+                continue;
+            }
+            JedisPool pool = pools.get(node.getHost() + ":" + node.getPort());
+            if (pool == null) {
+                logger.warn("no connection pool for cluster node:{}", node);
+                continue;
+            }
+            List<byte[]> batch = new ArrayList<>(batchSize);
+            try (Jedis jedis = pool.getResource()) {
+                byte[] cursor = ScanParams.SCAN_POINTER_START_BINARY;
+                do {
+                    ScanResult<byte[]> result = jedis.scan(cursor, params);
+                    batch.addAll(result.getResult());
+                    if (batch.size() >= batchSize) {
+                        if (!consumer.test(batch)) {
+                            return;
+                        }
+                        batch = new ArrayList<>(batchSize);
+                    }
+                    cursor = result.getCursorAsBytes();
+                } while (!Arrays.equals(cursor, ScanParams.SCAN_POINTER_START_BINARY));
+            }
+            if (!batch.isEmpty() && !consumer.test(batch)) {
+                return;
+            }
+        }
+    }
+
+    private long unlink(List<byte[]> keys) {
+        if (keys.isEmpty()) {
+            return 0;
+        }
+        Long count = redisTemplate.execute((RedisCallback<Long>) connection -> {
+            if (!(connection instanceof RedisClusterConnection)) {
+                return connection.unlink(keys.toArray(new byte[keys.size()][]));
+            }
+            // 集群模式下跨slot的多key命令会被拆成逐个key执行，按slot分组后每组一条UNLINK
+            Map<Integer, List<byte[]>> slots = new HashMap<>();
+            for (byte[] key : keys) {
+                slots.computeIfAbsent(ClusterSlotHashUtil.calculateSlot(key), slot -> new ArrayList<>()).add(key);
+            }
+            long total = 0;
+            for (List<byte[]> group : slots.values()) {
+                Long unlinked = connection.unlink(group.toArray(new byte[group.size()][]));
+                total += unlinked == null ? 0 : unlinked;
+            }
+            return total;
+        });
+        return count == null ? 0 : count;
+    }
+
+    /**
+     * 按rateLimit限速，等待期间被中断时返回false，保留中断标记
+     */
+    private boolean throttle(long deleted, long start) {
+        if (rateLimit <= 0) {
+            return true;
+        }
+        long expectedCost = deleted * 1000 / rateLimit;
+        long sleep = expectedCost - (System.currentTimeMillis() - start);
+        if (sleep > 0) {
+            try {
+                Thread.sleep(sleep);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
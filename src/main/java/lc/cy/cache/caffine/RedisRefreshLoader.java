@@ -0,0 +1,43 @@
+package lc.cy.cache.caffine;
+
+import com.github.benmanes.caffeine.cache.CacheLoader;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * 类名称：RedisRefreshLoader <br>
+ * 类描述：本地缓存refreshAfterWrite使用的加载器，到期的条目在访问时直接返回旧值，由有界的刷新线程池从redis重新加载。
+ * caffeine需要在创建缓存时指定加载器，而加载依赖缓存实例，因此缓存创建后再绑定 <br>
+ */
+class RedisRefreshLoader implements CacheLoader<Object, Object> {
+
+    private volatile RedisCaffeineCache cache;
+
+    private Executor refreshExecutor;
+
+    RedisRefreshLoader(Executor refreshExecutor) {
+        this.refreshExecutor = refreshExecutor;
+    }
+
+    void bind(RedisCaffeineCache cache) {
+        this.cache = cache;
+    }
+
+    @Override
+    public Object load(Object key) {
+        RedisCaffeineCache cache = this.cache;
+        return cache == null ? null : cache.refreshLocal(key);
+    }
+
+    @Override
+    public CompletableFuture<?> asyncReload(Object key, Object oldValue, Executor executor) {
+        try {
+            return CompletableFuture.supplyAsync(() -> load(key), refreshExecutor);
+        } catch (RejectedExecutionException e) {
+            // 刷新线程池已满，保留当前值，等下一个刷新周期
+            return CompletableFuture.completedFuture(oldValue);
+        }
+    }
+}
@@ -0,0 +1,268 @@
+package lc.cy.cache.codec;
+
+import lc.cy.cache.caffine.CacheMessage;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * 类名称：BinaryCacheMessageCodec <br>
+ * 类描述：紧凑的二进制消息格式，直接作为pub/sub消息体发送，不再经过json和RedisTemplate的二次序列化。
+ * 格式：2字节魔数+1字节版本+消息数，每条消息为标志位、cacheName、来源、时间戳、代号及类型化的key。
+ * key只支持String、Integer、Long，批量中有其他类型的key时整批交给fallback编码，不对网络输入做java反序列化。
+ * 收到非二进制格式的消息时交给fallback解码，因此本节点可以解码旧节点的json消息，但旧节点无法解码二进制消息，
+ * 需所有节点都升级到支持binary的版本后再开启 <br>
+ */
+public class BinaryCacheMessageCodec implements CacheMessageCodec {
+
+    // 0xC1在utf-8中不会出现，json及jdk序列化的消息都不会以此开头
+    private static final byte MAGIC_0 = (byte) 0xC1;
+
+    private static final byte MAGIC_1 = (byte) 0x7C;
+
+    private static final byte VERSION = 1;
+
+    private static final int FLAG_KEY = 1;
+
+    private static final int FLAG_KEYS = 1 << 1;
+
+    private static final int FLAG_GENERATION = 1 << 2;
+
+    private static final int FLAG_ORIGIN_UUID = 1 << 3;
+
+    private static final int FLAG_ORIGIN_STRING = 1 << 4;
+
+    private static final int KEY_STRING = 1;
+
+    private static final int KEY_INT = 2;
+
+    private static final int KEY_LONG = 3;
+
+    private CacheMessageCodec fallback;
+
+    public BinaryCacheMessageCodec(CacheMessageCodec fallback) {
+        this.fallback = fallback;
+    }
+
+    @Override
+    public byte[] encode(List<CacheMessage> messages) {
+        if (fallback != null && !isBinaryKeys(messages)) {
+            // SimpleKey等复合key按原有格式发送
+            return fallback.encode(messages);
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(MAGIC_0);
+            out.writeByte(MAGIC_1);
+            out.writeByte(VERSION);
+            writeVarInt(out, messages.size());
+            for (CacheMessage message : messages) {
+                writeMessage(out, message);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static boolean isBinaryKeys(List<CacheMessage> messages) {
+        for (CacheMessage message : messages) {
+            if (message.getKeys() != null) {
+                for (Object key : message.getKeys()) {
+                    if (!isBinaryKey(key)) {
+                        return false;
+                    }
+                }
+            } else if (message.getKey() != null && !isBinaryKey(message.getKey())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isBinaryKey(Object key) {
+        return key instanceof String || key instanceof Integer || key instanceof Long;
+    }
+
+    private void writeMessage(DataOutputStream out, CacheMessage message) throws IOException {
+        UUID originId = parseUuid(message.getOrigin());
+        int flags = 0;
+        if (message.getKeys() != null) {
+            flags |= FLAG_KEYS;
+        } else if (message.getKey() != null) {
+            flags |= FLAG_KEY;
+        }
+        if (message.getGeneration() != null) {
+            flags |= FLAG_GENERATION;
+        }
+        if (originId != null) {
+            flags |= FLAG_ORIGIN_UUID;
+        } else if (message.getOrigin() != null) {
+            flags |= FLAG_ORIGIN_STRING;
+        }
+        out.writeByte(flags);
+        writeString(out, message.getCacheName());
+        if (originId != null) {
+            out.writeLong(originId.getMostSignificantBits());
+            out.writeLong(originId.getLeastSignificantBits());
+        } else if (message.getOrigin() != null) {
+            writeString(out, message.getOrigin());
+        }
+        out.writeLong(message.getTimestamp());
+        if (message.getGeneration() != null) {
+            out.writeLong(message.getGeneration());
+        }
+        if (message.getKeys() != null) {
+            writeVarInt(out, message.getKeys().size());
+            for (Object key : message.getKeys()) {
+                writeKey(out, key);
+            }
+        } else if (message.getKey() != null) {
+            writeKey(out, message.getKey());
+        }
+    }
+
+    @Override
+    public List<CacheMessage> decode(byte[] body) {
+        if (body == null || body.length < 3 || body[0] != MAGIC_0 || body[1] != MAGIC_1) {
+            return fallback == null ? Collections.emptyList() : fallback.decode(body);
+        }
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(body, 3, body.length - 3))) {
+            int count = readLength(in);
+            List<CacheMessage> messages = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                messages.add(readMessage(in));
+            }
+            return messages;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private CacheMessage readMessage(DataInputStream in) throws IOException {
+        int flags = in.readUnsignedByte();
+        CacheMessage message = new CacheMessage();
+        message.setCacheName(readString(in));
+        if ((flags & FLAG_ORIGIN_UUID) != 0) {
+            message.setOrigin(new UUID(in.readLong(), in.readLong()).toString());
+        } else if ((flags & FLAG_ORIGIN_STRING) != 0) {
+            message.setOrigin(readString(in));
+        }
+        message.setTimestamp(in.readLong());
+        if ((flags & FLAG_GENERATION) != 0) {
+            message.setGeneration(in.readLong());
+        }
+        if ((flags & FLAG_KEYS) != 0) {
+            int size = readLength(in);
+            List<Object> keys = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                keys.add(readKey(in));
+            }
+            message.setKeys(keys);
+        } else if ((flags & FLAG_KEY) != 0) {
+            message.setKey(readKey(in));
+        }
+        return message;
+    }
+
+    private void writeKey(DataOutputStream out, Object key) throws IOException {
+        if (key instanceof String) {
+            out.writeByte(KEY_STRING);
+            writeString(out, (String) key);
+        } else if (key instanceof Integer) {
+            out.writeByte(KEY_INT);
+            out.writeInt((Integer) key);
+        } else if (key instanceof Long) {
+            out.writeByte(KEY_LONG);
+            out.writeLong((Long) key);
+        } else {
+            // 未配置fallback时其他类型的key按字符串发送
+            out.writeByte(KEY_STRING);
+            writeString(out, key.toString());
+        }
+    }
+
+    private Object readKey(DataInputStream in) throws IOException {
+        int type = in.readUnsignedByte();
+        switch (type) {
+            case KEY_STRING:
+                return readString(in);
+            case KEY_INT:
+                return in.readInt();
+            case KEY_LONG:
+                return in.readLong();
+            default:
+                throw new IOException("unknown key type:" + type);
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarInt(out, bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[readLength(in)];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeVarInt(DataOutputStream out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    private static int readVarInt(DataInputStream in) throws IOException {
+        int value = 0;
+        int shift = 0;
+        int b;
+        do {
+            b = in.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+            if ((b & 0x80) != 0 && shift >= 35) {
+                throw new IOException("malformed varint");
+            }
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+
+    /**
+     * @param in
+     * @description 读取长度或数量，每个元素至少占1字节，不能超过剩余的字节数，避免畸形消息分配过大的数组
+     * @version 1.0.0
+     */
+    private static int readLength(DataInputStream in) throws IOException {
+        int length = readVarInt(in);
+        if (length < 0 || length > in.available()) {
+            throw new IOException("invalid length:" + length + ", remaining:" + in.available());
+        }
+        return length;
+    }
+
+    private static UUID parseUuid(String origin) {
+        if (origin == null || origin.length() != 36) {
+            return null;
+        }
+        try {
+            UUID uuid = UUID.fromString(origin);
+            // 只有能还原为同一字符串时才按16字节写入
+            return uuid.toString().equals(origin) ? uuid : null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+}
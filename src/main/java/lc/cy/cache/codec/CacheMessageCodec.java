@@ -0,0 +1,26 @@
+package lc.cy.cache.codec;
+
+import lc.cy.cache.caffine.CacheMessage;
+
+import java.util.List;
+
+/**
+ * 类名称：CacheMessageCodec <br>
+ * 类描述：缓存变更消息的编解码，发送和接收两端需要使用兼容的实现 <br>
+ */
+public interface CacheMessageCodec {
+
+    /**
+     * 将一条或一批消息编码为发送到redis的字节
+     *
+     * @param messages
+     */
+    byte[] encode(List<CacheMessage> messages);
+
+    /**
+     * 解码收到的消息，无法识别时返回空列表
+     *
+     * @param body
+     */
+    List<CacheMessage> decode(byte[] body);
+}
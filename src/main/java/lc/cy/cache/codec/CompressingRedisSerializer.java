@@ -0,0 +1,82 @@
+package lc.cy.cache.codec;
+
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import java.io.ByteArrayOutputStream;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * 类名称：CompressingRedisSerializer <br>
+ * 类描述：包装RedisTemplate原有的value序列化，序列化结果超过阈值时使用deflate压缩并加2字节头，
+ * 读取时根据头判断是否需要解压，未压缩及升级前写入的值照常交给原序列化处理 <br>
+ */
+public class CompressingRedisSerializer implements RedisSerializer<Object> {
+
+    // 0xC1在utf-8中不会出现，jdk序列化以0xAC开头，json以可见字符开头
+    private static final byte MAGIC_0 = (byte) 0xC1;
+
+    private static final byte MAGIC_1 = (byte) 0x5A;
+
+    private RedisSerializer<Object> delegate;
+
+    // 超过此字节数时压缩
+    private int threshold;
+
+    public CompressingRedisSerializer(RedisSerializer<Object> delegate, int threshold) {
+        this.delegate = delegate;
+        this.threshold = threshold;
+    }
+
+    @Override
+    public byte[] serialize(Object value) throws SerializationException {
+        byte[] raw = delegate.serialize(value);
+        if (raw == null || raw.length <= threshold) {
+            return raw;
+        }
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(raw);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(raw.length / 2 + 16);
+            out.write(MAGIC_0);
+            out.write(MAGIC_1);
+            byte[] buffer = new byte[Math.min(raw.length, 8192)];
+            while (!deflater.finished()) {
+                int n = deflater.deflate(buffer);
+                out.write(buffer, 0, n);
+            }
+            // 压缩后没有变小的不压缩
+            return out.size() < raw.length ? out.toByteArray() : raw;
+        } finally {
+            deflater.end();
+        }
+    }
+
+    @Override
+    public Object deserialize(byte[] bytes) throws SerializationException {
+        if (bytes == null || bytes.length < 2 || bytes[0] != MAGIC_0 || bytes[1] != MAGIC_1) {
+            return delegate.deserialize(bytes);
+        }
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(bytes, 2, bytes.length - 2);
+            ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length * 3);
+            byte[] buffer = new byte[8192];
+            while (!inflater.finished()) {
+                int n = inflater.inflate(buffer);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new SerializationException("truncated compressed cache value");
+                }
+                out.write(buffer, 0, n);
+            }
+            return delegate.deserialize(out.toByteArray());
+        } catch (DataFormatException e) {
+            throw new SerializationException("cannot inflate cache value", e);
+        } finally {
+            inflater.end();
+        }
+    }
+}
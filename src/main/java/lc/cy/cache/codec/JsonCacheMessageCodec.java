@@ -0,0 +1,44 @@
+package lc.cy.cache.codec;
+
+import lc.cy.cache.caffine.CacheMessage;
+import lc.cy.util.JsonUtil;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 类名称：JsonCacheMessageCodec <br>
+ * 类描述：原有的消息格式，消息转为json字符串后再经过RedisTemplate的value序列化，单条消息为对象，批量消息为数组 <br>
+ */
+public class JsonCacheMessageCodec implements CacheMessageCodec {
+
+    private RedisSerializer<Object> valueSerializer;
+
+    public JsonCacheMessageCodec(RedisTemplate<Object, Object> redisTemplate) {
+        this.valueSerializer = (RedisSerializer<Object>) redisTemplate.getValueSerializer();
+    }
+
+    @Override
+    public byte[] encode(List<CacheMessage> messages) {
+        Object payload = messages.size() == 1 ? messages.get(0) : messages;
+        return valueSerializer.serialize(JsonUtil.toJson(payload));
+    }
+
+    @Override
+    public List<CacheMessage> decode(byte[] body) {
+        Object msg = valueSerializer.deserialize(body);
+        if (msg == null) {
+            return Collections.emptyList();
+        }
+        String json = msg.toString().trim();
+        // 批量发送的消息为CacheMessage数组
+        if (json.startsWith("[")) {
+            return Arrays.asList(JsonUtil.fromJson(json, CacheMessage[].class));
+        }
+        CacheMessage cacheMessage = JsonUtil.fromJson(json, CacheMessage.class);
+        return cacheMessage == null ? Collections.emptyList() : Collections.singletonList(cacheMessage);
+    }
+}
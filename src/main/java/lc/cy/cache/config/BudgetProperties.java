@@ -0,0 +1,76 @@
+package lc.cy.cache.config;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 类名称：BudgetProperties <br>
+ * 类描述：所有缓存共享的本地缓存内存预算 <br>
+ */
+public class BudgetProperties {
+
+    /**
+     * 所有缓存的本地缓存总内存预算，单位字节（按weigher估算），大于0时各缓存按权重淘汰，由manager按mode分配，默认-1不限制
+     */
+    private long maximumWeight = -1;
+
+    /**
+     * 总内存预算的分配方式，static按shares的比例分配，adaptive一半平均分配、一半按最近的访问次数×命中率（本地及redis的命中次数）分配，默认static
+     */
+    private String mode = "static";
+
+    /**
+     * static分配方式下各cacheName的比例，未配置的缓存为1
+     */
+    private Map<String, Double> shares = new HashMap<>();
+
+    /**
+     * 重新分配内存预算及检查堆内存的间隔，单位毫秒，默认10s
+     */
+    private long interval = 10000;
+
+    /**
+     * 老年代GC后的使用率超过此比例时逐步缩小所有本地缓存的容量，低于此比例后逐步恢复，取值0~1，默认0不检查
+     */
+    private double heapPressureThreshold = 0;
+
+    public long getMaximumWeight() {
+        return maximumWeight;
+    }
+
+    public void setMaximumWeight(long maximumWeight) {
+        this.maximumWeight = maximumWeight;
+    }
+
+    public String getMode() {
+        return mode;
+    }
+
+    public void setMode(String mode) {
+        this.mode = mode;
+    }
+
+    public Map<String, Double> getShares() {
+        return shares;
+    }
+
+    public void setShares(Map<String, Double> shares) {
+        this.shares = shares;
+    }
+
+    public long getInterval() {
+        return interval;
+    }
+
+    public void setInterval(long interval) {
+        this.interval = interval;
+    }
+
+    public double getHeapPressureThreshold() {
+        return heapPressureThreshold;
+    }
+
+    public void setHeapPressureThreshold(double heapPressureThreshold) {
+        this.heapPressureThreshold = heapPressureThreshold;
+    }
+}
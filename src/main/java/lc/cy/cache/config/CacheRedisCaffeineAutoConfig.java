@@ -1,25 +1,37 @@
 package lc.cy.cache.config;
 
 import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Weigher;
+import io.micrometer.core.instrument.MeterRegistry;
 import lc.cy.cache.CaffineChangeMessageListener;
+import lc.cy.cache.ClientTrackingInvalidationListener;
+import lc.cy.cache.StreamInvalidationListener;
+import lc.cy.cache.caffine.ExpiryPolicy;
 import lc.cy.cache.caffine.RedisCaffeineCacheManager;
 import lc.cy.cache.caffine.RedisCaffeineTemplate;
+import lc.cy.cache.codec.BinaryCacheMessageCodec;
+import lc.cy.cache.codec.CacheMessageCodec;
+import lc.cy.cache.codec.CompressingRedisSerializer;
+import lc.cy.cache.codec.JsonCacheMessageCodec;
+import lc.cy.cache.metrics.MicrometerCacheMetricsRecorder;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.boot.actuate.health.HealthIndicator;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Primary;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.core.task.SyncTaskExecutor;
 import org.springframework.data.redis.core.RedisOperations;
 import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.data.redis.listener.ChannelTopic;
 import org.springframework.data.redis.listener.RedisMessageListenerContainer;
-
-import java.util.concurrent.LinkedBlockingQueue;
-import java.util.concurrent.ThreadFactory;
-import java.util.concurrent.ThreadPoolExecutor;
-import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicInteger;
+import org.springframework.data.redis.serializer.RedisSerializer;
 
 @Configuration
 @ConditionalOnClass({RedisOperations.class, Caffeine.class})
@@ -31,59 +43,127 @@ public class CacheRedisCaffeineAutoConfig {
 
     private RedisTemplate<Object, Object> redisTemplate;
 
+    // 缓存读写使用的RedisTemplate，开启压缩时value序列化外包装一层压缩
+    private RedisTemplate<Object, Object> cacheRedisTemplate;
+
     public CacheRedisCaffeineAutoConfig(CacheRedisCaffeineProperties cacheRedisCaffeineProperties, RedisTemplate<Object, Object> redisTemplate) {
         if (redisTemplate == null) {
             throw new IllegalArgumentException("RedisTemplate is not exists.");
         }
         this.cacheRedisCaffeineProperties = cacheRedisCaffeineProperties;
         this.redisTemplate = redisTemplate;
+        int compressThreshold = cacheRedisCaffeineProperties.getRedis().getCompressThreshold();
+        this.cacheRedisTemplate = compressThreshold > 0 ? compressingRedisTemplate(redisTemplate, compressThreshold) : redisTemplate;
+    }
+
+    private static RedisTemplate<Object, Object> compressingRedisTemplate(RedisTemplate<Object, Object> source, int threshold) {
+        RedisTemplate<Object, Object> template = new RedisTemplate<>();
+        template.setConnectionFactory(source.getConnectionFactory());
+        template.setKeySerializer(source.getKeySerializer());
+        template.setStringSerializer(source.getStringSerializer());
+        template.setHashKeySerializer(source.getHashKeySerializer());
+        template.setHashValueSerializer(source.getHashValueSerializer());
+        template.setValueSerializer(new CompressingRedisSerializer((RedisSerializer<Object>) source.getValueSerializer(), threshold));
+        template.afterPropertiesSet();
+        return template;
+    }
+
+    @Bean
+    @ConditionalOnMissingBean
+    public CacheMessageCodec cacheMessageCodec() {
+        // 默认使用原始的RedisTemplate编码，保证未升级的节点可以解码；binary需所有节点升级后再开启
+        CacheMessageCodec jsonCodec = new JsonCacheMessageCodec(redisTemplate);
+        if ("binary".equalsIgnoreCase(cacheRedisCaffeineProperties.getRedis().getMessageCodec())) {
+            return new BinaryCacheMessageCodec(jsonCodec);
+        }
+        return jsonCodec;
     }
 
     @Primary
     @Bean(name = "redisCaffeineCacheManager")
-    public RedisCaffeineCacheManager cacheManager() {
-        return new RedisCaffeineCacheManager(cacheRedisCaffeineProperties, redisTemplate);
+    public RedisCaffeineCacheManager cacheManager(CacheMessageCodec cacheMessageCodec, ObjectProvider<ExpiryPolicy> expiryPolicy,
+                                                  ObjectProvider<Weigher<Object, Object>> weigher) {
+        RedisCaffeineCacheManager cacheManager = new RedisCaffeineCacheManager(cacheRedisCaffeineProperties, cacheRedisTemplate,
+                cacheMessageCodec);
+        cacheManager.setExpiryPolicy(expiryPolicy.getIfAvailable());
+        cacheManager.setWeigher(weigher.getIfAvailable());
+        return cacheManager;
+    }
+
+    /**
+     * topic及stream共用的消息监听器
+     */
+    @Bean
+    public CaffineChangeMessageListener caffineChangeMessageListener(RedisCaffeineCacheManager redisCaffeineCacheManager,
+                                                                     CacheMessageCodec cacheMessageCodec) {
+        return new CaffineChangeMessageListener(redisTemplate, redisCaffeineCacheManager, cacheMessageCodec);
     }
 
     @Bean(name = "redisCaffeineMessageChangeListenser")
-    public RedisMessageListenerContainer redisMessageListenerContainer(RedisCaffeineCacheManager redisCaffeineCacheManager) {
-        ThreadPoolExecutor threadPoolExecutor = new ThreadPoolExecutor(1, Runtime.getRuntime().availableProcessors(), 20l, TimeUnit.SECONDS
-                , new LinkedBlockingQueue<>(100000), new DefaultThreadFactory(), new ThreadPoolExecutor.AbortPolicy());
+    public RedisMessageListenerContainer redisMessageListenerContainer(CaffineChangeMessageListener cacheMessageListener) {
         RedisMessageListenerContainer redisMessageListenerContainer = new RedisMessageListenerContainer();
-        redisMessageListenerContainer.setTaskExecutor(threadPoolExecutor);
+        // 订阅线程收到消息后同步交给监听器，由监听器按key分配到各个有序的通道处理
+        redisMessageListenerContainer.setSubscriptionExecutor(new SimpleAsyncTaskExecutor("redis-caffeine-subscription-"));
+        redisMessageListenerContainer.setTaskExecutor(new SyncTaskExecutor());
         redisMessageListenerContainer.setConnectionFactory(redisTemplate.getConnectionFactory());
-        CaffineChangeMessageListener cacheMessageListener = new CaffineChangeMessageListener(redisTemplate, redisCaffeineCacheManager);
         redisMessageListenerContainer.addMessageListener(cacheMessageListener,
                 new ChannelTopic(cacheRedisCaffeineProperties.getRedis().getTopic()));
         return redisMessageListenerContainer;
     }
 
+    /**
+     * key级别的失效由redis服务端推送，topic消息仍用于清空及代号变更，以及推送连接断开时的兜底
+     */
+    @Bean
+    @ConditionalOnProperty(value = "spring.cache.redis-caffeine.redis.invalidation-mode", havingValue = "tracking")
+    public ClientTrackingInvalidationListener clientTrackingInvalidationListener(RedisCaffeineCacheManager redisCaffeineCacheManager) {
+        return new ClientTrackingInvalidationListener(redisCaffeineCacheManager, redisTemplate,
+                cacheRedisCaffeineProperties.getRedis());
+    }
+
+    /**
+     * 消息写入stream，各节点记录读取位置，断线后补读；开始读取stream前由topic监听器接收消息，之后取消topic订阅
+     */
+    @Bean
+    @ConditionalOnProperty(value = "spring.cache.redis-caffeine.redis.invalidation-mode", havingValue = "stream")
+    public StreamInvalidationListener streamInvalidationListener(RedisCaffeineCacheManager redisCaffeineCacheManager,
+                                                                 CaffineChangeMessageListener cacheMessageListener,
+                                                                 @Qualifier("redisCaffeineMessageChangeListenser")
+                                                                 RedisMessageListenerContainer redisMessageListenerContainer) {
+        StreamInvalidationListener listener = new StreamInvalidationListener(redisCaffeineCacheManager,
+                redisTemplate.getConnectionFactory(), cacheMessageListener, cacheRedisCaffeineProperties.getRedis());
+        listener.setTopicContainer(redisMessageListenerContainer);
+        return listener;
+    }
+
     @Bean
     public RedisCaffeineTemplate redisCaffeineTemplate(RedisCaffeineCacheManager redisCaffeineCacheManager) {
         return new RedisCaffeineTemplate(redisCaffeineCacheManager);
     }
 
-    private static class DefaultThreadFactory implements ThreadFactory {
-        private final ThreadGroup group;
-        private final AtomicInteger threadNumber = new AtomicInteger(1);
-        private final String namePrefix;
+    @Configuration
+    @ConditionalOnClass(MeterRegistry.class)
+    static class RedisCaffeineMetricsConfiguration {
 
-        DefaultThreadFactory() {
-            SecurityManager s = System.getSecurityManager();
-            group = (s != null) ? s.getThreadGroup() :
-                    Thread.currentThread().getThreadGroup();
-            namePrefix = "redis-caffeine-listener-thread-";
+        /**
+         * 所有单例创建完成后再绑定，此时MeterRegistry已经由其他自动配置创建
+         */
+        @Bean
+        public SmartInitializingSingleton redisCaffeineCacheMetricsBinder(ObjectProvider<MeterRegistry> meterRegistry,
+                                                                         RedisCaffeineCacheManager redisCaffeineCacheManager) {
+            return () -> meterRegistry.ifAvailable(registry ->
+                    redisCaffeineCacheManager.setMetricsRecorder(new MicrometerCacheMetricsRecorder(registry)));
         }
+    }
+
+    @Configuration
+    @ConditionalOnClass(HealthIndicator.class)
+    @ConditionalOnProperty(value = "spring.cache.redis-caffeine.warm-up.enabled", havingValue = "true")
+    static class RedisCaffeineWarmUpHealthConfiguration {
 
-        public Thread newThread(Runnable r) {
-            Thread t = new Thread(group, r,
-                    namePrefix + threadNumber.getAndIncrement(),
-                    0);
-            if (t.isDaemon())
-                t.setDaemon(false);
-            if (t.getPriority() != Thread.NORM_PRIORITY)
-                t.setPriority(Thread.NORM_PRIORITY);
-            return t;
+        @Bean
+        public CacheWarmUpHealthIndicator redisCaffeineWarmUpHealthIndicator(RedisCaffeineCacheManager redisCaffeineCacheManager) {
+            return new CacheWarmUpHealthIndicator(redisCaffeineCacheManager);
         }
     }
-}
\ No newline at end of file
+}
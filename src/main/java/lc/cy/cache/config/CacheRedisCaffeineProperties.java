@@ -1,6 +1,7 @@
 package lc.cy.cache.config;
 
 import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.NestedConfigurationProperty;
 
 import java.util.HashMap;
 import java.util.HashSet;
@@ -10,6 +11,12 @@ import java.util.Set;
 @ConfigurationProperties(prefix = "spring.cache.redis-caffeine")
 public class CacheRedisCaffeineProperties {
 
+    public static final String INVALIDATION_TOPIC = "topic";
+
+    public static final String INVALIDATION_TRACKING = "tracking";
+
+    public static final String INVALIDATION_STREAM = "stream";
+
     private boolean enable = false;
 
     private Set<String> cacheNames = new HashSet<>();
@@ -30,9 +37,38 @@ public class CacheRedisCaffeineProperties {
     private String cachePrefix;
 
     /**
-     * redis配置
+     * 缓存访问日志的采样率，取值0~1，默认0不输出，大于0时按比例以debug级别输出命中日志
+     */
+    private double traceSampleRate = 0;
+
+    /**
+     * 所有缓存共享的本地缓存内存预算
+     */
+    @NestedConfigurationProperty
+    private BudgetProperties budget = new BudgetProperties();
+
+    /**
+     * 本地缓存快照
+     */
+    @NestedConfigurationProperty
+    private SnapshotProperties snapshot = new SnapshotProperties();
+
+    /**
+     * 启动时预热
+     */
+    @NestedConfigurationProperty
+    private WarmUpProperties warmUp = new WarmUpProperties();
+
+    /**
+     * 热点key检测
+     */
+    @NestedConfigurationProperty
+    private HotKeyProperties hotKey = new HotKeyProperties();
+
+    /**
+     * redis配置，未配置时使用默认值
      */
-    private Redis redis;
+    private Redis redis = new Redis();
 
     /**
      * Caffeine配置
@@ -79,6 +115,46 @@ public class CacheRedisCaffeineProperties {
         this.cachePrefix = cachePrefix;
     }
 
+    public double getTraceSampleRate() {
+        return traceSampleRate;
+    }
+
+    public void setTraceSampleRate(double traceSampleRate) {
+        this.traceSampleRate = traceSampleRate;
+    }
+
+    public BudgetProperties getBudget() {
+        return budget;
+    }
+
+    public void setBudget(BudgetProperties budget) {
+        this.budget = budget;
+    }
+
+    public SnapshotProperties getSnapshot() {
+        return snapshot;
+    }
+
+    public void setSnapshot(SnapshotProperties snapshot) {
+        this.snapshot = snapshot;
+    }
+
+    public WarmUpProperties getWarmUp() {
+        return warmUp;
+    }
+
+    public void setWarmUp(WarmUpProperties warmUp) {
+        this.warmUp = warmUp;
+    }
+
+    public HotKeyProperties getHotKey() {
+        return hotKey;
+    }
+
+    public void setHotKey(HotKeyProperties hotKey) {
+        this.hotKey = hotKey;
+    }
+
     public Redis getRedis() {
         return redis;
     }
@@ -112,6 +188,138 @@ public class CacheRedisCaffeineProperties {
          */
         private String topic = "cache:caffeine:change:topic";
 
+        /**
+         * 跨节点加载互斥
+         */
+        @NestedConfigurationProperty
+        private LoadLeaseProperties loadLease = new LoadLeaseProperties();
+
+        /**
+         * stream失效方式的配置
+         */
+        @NestedConfigurationProperty
+        private StreamProperties stream = new StreamProperties();
+
+        /**
+         * 缓存变更消息的批量发送窗口，单位毫秒，默认0即每次变更同步发送，大于0时在窗口内合并去重后异步批量发送
+         */
+        private long publishWindow = 0;
+
+        /**
+         * 批量发送时缓冲的key数量达到此值立即发送，默认1000
+         */
+        private int publishBatchSize = 1000;
+
+        /**
+         * 清理redis缓存时每次SCAN的COUNT，默认1000
+         */
+        private int scanCount = 1000;
+
+        /**
+         * 清理redis缓存时每批UNLINK的key数量，默认500
+         */
+        private int clearBatchSize = 500;
+
+        /**
+         * 清理redis缓存时每秒最多删除的key数量，默认0不限速
+         */
+        private long clearRateLimit = 0;
+
+        /**
+         * 是否开启命名空间版本，开启后每个cacheName在redis中维护一个代号并作为key的一部分，
+         * 清空缓存时只递增代号，旧代的key依靠过期时间淘汰，默认false
+         */
+        private boolean namespaceVersion = false;
+
+        /**
+         * 缓存异步接口访问redis的线程数，默认cpu核数*2
+         */
+        private int asyncPoolSize = Runtime.getRuntime().availableProcessors() * 2;
+
+        /**
+         * 缓存异步接口的任务队列长度，队列满时异步接口返回以RejectedExecutionException失败的future，默认10000
+         */
+        private int asyncQueueCapacity = 10000;
+
+        /**
+         * 本地缓存后台刷新（refreshAfterWrite）的线程数，默认cpu核数
+         */
+        private int refreshPoolSize = Runtime.getRuntime().availableProcessors();
+
+        /**
+         * 后台刷新的任务队列长度，队列满时跳过本次刷新继续使用当前值，默认1000
+         */
+        private int refreshQueueCapacity = 1000;
+
+        /**
+         * 处理缓存变更消息的通道数，同一个key的消息在同一个通道中按顺序处理，默认为cpu核数
+         */
+        private int listenerLanes = Runtime.getRuntime().availableProcessors();
+
+        /**
+         * 每个通道的队列长度，队列满时清空对应缓存的全部本地缓存，默认10000
+         */
+        private int listenerLaneCapacity = 10000;
+
+        /**
+         * 缓存变更消息的编码，json为原有格式，binary为紧凑的二进制格式（可解码json格式的消息，但未升级的节点无法解码binary，需所有节点升级后再开启），默认json
+         */
+        private String messageCodec = "json";
+
+        /**
+         * 缓存值序列化后超过此字节数时压缩后再写入redis，默认-1不压缩
+         */
+        private int compressThreshold = -1;
+
+        /**
+         * 本地缓存的失效方式，topic为写入方发布消息，tracking为redis 6以上的CLIENT TRACKING广播模式由服务端推送，
+         * stream为写入redis 5以上的stream，各节点记录读取位置，断线重连后从断开处继续读取，默认topic。
+         * tracking及stream只支持单机模式，集群及哨兵模式下自动使用topic。tracking还要求key使用String序列化，
+         * 且所有节点都配置为tracking，任一节点未能使用推送时所有节点继续发布消息
+         */
+        private String invalidationMode = INVALIDATION_TOPIC;
+
+        /**
+         * 过期时间的随机抖动比例，0到1之间，每个key的过期时间在[expires * (1 - expireJitter), expires]之间，
+         * 同时作用于本地缓存的expireAfterWrite，避免批量写入的key同时过期，可按缓存在caffeine中覆盖，默认0不抖动
+         */
+        private double expireJitter = 0;
+
+        /**
+         * 是否开启提前重算（XFetch），开启后加载的值与加载耗时一起写入redis，接近过期时按概率提前重新加载，
+         * 需所有节点都升级后再开启，默认false
+         */
+        private boolean earlyRecompute = false;
+
+        /**
+         * 提前重算的系数，越大越早重算，默认1.0
+         */
+        private double earlyRecomputeBeta = 1.0;
+
+        public double getExpireJitter() {
+            return expireJitter;
+        }
+
+        public void setExpireJitter(double expireJitter) {
+            this.expireJitter = expireJitter;
+        }
+
+        public boolean isEarlyRecompute() {
+            return earlyRecompute;
+        }
+
+        public void setEarlyRecompute(boolean earlyRecompute) {
+            this.earlyRecompute = earlyRecompute;
+        }
+
+        public double getEarlyRecomputeBeta() {
+            return earlyRecomputeBeta;
+        }
+
+        public void setEarlyRecomputeBeta(double earlyRecomputeBeta) {
+            this.earlyRecomputeBeta = earlyRecomputeBeta;
+        }
+
         public long getDefaultExpires() {
             return defaultExpires;
         }
@@ -136,6 +344,150 @@ public class CacheRedisCaffeineProperties {
             this.topic = topic;
         }
 
+        public LoadLeaseProperties getLoadLease() {
+            return loadLease;
+        }
+
+        public void setLoadLease(LoadLeaseProperties loadLease) {
+            this.loadLease = loadLease;
+        }
+
+        public StreamProperties getStream() {
+            return stream;
+        }
+
+        public void setStream(StreamProperties stream) {
+            this.stream = stream;
+        }
+
+        /**
+         * stream模式下消息写入的stream，未配置时为topic加上":stream"
+         */
+        public String resolveStreamKey() {
+            String key = stream.getKey();
+            return key == null || key.isEmpty() ? topic.concat(":stream") : key;
+        }
+
+        public long getPublishWindow() {
+            return publishWindow;
+        }
+
+        public void setPublishWindow(long publishWindow) {
+            this.publishWindow = publishWindow;
+        }
+
+        public int getPublishBatchSize() {
+            return publishBatchSize;
+        }
+
+        public void setPublishBatchSize(int publishBatchSize) {
+            this.publishBatchSize = publishBatchSize;
+        }
+
+        public int getScanCount() {
+            return scanCount;
+        }
+
+        public void setScanCount(int scanCount) {
+            this.scanCount = scanCount;
+        }
+
+        public int getClearBatchSize() {
+            return clearBatchSize;
+        }
+
+        public void setClearBatchSize(int clearBatchSize) {
+            this.clearBatchSize = clearBatchSize;
+        }
+
+        public long getClearRateLimit() {
+            return clearRateLimit;
+        }
+
+        public void setClearRateLimit(long clearRateLimit) {
+            this.clearRateLimit = clearRateLimit;
+        }
+
+        public boolean isNamespaceVersion() {
+            return namespaceVersion;
+        }
+
+        public void setNamespaceVersion(boolean namespaceVersion) {
+            this.namespaceVersion = namespaceVersion;
+        }
+
+        public int getAsyncPoolSize() {
+            return asyncPoolSize;
+        }
+
+        public void setAsyncPoolSize(int asyncPoolSize) {
+            this.asyncPoolSize = asyncPoolSize;
+        }
+
+        public int getAsyncQueueCapacity() {
+            return asyncQueueCapacity;
+        }
+
+        public void setAsyncQueueCapacity(int asyncQueueCapacity) {
+            this.asyncQueueCapacity = asyncQueueCapacity;
+        }
+
+        public int getRefreshPoolSize() {
+            return refreshPoolSize;
+        }
+
+        public void setRefreshPoolSize(int refreshPoolSize) {
+            this.refreshPoolSize = refreshPoolSize;
+        }
+
+        public int getRefreshQueueCapacity() {
+            return refreshQueueCapacity;
+        }
+
+        public void setRefreshQueueCapacity(int refreshQueueCapacity) {
+            this.refreshQueueCapacity = refreshQueueCapacity;
+        }
+
+        public int getListenerLanes() {
+            return listenerLanes;
+        }
+
+        public void setListenerLanes(int listenerLanes) {
+            this.listenerLanes = listenerLanes;
+        }
+
+        public int getListenerLaneCapacity() {
+            return listenerLaneCapacity;
+        }
+
+        public void setListenerLaneCapacity(int listenerLaneCapacity) {
+            this.listenerLaneCapacity = listenerLaneCapacity;
+        }
+
+        public String getMessageCodec() {
+            return messageCodec;
+        }
+
+        public void setMessageCodec(String messageCodec) {
+            this.messageCodec = messageCodec;
+        }
+
+        public int getCompressThreshold() {
+            return compressThreshold;
+        }
+
+        public void setCompressThreshold(int compressThreshold) {
+            this.compressThreshold = compressThreshold;
+        }
+
+        public String getInvalidationMode() {
+            return invalidationMode;
+        }
+
+        public void setInvalidationMode(String invalidationMode) {
+            this.invalidationMode = invalidationMode;
+        }
+
     }
 
     public static class Caffeine {
@@ -151,7 +503,8 @@ public class CacheRedisCaffeineProperties {
         private long expireAfterWrite = 300000;
 
         /**
-         * 写入后刷新时间，单位毫秒
+         * 写入后刷新时间，单位毫秒，超过此时间的本地缓存在访问时仍直接返回，同时在后台从redis重新加载，
+         * 需小于expireAfterWrite及expireAfterAccess才有意义，默认-1不刷新
          */
         private long refreshAfterWrite = -1L;
 
@@ -165,6 +518,74 @@ public class CacheRedisCaffeineProperties {
          */
         private long maximumSize = 1000000;
 
+        /**
+         * 最大缓存字节数（按weigher估算），大于0时替代maximumSize，默认-1
+         */
+        private long maximumWeight = -1;
+
+        /**
+         * 堆外存储
+         */
+        @NestedConfigurationProperty
+        private OffHeapProperties offHeap = new OffHeapProperties();
+
+        /**
+         * key的布隆过滤器
+         */
+        @NestedConfigurationProperty
+        private ExistenceFilterProperties existenceFilter = new ExistenceFilterProperties();
+
+        /**
+         * 不存在的key及空值的本地缓存
+         */
+        @NestedConfigurationProperty
+        private NegativeCacheProperties negative = new NegativeCacheProperties();
+
+        /**
+         * 当前缓存的过期时间随机抖动比例，0到1之间，同时作用于redis及本地缓存的过期时间，默认-1使用redis.expireJitter
+         */
+        private double expireJitter = -1;
+
+        public double getExpireJitter() {
+            return expireJitter;
+        }
+
+        public void setExpireJitter(double expireJitter) {
+            this.expireJitter = expireJitter;
+        }
+
+        public OffHeapProperties getOffHeap() {
+            return offHeap;
+        }
+
+        public void setOffHeap(OffHeapProperties offHeap) {
+            this.offHeap = offHeap;
+        }
+
+        public ExistenceFilterProperties getExistenceFilter() {
+            return existenceFilter;
+        }
+
+        public void setExistenceFilter(ExistenceFilterProperties existenceFilter) {
+            this.existenceFilter = existenceFilter;
+        }
+
+        public NegativeCacheProperties getNegative() {
+            return negative;
+        }
+
+        public void setNegative(NegativeCacheProperties negative) {
+            this.negative = negative;
+        }
+
+        public long getMaximumWeight() {
+            return maximumWeight;
+        }
+
+        public void setMaximumWeight(long maximumWeight) {
+            this.maximumWeight = maximumWeight;
+        }
+
         public long getExpireAfterAccess() {
             return expireAfterAccess;
         }
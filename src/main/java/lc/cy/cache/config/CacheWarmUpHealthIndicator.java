@@ -0,0 +1,35 @@
+package lc.cy.cache.config;
+
+import lc.cy.cache.caffine.CacheWarmer;
+import lc.cy.cache.caffine.RedisCaffeineCacheManager;
+import org.springframework.boot.actuate.health.AbstractHealthIndicator;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.Status;
+
+/**
+ * 类名称：CacheWarmUpHealthIndicator <br>
+ * 类描述：本地缓存预热的健康检查，预热结束前为OUT_OF_SERVICE，可用于就绪探针，预热完成后再接入流量 <br>
+ */
+public class CacheWarmUpHealthIndicator extends AbstractHealthIndicator {
+
+    private RedisCaffeineCacheManager redisCaffeineCacheManager;
+
+    public CacheWarmUpHealthIndicator(RedisCaffeineCacheManager redisCaffeineCacheManager) {
+        super("redis-caffeine warm up health check failed");
+        this.redisCaffeineCacheManager = redisCaffeineCacheManager;
+    }
+
+    @Override
+    protected void doHealthCheck(Health.Builder builder) {
+        CacheWarmer cacheWarmer = redisCaffeineCacheManager.getCacheWarmer();
+        if (cacheWarmer == null) {
+            builder.up();
+            return;
+        }
+        builder.status(cacheWarmer.isReady() ? Status.UP : Status.OUT_OF_SERVICE)
+                .withDetail("loaded", cacheWarmer.getLoaded());
+        if (!cacheWarmer.getFailures().isEmpty()) {
+            builder.withDetail("failures", cacheWarmer.getFailures());
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package lc.cy.cache.config;
+
+/**
+ * 类名称：ExistenceFilterProperties <br>
+ * 类描述：key的布隆过滤器，启动时扫描redis中已有的key，完成后一定不存在的key不再访问redis <br>
+ */
+public class ExistenceFilterProperties {
+
+    /**
+     * 是否开启，只有通过本组件写入的key能被识别，直接写入redis的key需关闭此项，默认false
+     */
+    private boolean enabled = false;
+
+    /**
+     * 预期的key数量，超过后误判率升高，默认1000000
+     */
+    private long expectedKeys = 1000000;
+
+    /**
+     * 在预期数量下的误判率，默认0.01
+     */
+    private double fpp = 0.01;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public long getExpectedKeys() {
+        return expectedKeys;
+    }
+
+    public void setExpectedKeys(long expectedKeys) {
+        this.expectedKeys = expectedKeys;
+    }
+
+    public double getFpp() {
+        return fpp;
+    }
+
+    public void setFpp(double fpp) {
+        this.fpp = fpp;
+    }
+}
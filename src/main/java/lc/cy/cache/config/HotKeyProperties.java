@@ -0,0 +1,73 @@
+package lc.cy.cache.config;
+
+/**
+ * 类名称：HotKeyProperties <br>
+ * 类描述：热点key检测，热点key在本地缓存中使用更长的过期时间，并可在redis中写入多个副本 <br>
+ */
+public class HotKeyProperties {
+
+    /**
+     * 热点key的判定阈值，每个统计窗口内访问次数的估计值达到此值的key判定为热点，默认0不开启热点检测
+     */
+    private long threshold = 0;
+
+    /**
+     * 热点检测的统计窗口，单位毫秒，每个窗口结束时计数减半并从redis刷新热点key，默认10s
+     */
+    private long window = 10000;
+
+    /**
+     * 每个缓存最多的热点key数量，默认100
+     */
+    private int maxKeys = 100;
+
+    /**
+     * 热点key在本地缓存中的过期时间，单位毫秒，需配置本地缓存的过期时间，默认300s，0为不延长
+     */
+    private long localExpire = 300000;
+
+    /**
+     * 热点key在redis中的副本数量，副本分布在不同的slot，读取时随机选择，默认0不使用副本
+     */
+    private int replicas = 0;
+
+    public long getThreshold() {
+        return threshold;
+    }
+
+    public void setThreshold(long threshold) {
+        this.threshold = threshold;
+    }
+
+    public long getWindow() {
+        return window;
+    }
+
+    public void setWindow(long window) {
+        this.window = window;
+    }
+
+    public int getMaxKeys() {
+        return maxKeys;
+    }
+
+    public void setMaxKeys(int maxKeys) {
+        this.maxKeys = maxKeys;
+    }
+
+    public long getLocalExpire() {
+        return localExpire;
+    }
+
+    public void setLocalExpire(long localExpire) {
+        this.localExpire = localExpire;
+    }
+
+    public int getReplicas() {
+        return replicas;
+    }
+
+    public void setReplicas(int replicas) {
+        this.replicas = replicas;
+    }
+}
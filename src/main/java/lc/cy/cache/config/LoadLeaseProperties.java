@@ -0,0 +1,47 @@
+package lc.cy.cache.config;
+
+/**
+ * 类名称：LoadLeaseProperties <br>
+ * 类描述：跨节点加载互斥，同一个key在集群内只有一个节点执行加载 <br>
+ */
+public class LoadLeaseProperties {
+
+    /**
+     * 是否开启，默认false
+     */
+    private boolean enabled = false;
+
+    /**
+     * 加载租约的过期时间，单位毫秒，默认10s
+     */
+    private long timeout = 10000;
+
+    /**
+     * 未获取到租约时等待其他节点加载结果的最长时间，单位毫秒，默认3s，超时后由当前节点自行加载
+     */
+    private long wait = 3000;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public long getTimeout() {
+        return timeout;
+    }
+
+    public void setTimeout(long timeout) {
+        this.timeout = timeout;
+    }
+
+    public long getWait() {
+        return wait;
+    }
+
+    public void setWait(long wait) {
+        this.wait = wait;
+    }
+}
@@ -0,0 +1,34 @@
+package lc.cy.cache.config;
+
+/**
+ * 类名称：NegativeCacheProperties <br>
+ * 类描述：不存在的key及空值的本地缓存，单独保存，不占用本地缓存的容量 <br>
+ */
+public class NegativeCacheProperties {
+
+    /**
+     * 本地的缓存时间，单位毫秒，默认0不开启
+     */
+    private long expire = 0;
+
+    /**
+     * 最大数量，默认10000
+     */
+    private long maximumSize = 10000;
+
+    public long getExpire() {
+        return expire;
+    }
+
+    public void setExpire(long expire) {
+        this.expire = expire;
+    }
+
+    public long getMaximumSize() {
+        return maximumSize;
+    }
+
+    public void setMaximumSize(long maximumSize) {
+        this.maximumSize = maximumSize;
+    }
+}
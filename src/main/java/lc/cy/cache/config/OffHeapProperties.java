@@ -0,0 +1,34 @@
+package lc.cy.cache.config;
+
+/**
+ * 类名称：OffHeapProperties <br>
+ * 类描述：本地缓存的堆外存储，序列化后较大的值保存在堆外内存，本地缓存中只保存句柄，命中时再反序列化 <br>
+ */
+public class OffHeapProperties {
+
+    /**
+     * 堆外存储的容量，单位字节，大于0时开启，此时替代maximumSize及maximumWeight，默认-1不开启
+     */
+    private long capacity = -1;
+
+    /**
+     * 估算的堆内大小及序列化后的大小都达到此字节数的值才保存在堆外，估算值较小时不再序列化，默认1024
+     */
+    private int threshold = 1024;
+
+    public long getCapacity() {
+        return capacity;
+    }
+
+    public void setCapacity(long capacity) {
+        this.capacity = capacity;
+    }
+
+    public int getThreshold() {
+        return threshold;
+    }
+
+    public void setThreshold(int threshold) {
+        this.threshold = threshold;
+    }
+}
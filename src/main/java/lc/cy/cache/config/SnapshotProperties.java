@@ -0,0 +1,74 @@
+package lc.cy.cache.config;
+
+/**
+ * 类名称：SnapshotProperties <br>
+ * 类描述：本地缓存快照，停机时把各缓存最热的条目写入本地文件，启动时读取并回填本地缓存 <br>
+ */
+public class SnapshotProperties {
+
+    /**
+     * 快照文件的路径，默认不开启
+     */
+    private String path;
+
+    /**
+     * 快照中每个缓存保存的最大条目数，默认10000
+     */
+    private int entries = 10000;
+
+    /**
+     * 快照的有效时间，单位毫秒，超过此时间的快照启动时丢弃，默认300s
+     */
+    private long maxAge = 300000;
+
+    /**
+     * 定时写入快照的间隔，单位毫秒，默认0只在停机时写入
+     */
+    private long interval = 0;
+
+    /**
+     * 启动时是否只使用快照中的key，值通过MGET从redis重新读取，避免使用停机期间已变更的值，默认true。
+     * 关闭后直接使用快照中的值，停机期间其他节点的变更无法感知，只适合maxAge内数据不会变更的缓存
+     */
+    private boolean verify = true;
+
+    public String getPath() {
+        return path;
+    }
+
+    public void setPath(String path) {
+        this.path = path;
+    }
+
+    public int getEntries() {
+        return entries;
+    }
+
+    public void setEntries(int entries) {
+        this.entries = entries;
+    }
+
+    public long getMaxAge() {
+        return maxAge;
+    }
+
+    public void setMaxAge(long maxAge) {
+        this.maxAge = maxAge;
+    }
+
+    public long getInterval() {
+        return interval;
+    }
+
+    public void setInterval(long interval) {
+        this.interval = interval;
+    }
+
+    public boolean isVerify() {
+        return verify;
+    }
+
+    public void setVerify(boolean verify) {
+        this.verify = verify;
+    }
+}
@@ -0,0 +1,74 @@
+package lc.cy.cache.config;
+
+/**
+ * 类名称：StreamProperties <br>
+ * 类描述：stream失效方式的配置，invalidationMode为stream时生效 <br>
+ */
+public class StreamProperties {
+
+    /**
+     * 消息写入的stream，默认为topic加上":stream"
+     */
+    private String key;
+
+    /**
+     * stream保留的近似最大消息数，节点断开期间被裁剪的消息无法补读，此时清空全部本地缓存，默认100000
+     */
+    private long maxLen = 100000;
+
+    /**
+     * 每次读取的最大消息数，默认500
+     */
+    private int readCount = 500;
+
+    /**
+     * 每次读取的最长阻塞时间，单位毫秒，默认1000
+     */
+    private long block = 1000;
+
+    /**
+     * 是否只写入stream，默认false，同时发布到topic，供非jedis、集群、哨兵或stream读取未启动的节点接收，
+     * 读取stream的节点已取消订阅topic，不会重复处理。只有所有节点都使用stream时才可开启
+     */
+    private boolean only = false;
+
+    public String getKey() {
+        return key;
+    }
+
+    public void setKey(String key) {
+        this.key = key;
+    }
+
+    public long getMaxLen() {
+        return maxLen;
+    }
+
+    public void setMaxLen(long maxLen) {
+        this.maxLen = maxLen;
+    }
+
+    public int getReadCount() {
+        return readCount;
+    }
+
+    public void setReadCount(int readCount) {
+        this.readCount = readCount;
+    }
+
+    public long getBlock() {
+        return block;
+    }
+
+    public void setBlock(long block) {
+        this.block = block;
+    }
+
+    public boolean isOnly() {
+        return only;
+    }
+
+    public void setOnly(boolean only) {
+        this.only = only;
+    }
+}
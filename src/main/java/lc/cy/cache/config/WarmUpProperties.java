@@ -0,0 +1,47 @@
+package lc.cy.cache.config;
+
+/**
+ * 类名称：WarmUpProperties <br>
+ * 类描述：启动时从redis预热cacheNames中配置的缓存 <br>
+ */
+public class WarmUpProperties {
+
+    /**
+     * 是否开启预热，默认false
+     */
+    private boolean enabled = false;
+
+    /**
+     * 预热使用的线程数，默认2
+     */
+    private int threads = 2;
+
+    /**
+     * 预热时每秒最多读取的key数量，默认0不限速
+     */
+    private long rateLimit = 0;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    public void setThreads(int threads) {
+        this.threads = threads;
+    }
+
+    public long getRateLimit() {
+        return rateLimit;
+    }
+
+    public void setRateLimit(long rateLimit) {
+        this.rateLimit = rateLimit;
+    }
+}
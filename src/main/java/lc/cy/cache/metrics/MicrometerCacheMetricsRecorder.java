@@ -0,0 +1,131 @@
+package lc.cy.cache.metrics;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lc.cy.cache.caffine.CacheInvalidationDispatcher;
+import lc.cy.cache.caffine.CacheMessagePublisher;
+import lc.cy.cache.caffine.CacheMetricsRecorder;
+import lc.cy.cache.caffine.RedisCaffeineCache;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 类名称：MicrometerCacheMetricsRecorder <br>
+ * 类描述：基于micrometer的二级缓存指标，按cacheName打标签 <br>
+ */
+public class MicrometerCacheMetricsRecorder implements CacheMetricsRecorder {
+
+    private static final String PREFIX = "redis.caffeine.";
+
+    private MeterRegistry registry;
+
+    // cacheName:operation -> timer，避免每次记录时都查找注册表
+    private ConcurrentMap<String, Timer> timers = new ConcurrentHashMap<>();
+
+    public MicrometerCacheMetricsRecorder(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    @Override
+    public void bindCache(RedisCaffeineCache cache) {
+        String cacheName = cache.getName();
+        FunctionCounter.builder(PREFIX + "requests", cache, RedisCaffeineCache::getL1HitCount)
+                .tags("cache", cacheName, "result", "l1_hit")
+                .description("The number of requests answered by caffeine")
+                .register(registry);
+        FunctionCounter.builder(PREFIX + "requests", cache, RedisCaffeineCache::getL2HitCount)
+                .tags("cache", cacheName, "result", "l2_hit")
+                .description("The number of requests answered by redis")
+                .register(registry);
+        FunctionCounter.builder(PREFIX + "requests", cache, RedisCaffeineCache::getMissCount)
+                .tags("cache", cacheName, "result", "miss")
+                .description("The number of requests missed in both caffeine and redis")
+                .register(registry);
+        FunctionCounter.builder(PREFIX + "negative.hits", cache, RedisCaffeineCache::getNegativeHitCount)
+                .tag("cache", cacheName)
+                .description("The number of requests answered by the local cache of absent keys and null values")
+                .register(registry);
+        FunctionCounter.builder(PREFIX + "filter.rejections", cache, RedisCaffeineCache::getFilterRejectCount)
+                .tag("cache", cacheName)
+                .description("The number of redis reads skipped because the existence filter reported the key absent")
+                .register(registry);
+        if (cache.isOffHeap()) {
+            Gauge.builder(PREFIX + "offheap.used", cache, RedisCaffeineCache::getOffHeapUsedBytes)
+                    .tag("cache", cacheName)
+                    .description("The number of off-heap bytes used by cached values")
+                    .baseUnit("bytes")
+                    .register(registry);
+            FunctionCounter.builder(PREFIX + "offheap.heap.fallbacks", cache, RedisCaffeineCache::getOffHeapFallbackCount)
+                    .tag("cache", cacheName)
+                    .description("The number of values kept on heap because the off-heap arena was full or the value exceeded a slab")
+                    .register(registry);
+        }
+        // caffeine自身的命中、淘汰数量及淘汰权重
+        CaffeineCacheMetrics.monitor(registry, cache.getCaffeineCache(), cacheName);
+    }
+
+    @Override
+    public void bindPublisher(CacheMessagePublisher publisher) {
+        FunctionCounter.builder(PREFIX + "invalidation.published.keys", publisher, CacheMessagePublisher::getPublishedKeyCount)
+                .tag("topic", publisher.getTopic())
+                .description("The number of invalidated keys published")
+                .register(registry);
+        FunctionCounter.builder(PREFIX + "invalidation.publish.failures", publisher, CacheMessagePublisher::getPublishFailureCount)
+                .tag("topic", publisher.getTopic())
+                .register(registry);
+        FunctionTimer.builder(PREFIX + "invalidation.publish", publisher, CacheMessagePublisher::getPublishCount,
+                CacheMessagePublisher::getPublishNanos, TimeUnit.NANOSECONDS)
+                .tag("topic", publisher.getTopic())
+                .description("The number and time of invalidation messages sent, a batch counts as one message")
+                .register(registry);
+    }
+
+    @Override
+    public void bindDispatcher(CacheInvalidationDispatcher dispatcher) {
+        Gauge.builder(PREFIX + "invalidation.queue.depth", dispatcher, CacheInvalidationDispatcher::getQueueDepth)
+                .description("The number of invalidation tasks waiting in all lanes")
+                .register(registry);
+        Gauge.builder(PREFIX + "invalidation.queue.max.lane.depth", dispatcher, CacheInvalidationDispatcher::getMaxLaneDepth)
+                .description("The number of invalidation tasks waiting in the busiest lane")
+                .register(registry);
+        FunctionCounter.builder(PREFIX + "invalidation.overflows", dispatcher, CacheInvalidationDispatcher::getOverflowCount)
+                .description("The number of times a full lane caused the whole local cache to be cleared")
+                .register(registry);
+    }
+
+    @Override
+    public void recordRedis(String cacheName, String operation, long nanos) {
+        timer(PREFIX + "redis", cacheName, "operation", operation).record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public void recordLoad(String cacheName, long nanos, boolean success) {
+        timer(PREFIX + "load", cacheName, "result", success ? "success" : "failure").record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public void recordInvalidationReceived(String cacheName, long lagMillis) {
+        registry.counter(PREFIX + "invalidation.received", "cache", cacheName).increment();
+        if (lagMillis >= 0) {
+            timer(PREFIX + "invalidation.lag", cacheName, "source", "topic").record(lagMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private Timer timer(String name, String cacheName, String tagKey, String tagValue) {
+        String id = name + ':' + cacheName + ':' + tagValue;
+        Timer timer = timers.get(id);
+        if (timer == null) {
+            timer = timers.computeIfAbsent(id, k -> Timer.builder(name)
+                    .tags("cache", cacheName, tagKey, tagValue)
+                    .publishPercentileHistogram()
+                    .register(registry));
+        }
+        return timer;
+    }
+}
@@ -0,0 +1,185 @@
+package lc.cy.util;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 类名称：RespConnection <br>
+ * 类描述：最简单的RESP2/RESP3协议连接，用于客户端库不支持的命令（CLIENT TRACKING、STREAM等）及需要独占的长连接 <br>
+ */
+public class RespConnection implements Closeable {
+
+    private static final byte[] CRLF = {'\r', '\n'};
+
+    private Socket socket;
+
+    private InputStream in;
+
+    private OutputStream out;
+
+    public RespConnection(String host, int port, int timeoutMillis) throws IOException {
+        this.socket = new Socket();
+        this.socket.setKeepAlive(true);
+        this.socket.setTcpNoDelay(true);
+        this.socket.connect(new InetSocketAddress(host, port), timeoutMillis);
+        this.socket.setSoTimeout(timeoutMillis);
+        this.in = new BufferedInputStream(socket.getInputStream());
+        this.out = new BufferedOutputStream(socket.getOutputStream());
+    }
+
+    /**
+     * @param password 为空时不认证
+     * @param database 小于等于0时不切换
+     * @description 认证并选择db
+     * @version 1.0.0
+     */
+    public void init(String password, int database) throws IOException {
+        if (password != null && !password.isEmpty()) {
+            command("AUTH", password);
+        }
+        if (database > 0) {
+            command("SELECT", String.valueOf(database));
+        }
+    }
+
+    /**
+     * 发送命令并读取回复，错误回复抛出RespException
+     *
+     * @param args String、byte[]或数字
+     */
+    public synchronized Object command(Object... args) throws IOException {
+        send(args);
+        return read();
+    }
+
+    public synchronized void send(Object... args) throws IOException {
+        out.write('*');
+        out.write(String.valueOf(args.length).getBytes(StandardCharsets.US_ASCII));
+        out.write(CRLF);
+        for (Object arg : args) {
+            byte[] bytes = arg instanceof byte[] ? (byte[]) arg : String.valueOf(arg).getBytes(StandardCharsets.UTF_8);
+            out.write('$');
+            out.write(String.valueOf(bytes.length).getBytes(StandardCharsets.US_ASCII));
+            out.write(CRLF);
+            out.write(bytes);
+            out.write(CRLF);
+        }
+        out.flush();
+    }
+
+    /**
+     * 读取一个回复，简单字符串返回String，整数返回Long，批量字符串返回byte[]，数组及push返回List
+     */
+    public Object read() throws IOException {
+        int type = in.read();
+        if (type == -1) {
+            throw new EOFException("connection closed by redis");
+        }
+        String line = readLine();
+        switch (type) {
+            case '+':
+                return line;
+            case '-':
+                throw new RespException(line);
+            case ':':
+                return Long.parseLong(line);
+            case '$':
+                return readBulk(Integer.parseInt(line));
+            case '*':
+            case '>':
+            case '~':
+                return readArray(Integer.parseInt(line));
+            case '%':
+                return readArray(Integer.parseInt(line) * 2);
+            case '_':
+                return null;
+            case '#':
+                return "t".equals(line);
+            default:
+                throw new IOException("unsupported reply type:" + (char) type);
+        }
+    }
+
+    /**
+     * 设置读超时，0为一直阻塞
+     */
+    public void setReadTimeout(int timeoutMillis) throws IOException {
+        socket.setSoTimeout(timeoutMillis);
+    }
+
+    public static boolean isTimeout(IOException e) {
+        return e instanceof SocketTimeoutException;
+    }
+
+    private List<Object> readArray(int size) throws IOException {
+        if (size < 0) {
+            return null;
+        }
+        List<Object> items = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            items.add(read());
+        }
+        return items;
+    }
+
+    private byte[] readBulk(int length) throws IOException {
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        int offset = 0;
+        while (offset < length) {
+            int n = in.read(bytes, offset, length - offset);
+            if (n == -1) {
+                throw new EOFException("connection closed by redis");
+            }
+            offset += n;
+        }
+        // 跳过CRLF
+        in.read();
+        in.read();
+        return bytes;
+    }
+
+    private String readLine() throws IOException {
+        StringBuilder line = new StringBuilder();
+        int b;
+        while ((b = in.read()) != '\r') {
+            if (b == -1) {
+                throw new EOFException("connection closed by redis");
+            }
+            line.append((char) b);
+        }
+        in.read();
+        return line.toString();
+    }
+
+    @Override
+    public void close() {
+        try {
+            socket.close();
+        } catch (IOException e) {
+            // ignore
+        }
+    }
+
+    public static class RespException extends IOException {
+
+        private static final long serialVersionUID = -4302218736615542918L;
+
+        public RespException(String message) {
+            super(message);
+        }
+    }
+}
@@ -0,0 +1,241 @@
+package lc.cy.cache;
+
+import lc.cy.cache.caffine.RedisCaffeineCache;
+import lc.cy.cache.caffine.RedisCaffeineCacheManager;
+import lc.cy.cache.codec.JsonCacheMessageCodec;
+import lc.cy.cache.config.CacheRedisCaffeineProperties;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.jedis.JedisConnectionFactory;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.data.redis.serializer.JdkSerializationRedisSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.StringRedisSerializer;
+import redis.embedded.RedisServer;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 类名称：ClientTrackingInvalidationListenerTest <br>
+ * 类描述：基于内嵌redis验证CLIENT TRACKING推送的失效、redis key的解析及推送连接断开后的兜底 <br>
+ */
+public class ClientTrackingInvalidationListenerTest {
+
+    private static final int PORT = 16390;
+
+    private static final String CACHE_NAME = "users";
+
+    private static RedisServer redisServer;
+
+    private static JedisConnectionFactory connectionFactory;
+
+    private static RedisTemplate<Object, Object> redisTemplate;
+
+    private final List<Node> nodes = new ArrayList<>();
+
+    @BeforeClass
+    public static void startRedis() throws Exception {
+        redisServer = new RedisServer(PORT);
+        redisServer.start();
+        connectionFactory = new JedisConnectionFactory(new RedisStandaloneConfiguration("127.0.0.1", PORT));
+        connectionFactory.afterPropertiesSet();
+        redisTemplate = template(new StringRedisSerializer());
+    }
+
+    @AfterClass
+    public static void stopRedis() throws Exception {
+        if (connectionFactory != null) {
+            connectionFactory.destroy();
+        }
+        if (redisServer != null) {
+            redisServer.stop();
+        }
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        for (Node node : nodes) {
+            node.destroy();
+        }
+        nodes.clear();
+        redisTemplate.execute((RedisCallback<Object>) connection -> {
+            connection.flushDb();
+            return null;
+        });
+    }
+
+    @Test
+    public void pushInvalidatesLocalCache() {
+        Node node = startNode(redisTemplate, properties());
+        await(node.manager::isServerTracking, 5000);
+
+        RedisCaffeineCache cache = node.cache();
+        cache.put("k", "v1");
+        // 本节点的写入同样会收到推送，读取回填本地缓存直到推送处理完成
+        await(() -> cache.get("k") != null && cache.getCaffeineCache().getIfPresent("k") != null, 5000);
+
+        // 直接修改redis，不经过缓存也不发布消息，只能由服务端推送失效
+        redisTemplate.opsForValue().set(CACHE_NAME + ":k", "v2");
+        await(() -> cache.getCaffeineCache().getIfPresent("k") == null, 5000);
+        assertEquals("v2", cache.get("k").get());
+    }
+
+    @Test
+    public void clearLocalByRedisKeyParsesGenerationAndPrefix() {
+        CacheRedisCaffeineProperties properties = properties();
+        properties.setCachePrefix("p");
+        properties.getRedis().setNamespaceVersion(true);
+        Node node = startNode(redisTemplate, properties, false);
+        RedisCaffeineCache cache = node.cache();
+
+        cache.put("k", "v");
+        // 任意代的key都对应同一个本地缓存key
+        assertTrue(cache.clearLocalByRedisKey(CACHE_NAME + ":v3:p:k"));
+        assertNull(cache.getCaffeineCache().getIfPresent("k"));
+
+        cache.put("k", "v");
+        // 第0代的key没有代号
+        assertTrue(cache.clearLocalByRedisKey(CACHE_NAME + ":p:k"));
+        assertNull(cache.getCaffeineCache().getIfPresent("k"));
+
+        cache.put("k", "v");
+        assertFalse(cache.clearLocalByRedisKey(CACHE_NAME + ":v3:q:k"));
+        assertFalse(cache.clearLocalByRedisKey(CACHE_NAME + ":vx:p:k"));
+        assertFalse(cache.clearLocalByRedisKey("orders:v1:p:k"));
+        assertNotNull(cache.getCaffeineCache().getIfPresent("k"));
+    }
+
+    @Test
+    public void peersPublishWhileANodeIsDisconnected() {
+        Node first = startNode(redisTemplate, properties());
+        Node second = startNode(redisTemplate, properties());
+        await(() -> first.manager.isServerTracking() && second.manager.isServerTracking(), 5000);
+
+        byte[] id = String.valueOf(first.listener.getSubscriberId()).getBytes(StandardCharsets.UTF_8);
+        redisTemplate.execute((RedisCallback<Object>) connection ->
+                connection.execute("CLIENT", "KILL".getBytes(StandardCharsets.UTF_8), "ID".getBytes(StandardCharsets.UTF_8), id));
+
+        // 断开的节点登记后，其他节点也恢复发布消息
+        await(() -> !first.manager.isServerTracking() && !second.manager.isServerTracking(), 5000);
+        // 重连后所有节点恢复使用推送
+        await(() -> first.manager.isServerTracking() && second.manager.isServerTracking(), 10000);
+    }
+
+    @Test
+    public void nodeWithoutStringKeySerializerKeepsPeersPublishing() throws Exception {
+        Node first = startNode(redisTemplate, properties());
+        await(first.manager::isServerTracking, 5000);
+
+        Node second = startNode(template(new JdkSerializationRedisSerializer()), properties());
+        await(() -> !first.manager.isServerTracking(), 5000);
+        assertFalse(second.manager.isServerTracking());
+
+        // 两个节点的redis key不同，服务端不会推送失效，本地缓存只能由topic消息清理
+        RedisCaffeineCache cache = first.cache();
+        cache.put("k", "v1");
+        await(() -> cache.get("k") != null && cache.getCaffeineCache().getIfPresent("k") != null, 5000);
+        second.cache().put("k", "v2");
+        await(() -> cache.getCaffeineCache().getIfPresent("k") == null, 5000);
+
+        // 未使用推送的节点下线后其他节点恢复使用推送
+        second.destroy();
+        nodes.remove(second);
+        await(first.manager::isServerTracking, 5000);
+    }
+
+    private static CacheRedisCaffeineProperties properties() {
+        CacheRedisCaffeineProperties properties = new CacheRedisCaffeineProperties();
+        properties.setRedis(new CacheRedisCaffeineProperties.Redis());
+        properties.getRedis().setInvalidationMode(CacheRedisCaffeineProperties.INVALIDATION_TRACKING);
+        return properties;
+    }
+
+    private static RedisTemplate<Object, Object> template(RedisSerializer<?> keySerializer) {
+        RedisTemplate<Object, Object> template = new RedisTemplate<>();
+        template.setConnectionFactory(connectionFactory);
+        template.setKeySerializer(keySerializer);
+        template.setValueSerializer(new JdkSerializationRedisSerializer());
+        template.afterPropertiesSet();
+        return template;
+    }
+
+    private Node startNode(RedisTemplate<Object, Object> template, CacheRedisCaffeineProperties properties) {
+        return startNode(template, properties, true);
+    }
+
+    private Node startNode(RedisTemplate<Object, Object> template, CacheRedisCaffeineProperties properties, boolean tracking) {
+        Node node = new Node();
+        JsonCacheMessageCodec codec = new JsonCacheMessageCodec(template);
+        node.manager = new RedisCaffeineCacheManager(properties, template, codec);
+        node.manager.afterPropertiesSet();
+        node.container = new RedisMessageListenerContainer();
+        // 订阅连接单独使用连接工厂，容器停止时不会把仍处于订阅状态的连接还给测试共用的连接池
+        node.containerConnectionFactory = new JedisConnectionFactory(new RedisStandaloneConfiguration("127.0.0.1", PORT));
+        node.containerConnectionFactory.afterPropertiesSet();
+        node.container.setConnectionFactory(node.containerConnectionFactory);
+        node.container.addMessageListener(new CaffineChangeMessageListener(template, node.manager, codec),
+                new ChannelTopic(properties.getRedis().getTopic()));
+        node.container.afterPropertiesSet();
+        node.container.start();
+        if (tracking) {
+            node.listener = new ClientTrackingInvalidationListener(node.manager, template, properties.getRedis());
+            node.listener.afterPropertiesSet();
+        }
+        nodes.add(node);
+        return node;
+    }
+
+    private static void await(BooleanSupplier condition, long timeoutMillis) {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        while (!condition.getAsBoolean()) {
+            if (System.currentTimeMillis() > deadline) {
+                throw new AssertionError("condition not met in " + timeoutMillis + "ms");
+            }
+            try {
+                Thread.sleep(5);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new AssertionError(e);
+            }
+        }
+    }
+
+    private static class Node {
+
+        RedisCaffeineCacheManager manager;
+
+        RedisMessageListenerContainer container;
+
+        JedisConnectionFactory containerConnectionFactory;
+
+        ClientTrackingInvalidationListener listener;
+
+        RedisCaffeineCache cache() {
+            return (RedisCaffeineCache) manager.getCache(CACHE_NAME);
+        }
+
+        void destroy() throws Exception {
+            if (listener != null) {
+                listener.destroy();
+            }
+            container.destroy();
+            containerConnectionFactory.destroy();
+            manager.destroy();
+        }
+    }
+}
@@ -0,0 +1,280 @@
+package lc.cy.cache;
+
+import lc.cy.cache.caffine.RedisCaffeineCache;
+import lc.cy.cache.caffine.RedisCaffeineCacheManager;
+import lc.cy.cache.codec.BinaryCacheMessageCodec;
+import lc.cy.cache.codec.CacheMessageCodec;
+import lc.cy.cache.codec.JsonCacheMessageCodec;
+import lc.cy.cache.config.CacheRedisCaffeineProperties;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.jedis.JedisConnectionFactory;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.data.redis.serializer.JdkSerializationRedisSerializer;
+import org.springframework.data.redis.serializer.StringRedisSerializer;
+import redis.embedded.RedisServer;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 类名称：StreamInvalidationListenerTest <br>
+ * 类描述：基于内嵌redis验证stream断线重连后按裁剪记录判断消息遗漏，读取stream的节点只处理一次消息，以及未读取stream的节点仍能收到topic消息 <br>
+ */
+public class StreamInvalidationListenerTest {
+
+    private static final int PORT = 16392;
+
+    private static final String CACHE_NAME = "users";
+
+    private static final long MAX_LEN = 10;
+
+    private static RedisServer redisServer;
+
+    private static JedisConnectionFactory connectionFactory;
+
+    private static RedisTemplate<Object, Object> redisTemplate;
+
+    private final List<Node> nodes = new ArrayList<>();
+
+    @BeforeClass
+    public static void startRedis() throws Exception {
+        redisServer = new RedisServer(PORT);
+        redisServer.start();
+        connectionFactory = new JedisConnectionFactory(new RedisStandaloneConfiguration("127.0.0.1", PORT));
+        connectionFactory.afterPropertiesSet();
+        redisTemplate = new RedisTemplate<>();
+        redisTemplate.setConnectionFactory(connectionFactory);
+        redisTemplate.setKeySerializer(new StringRedisSerializer());
+        redisTemplate.setValueSerializer(new JdkSerializationRedisSerializer());
+        redisTemplate.afterPropertiesSet();
+    }
+
+    @AfterClass
+    public static void stopRedis() throws Exception {
+        if (connectionFactory != null) {
+            connectionFactory.destroy();
+        }
+        if (redisServer != null) {
+            redisServer.stop();
+        }
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        for (Node node : nodes) {
+            node.destroy();
+        }
+        nodes.clear();
+        redisTemplate.execute((RedisCallback<Object>) connection -> {
+            connection.flushDb();
+            return null;
+        });
+    }
+
+    @Test
+    public void trimmingTheLastReadEntryIsNotAGap() {
+        Node node = startNode(true);
+        RedisCaffeineCache cache = node.cache();
+        writeAndAwaitRead(node, cache, 12);
+
+        // 断开期间写入maxLen条，恰好裁剪到最后读取的那条消息，未读的消息都还在
+        killStreamConnection();
+        for (int i = 0; i < MAX_LEN; i++) {
+            cache.put("k" + i, "v");
+        }
+        awaitCaughtUp(node);
+        assertEquals(0, node.listener.getGapCount());
+    }
+
+    @Test
+    public void trimmingUnreadEntriesIsAGap() {
+        Node node = startNode(true);
+        RedisCaffeineCache cache = node.cache();
+        writeAndAwaitRead(node, cache, 12);
+
+        killStreamConnection();
+        for (int i = 0; i < MAX_LEN + 1; i++) {
+            cache.put("k" + i, "v");
+        }
+        awaitCaughtUp(node);
+        assertEquals(1, node.listener.getGapCount());
+    }
+
+    @Test
+    public void nodesWithoutStreamReceiveTopicMessages() {
+        Node streamNode = startNode(true);
+        Node topicNode = startNode(false);
+        await(() -> streamNode.listener.getLastId() != null, 5000);
+        RedisCaffeineCache writer = streamNode.cache();
+        RedisCaffeineCache reader = topicNode.cache();
+
+        writer.put("k", "v1");
+        assertEquals("v1", reader.get("k").get());
+        writer.put("k", "v2");
+        await(() -> reader.getCaffeineCache().getIfPresent("k") == null, 5000);
+        assertEquals("v2", reader.get("k").get());
+    }
+
+    @Test
+    public void streamNodesHandleEachMessageOnce() throws InterruptedException {
+        Node writerNode = startNode(true);
+        Node readerNode = startNode(true);
+        await(() -> writerNode.listener.getLastId() != null && readerNode.listener.getLastId() != null, 5000);
+        RedisCaffeineCache writer = writerNode.cache();
+        readerNode.cache();
+
+        for (int i = 0; i < 5; i++) {
+            writer.put("k" + i, "v");
+        }
+        awaitCaughtUp(readerNode);
+        // 写入方同时发布到topic，读取stream的节点已取消订阅，不会再处理一次
+        Thread.sleep(200);
+        assertEquals(5, readerNode.manager.getInvalidationDispatcher().getDispatchedCount());
+    }
+
+    @Test
+    public void writesAfterScriptFlushFallBackToEval() {
+        Node node = startNode(true);
+        RedisCaffeineCache cache = node.cache();
+        writeAndAwaitRead(node, cache, 1);
+
+        redisTemplate.execute((RedisCallback<Object>) connection -> {
+            connection.scriptFlush();
+            return null;
+        });
+        String before = latestId();
+        cache.put("k", "v");
+        assertEquals(0, node.manager.getMessagePublisher().getPublishFailureCount());
+        assertTrue(StreamInvalidationListener.compareId(latestId(), before) > 0);
+    }
+
+    private void writeAndAwaitRead(Node node, RedisCaffeineCache cache, int count) {
+        await(() -> node.listener.getLastId() != null, 5000);
+        for (int i = 0; i < count; i++) {
+            cache.put("init" + i, "v");
+        }
+        awaitCaughtUp(node);
+        assertEquals(0, node.listener.getGapCount());
+    }
+
+    private void awaitCaughtUp(Node node) {
+        await(() -> latestId().equals(node.listener.getLastId()), 10000);
+    }
+
+    private static String latestId() {
+        Object reply = redisTemplate.execute((RedisCallback<Object>) connection -> connection.execute("XREVRANGE",
+                bytes(streamKey()), bytes("+"), bytes("-"), bytes("COUNT"), bytes("1")));
+        List<?> entries = (List<?>) reply;
+        return entries.isEmpty() ? "" : new String((byte[]) ((List<?>) entries.get(0)).get(0), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 断开阻塞在XREAD上的连接，监听器间隔1秒后重连
+     */
+    private static void killStreamConnection() {
+        await(() -> streamClientId() != null, 5000);
+        String id = streamClientId();
+        redisTemplate.execute((RedisCallback<Object>) connection ->
+                connection.execute("CLIENT", bytes("KILL"), bytes("ID"), bytes(id)));
+        assertNull(streamClientId());
+    }
+
+    private static String streamClientId() {
+        Object reply = redisTemplate.execute((RedisCallback<Object>) connection -> connection.execute("CLIENT", bytes("LIST")));
+        String list = reply instanceof byte[] ? new String((byte[]) reply, StandardCharsets.UTF_8) : String.valueOf(reply);
+        for (String line : list.split("\n")) {
+            if (line.contains("cmd=xread")) {
+                return line.substring(3, line.indexOf(' '));
+            }
+        }
+        return null;
+    }
+
+    private static String streamKey() {
+        return new CacheRedisCaffeineProperties.Redis().resolveStreamKey();
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private Node startNode(boolean stream) {
+        CacheRedisCaffeineProperties properties = new CacheRedisCaffeineProperties();
+        properties.setRedis(new CacheRedisCaffeineProperties.Redis());
+        properties.getRedis().getStream().setMaxLen(MAX_LEN);
+        Node node = new Node();
+        // String类型的key不依赖json序列化
+        CacheMessageCodec codec = new BinaryCacheMessageCodec(new JsonCacheMessageCodec(redisTemplate));
+        node.manager = new RedisCaffeineCacheManager(properties, redisTemplate, codec);
+        node.manager.afterPropertiesSet();
+        CaffineChangeMessageListener messageListener = new CaffineChangeMessageListener(redisTemplate, node.manager, codec);
+        node.container = new RedisMessageListenerContainer();
+        // 订阅连接单独使用连接工厂，容器停止时不会把仍处于订阅状态的连接还给测试共用的连接池
+        node.containerConnectionFactory = new JedisConnectionFactory(new RedisStandaloneConfiguration("127.0.0.1", PORT));
+        node.containerConnectionFactory.afterPropertiesSet();
+        node.container.setConnectionFactory(node.containerConnectionFactory);
+        node.container.addMessageListener(messageListener, new ChannelTopic(properties.getRedis().getTopic()));
+        node.container.afterPropertiesSet();
+        node.container.start();
+        if (stream) {
+            properties.getRedis().setInvalidationMode(CacheRedisCaffeineProperties.INVALIDATION_STREAM);
+            node.listener = new StreamInvalidationListener(node.manager, connectionFactory, messageListener, properties.getRedis());
+            node.listener.setTopicContainer(node.container);
+            node.listener.afterPropertiesSet();
+        }
+        nodes.add(node);
+        return node;
+    }
+
+    private static void await(BooleanSupplier condition, long timeoutMillis) {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        while (!condition.getAsBoolean()) {
+            if (System.currentTimeMillis() > deadline) {
+                throw new AssertionError("condition not met in " + timeoutMillis + "ms");
+            }
+            try {
+                Thread.sleep(5);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new AssertionError(e);
+            }
+        }
+    }
+
+    private static class Node {
+
+        RedisCaffeineCacheManager manager;
+
+        RedisMessageListenerContainer container;
+
+        JedisConnectionFactory containerConnectionFactory;
+
+        StreamInvalidationListener listener;
+
+        RedisCaffeineCache cache() {
+            return (RedisCaffeineCache) manager.getCache(CACHE_NAME);
+        }
+
+        void destroy() throws Exception {
+            if (listener != null) {
+                listener.destroy();
+            }
+            container.destroy();
+            containerConnectionFactory.destroy();
+            manager.destroy();
+        }
+    }
+}
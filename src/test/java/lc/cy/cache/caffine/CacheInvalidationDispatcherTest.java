@@ -0,0 +1,172 @@
+package lc.cy.cache.caffine;
+
+import lc.cy.cache.CaffineChangeMessageListener;
+import lc.cy.cache.codec.BinaryCacheMessageCodec;
+import lc.cy.cache.codec.CacheMessageCodec;
+import lc.cy.cache.config.CacheRedisCaffeineProperties;
+import org.junit.After;
+import org.junit.Test;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.jedis.JedisConnectionFactory;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.serializer.StringRedisSerializer;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 类名称：CacheInvalidationDispatcherTest <br>
+ * 类描述：验证同一个(cacheName, key)的消息按顺序处理，通道已满时重置该缓存的本地缓存，清空消息在接收线程中直接执行。
+ * 不需要连接redis，本地缓存的写入及清理都不访问redis <br>
+ */
+public class CacheInvalidationDispatcherTest {
+
+    private final List<Runnable> cleanups = new ArrayList<>();
+
+    @After
+    public void tearDown() {
+        for (Runnable cleanup : cleanups) {
+            cleanup.run();
+        }
+    }
+
+    @Test
+    public void sameKeyIsHandledInOrder() throws Exception {
+        CacheInvalidationDispatcher dispatcher = dispatcher(4, 10000, cacheName -> {
+            throw new AssertionError("lane should not overflow");
+        });
+        int lane = dispatcher.laneOf("users", "k");
+        assertEquals(lane, dispatcher.laneOf("users", "k"));
+        List<Integer> handled = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch done = new CountDownLatch(1000);
+        for (int i = 0; i < 1000; i++) {
+            int sequence = i;
+            dispatcher.dispatch(lane, "users", () -> {
+                handled.add(sequence);
+                done.countDown();
+            });
+        }
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(Integer.valueOf(i), handled.get(i));
+        }
+        assertEquals(1000, dispatcher.getDispatchedCount());
+    }
+
+    @Test
+    public void fullLaneCallsOverflowHandler() throws Exception {
+        List<String> overflowed = new ArrayList<>();
+        CacheInvalidationDispatcher dispatcher = dispatcher(1, 1, overflowed::add);
+        CountDownLatch release = new CountDownLatch(1);
+        try {
+            block(dispatcher, release);
+            dispatcher.dispatch(0, "users", () -> {
+            });
+            dispatcher.dispatch(0, "orders", () -> {
+            });
+            assertEquals(Collections.singletonList("orders"), overflowed);
+            assertEquals(1, dispatcher.getOverflowCount());
+        } finally {
+            release.countDown();
+        }
+    }
+
+    @Test
+    public void overflowResetsLocalCache() throws Exception {
+        CacheRedisCaffeineProperties properties = properties();
+        properties.getRedis().setListenerLanes(1);
+        properties.getRedis().setListenerLaneCapacity(1);
+        RedisCaffeineCacheManager manager = manager(properties);
+        RedisCaffeineCache cache = (RedisCaffeineCache) manager.getCache("users");
+        cache.getCaffeineCache().put("other", "v");
+        CaffineChangeMessageListener listener = new CaffineChangeMessageListener(null, manager, codec());
+        CountDownLatch release = new CountDownLatch(1);
+        try {
+            block(manager.getInvalidationDispatcher(), release);
+            manager.getInvalidationDispatcher().dispatch(0, "users", () -> {
+            });
+            // 通道已满，这条消息改为清空整个本地缓存
+            listener.receive(encode(new CacheMessage("users", (Object) "k")));
+            assertNull(cache.getCaffeineCache().getIfPresent("other"));
+        } finally {
+            release.countDown();
+        }
+    }
+
+    @Test
+    public void clearRunsInline() {
+        RedisCaffeineCacheManager manager = manager(properties());
+        RedisCaffeineCache cache = (RedisCaffeineCache) manager.getCache("users");
+        cache.getCaffeineCache().put("k", "v");
+        CaffineChangeMessageListener listener = new CaffineChangeMessageListener(null, manager, codec());
+
+        listener.receive(encode(new CacheMessage("users", (Object) null)));
+        // receive返回时已清空，没有经过通道
+        assertNull(cache.getCaffeineCache().getIfPresent("k"));
+        assertEquals(0, manager.getInvalidationDispatcher().getDispatchedCount());
+    }
+
+    private CacheInvalidationDispatcher dispatcher(int laneCount, int laneCapacity,
+                                                   Consumer<String> overflowHandler) {
+        CacheInvalidationDispatcher dispatcher = new CacheInvalidationDispatcher(laneCount, laneCapacity, overflowHandler);
+        cleanups.add(dispatcher::shutdown);
+        return dispatcher;
+    }
+
+    /**
+     * 占住0号通道的线程，直到release
+     */
+    private static void block(CacheInvalidationDispatcher dispatcher, CountDownLatch release) throws InterruptedException {
+        CountDownLatch running = new CountDownLatch(1);
+        dispatcher.dispatch(0, "users", () -> {
+            running.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        assertTrue(running.await(5, TimeUnit.SECONDS));
+    }
+
+    private RedisCaffeineCacheManager manager(CacheRedisCaffeineProperties properties) {
+        // 不会建立连接
+        JedisConnectionFactory connectionFactory = new JedisConnectionFactory(new RedisStandaloneConfiguration("127.0.0.1", 1));
+        RedisTemplate<Object, Object> redisTemplate = new RedisTemplate<>();
+        redisTemplate.setConnectionFactory(connectionFactory);
+        redisTemplate.setKeySerializer(new StringRedisSerializer());
+        redisTemplate.afterPropertiesSet();
+        RedisCaffeineCacheManager manager = new RedisCaffeineCacheManager(properties, redisTemplate, codec());
+        cleanups.add(() -> {
+            try {
+                manager.destroy();
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        return manager;
+    }
+
+    private static CacheRedisCaffeineProperties properties() {
+        CacheRedisCaffeineProperties properties = new CacheRedisCaffeineProperties();
+        properties.setRedis(new CacheRedisCaffeineProperties.Redis());
+        return properties;
+    }
+
+    private static CacheMessageCodec codec() {
+        return new BinaryCacheMessageCodec(null);
+    }
+
+    private static byte[] encode(CacheMessage message) {
+        message.setOrigin("peer");
+        return codec().encode(Collections.singletonList(message));
+    }
+}
@@ -0,0 +1,43 @@
+package lc.cy.cache.caffine;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.data.redis.serializer.JdkSerializationRedisSerializer;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * 类名称：CacheSnapshotStoreTest <br>
+ * 类描述：验证损坏的快照文件不会按读到的长度分配内存 <br>
+ */
+public class CacheSnapshotStoreTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void corruptedLengthIsRejected() throws Exception {
+        File file = folder.newFile("snapshot");
+        try (DataOutputStream out = new DataOutputStream(new FileOutputStream(file))) {
+            out.writeInt(0x52435331);
+            out.writeLong(System.currentTimeMillis());
+            out.writeInt(1);
+            // 缓存名称的长度远超文件剩余字节
+            out.writeInt(Integer.MAX_VALUE);
+            out.writeInt(0);
+        }
+        AtomicInteger resolved = new AtomicInteger();
+        CacheSnapshotStore store = new CacheSnapshotStore(file.getPath(), 100, 0, true, new JdkSerializationRedisSerializer());
+        store.load(name -> {
+            resolved.incrementAndGet();
+            return null;
+        });
+        assertEquals(0, resolved.get());
+    }
+}
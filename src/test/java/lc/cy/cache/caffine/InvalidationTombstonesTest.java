@@ -0,0 +1,165 @@
+package lc.cy.cache.caffine;
+
+import lc.cy.cache.config.CacheRedisCaffeineProperties;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.jedis.JedisConnectionFactory;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.serializer.JdkSerializationRedisSerializer;
+import org.springframework.data.redis.serializer.StringRedisSerializer;
+import redis.embedded.RedisServer;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 类名称：InvalidationTombstonesTest <br>
+ * 类描述：基于内嵌redis复现回填竞争：读取redis得到旧值后、回填本地缓存前，其他节点写入新值且失效消息已处理，
+ * 旧值不能再回填到本地缓存 <br>
+ */
+public class InvalidationTombstonesTest {
+
+    private static final int PORT = 16393;
+
+    private static RedisServer redisServer;
+
+    private static JedisConnectionFactory connectionFactory;
+
+    private static RedisTemplate<Object, Object> redisTemplate;
+
+    private static BlockingSerializer valueSerializer;
+
+    private RedisCaffeineCacheManager cacheManager;
+
+    private ExecutorService executor;
+
+    @BeforeClass
+    public static void startRedis() throws Exception {
+        redisServer = new RedisServer(PORT);
+        redisServer.start();
+        connectionFactory = new JedisConnectionFactory(new RedisStandaloneConfiguration("127.0.0.1", PORT));
+        connectionFactory.afterPropertiesSet();
+        valueSerializer = new BlockingSerializer();
+        redisTemplate = new RedisTemplate<>();
+        redisTemplate.setConnectionFactory(connectionFactory);
+        redisTemplate.setKeySerializer(new StringRedisSerializer());
+        redisTemplate.setValueSerializer(valueSerializer);
+        redisTemplate.afterPropertiesSet();
+    }
+
+    @AfterClass
+    public static void stopRedis() throws Exception {
+        if (connectionFactory != null) {
+            connectionFactory.destroy();
+        }
+        if (redisServer != null) {
+            redisServer.stop();
+        }
+    }
+
+    @Before
+    public void setUp() {
+        CacheRedisCaffeineProperties properties = new CacheRedisCaffeineProperties();
+        properties.setRedis(new CacheRedisCaffeineProperties.Redis());
+        cacheManager = new RedisCaffeineCacheManager(properties, redisTemplate);
+        executor = Executors.newSingleThreadExecutor();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        valueSerializer.disarm();
+        executor.shutdownNow();
+        cacheManager.destroy();
+        redisTemplate.execute((RedisCallback<Object>) connection -> {
+            connection.flushDb();
+            return null;
+        });
+    }
+
+    @Test
+    public void staleReadIsNotInstalledAfterInvalidation() throws Exception {
+        RedisCaffeineCache cache = (RedisCaffeineCache) cacheManager.getCache("users");
+        redisTemplate.opsForValue().set("users:k", "v1");
+
+        // 读取线程取到v1后停在反序列化中，尚未回填本地缓存
+        valueSerializer.arm("v1");
+        Future<Object> read = executor.submit(() -> cache.get("k").get());
+        assertTrue(valueSerializer.blocked.await(5, TimeUnit.SECONDS));
+
+        // 其他节点写入v2，本节点处理失效消息
+        redisTemplate.opsForValue().set("users:k", "v2");
+        cacheManager.clearLocal("users", "k");
+
+        valueSerializer.release.countDown();
+        assertEquals("v1", read.get(5, TimeUnit.SECONDS));
+        assertNull(cache.getCaffeineCache().getIfPresent("k"));
+        assertEquals("v2", cache.get("k").get());
+    }
+
+    @Test
+    public void staleReadIsNotInstalledAfterClear() throws Exception {
+        RedisCaffeineCache cache = (RedisCaffeineCache) cacheManager.getCache("users");
+        redisTemplate.opsForValue().set("users:k", "v1");
+
+        valueSerializer.arm("v1");
+        Future<Object> read = executor.submit(() -> cache.get("k").get());
+        assertTrue(valueSerializer.blocked.await(5, TimeUnit.SECONDS));
+
+        redisTemplate.opsForValue().set("users:k", "v2");
+        cacheManager.clearLocal("users", null);
+
+        valueSerializer.release.countDown();
+        read.get(5, TimeUnit.SECONDS);
+        assertNull(cache.getCaffeineCache().getIfPresent("k"));
+    }
+
+    /**
+     * 反序列化出指定的值时阻塞，直到release
+     */
+    private static class BlockingSerializer extends JdkSerializationRedisSerializer {
+
+        private volatile Object target;
+
+        private volatile CountDownLatch blocked = new CountDownLatch(1);
+
+        private volatile CountDownLatch release = new CountDownLatch(1);
+
+        void arm(Object target) {
+            this.blocked = new CountDownLatch(1);
+            this.release = new CountDownLatch(1);
+            this.target = target;
+        }
+
+        void disarm() {
+            this.target = null;
+            this.release.countDown();
+        }
+
+        @Override
+        public Object deserialize(byte[] bytes) {
+            Object value = super.deserialize(bytes);
+            if (value != null && value.equals(target)) {
+                target = null;
+                blocked.countDown();
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return value;
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package lc.cy.cache.caffine;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+/**
+ * 类名称：JitterExpiryTest <br>
+ * 类描述：验证同时配置写入后和访问后过期时两者都生效，以及ExpiryPolicy与redis过期时间的限制 <br>
+ */
+public class JitterExpiryTest {
+
+    private final AtomicLong ticker = new AtomicLong();
+
+    @Test
+    public void accessDoesNotExtendBeyondExpireAfterWrite() {
+        Cache<Object, Object> cache = build(new JitterExpiry(1000, 300, 0));
+        cache.put("k", "v");
+        for (int i = 0; i < 4; i++) {
+            advance(200);
+            assertNotNull(cache.getIfPresent("k"));
+        }
+        advance(250);
+        assertNull(cache.getIfPresent("k"));
+    }
+
+    @Test
+    public void idleEntryExpiresAfterAccess() {
+        Cache<Object, Object> cache = build(new JitterExpiry(1000, 300, 0));
+        cache.put("k", "v");
+        advance(200);
+        assertNotNull(cache.getIfPresent("k"));
+        advance(350);
+        assertNull(cache.getIfPresent("k"));
+    }
+
+    @Test
+    public void rewriteStartsANewDeadline() {
+        JitterExpiry expiry = new JitterExpiry(1000, 300, 0);
+        Cache<Object, Object> cache = build(expiry);
+        cache.put("k", "v1");
+        advance(200);
+        cache.invalidate("k");
+        cache.put("k", "v2");
+        for (int i = 0; i < 4; i++) {
+            advance(200);
+            assertEquals("v2", cache.getIfPresent("k"));
+        }
+    }
+
+    @Test
+    public void readKeepsPinnedExpiration() {
+        Cache<Object, Object> cache = build(new JitterExpiry(1000, 300, 0));
+        cache.put("k", "v");
+        cache.policy().expireVariably().get().setExpiresAfter("k", 5000, TimeUnit.MILLISECONDS);
+        for (int i = 0; i < 10; i++) {
+            advance(200);
+            assertNotNull(cache.getIfPresent("k"));
+        }
+    }
+
+    @Test
+    public void policyAppliesToAccessAndRedisBoundsTheEntry() {
+        ExpiryPolicy policy = new ExpiryPolicy() {
+            @Override
+            public long redisExpire(String cacheName, Object key, Object value, long defaultExpire) {
+                return 700;
+            }
+
+            @Override
+            public long localExpire(String cacheName, Object key, Object value, long defaultExpire) {
+                return "short".equals(key) ? 100 : defaultExpire;
+            }
+        };
+        Cache<Object, Object> cache = build(new PolicyExpiry("users", policy, 0, 300, 600000, 0));
+        cache.put("short", "v");
+        cache.put("k", "v");
+        advance(200);
+        assertNull(cache.getIfPresent("short"));
+        for (int i = 0; i < 2; i++) {
+            assertNotNull(cache.getIfPresent("k"));
+            advance(200);
+        }
+        assertNotNull(cache.getIfPresent("k"));
+        advance(150);
+        assertNull(cache.getIfPresent("k"));
+    }
+
+    private Cache<Object, Object> build(JitterExpiry expiry) {
+        return Caffeine.newBuilder()
+                .ticker(ticker::get)
+                .executor(Runnable::run)
+                .expireAfter(expiry)
+                .removalListener(expiry::onRemoval)
+                .build();
+    }
+
+    private void advance(long millis) {
+        ticker.addAndGet(TimeUnit.MILLISECONDS.toNanos(millis));
+    }
+}
@@ -0,0 +1,126 @@
+package lc.cy.cache.caffine;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.junit.Test;
+import org.springframework.data.redis.serializer.JdkSerializationRedisSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 类名称：OffHeapArenaTest <br>
+ * 类描述：验证堆外内存的分配、释放、槽位复用，以及本地缓存淘汰和移除条目时释放槽位 <br>
+ */
+public class OffHeapArenaTest {
+
+    @Test
+    public void allocateAndRead() {
+        OffHeapArena arena = new OffHeapArena(1024 * 1024);
+        byte[] bytes = bytes(100, (byte) 1);
+        OffHeapValue value = arena.allocate(bytes);
+        assertNotNull(value);
+        assertArrayEquals(bytes, value.read());
+        // 100字节落在128字节的等级
+        assertEquals(128, value.getSlotSize());
+        assertEquals(128, arena.getUsedBytes());
+    }
+
+    @Test
+    public void releasedSlotIsNotReadableAndIsReused() {
+        OffHeapArena arena = new OffHeapArena(1024 * 1024);
+        OffHeapValue first = arena.allocate(bytes(100, (byte) 1));
+        first.release();
+        assertNull(first.read());
+        assertEquals(0, arena.getUsedBytes());
+
+        OffHeapValue second = arena.allocate(bytes(120, (byte) 2));
+        assertEquals(first.getSlabIndex(), second.getSlabIndex());
+        assertEquals(first.getOffset(), second.getOffset());
+        assertArrayEquals(bytes(120, (byte) 2), second.read());
+        assertEquals(1024 * 1024, arena.getAllocatedBytes());
+    }
+
+    @Test
+    public void emptySlabMovesToAnotherSizeClass() {
+        // 容量只有一个内存块
+        OffHeapArena arena = new OffHeapArena(4096);
+        OffHeapValue small = arena.allocate(bytes(64, (byte) 1));
+        assertNull(arena.allocate(bytes(2048, (byte) 2)));
+        small.release();
+
+        OffHeapValue large = arena.allocate(bytes(2048, (byte) 2));
+        assertNotNull(large);
+        assertEquals(4096, arena.getAllocatedBytes());
+    }
+
+    @Test
+    public void oversizedOrOverCapacityValuesStayOnHeap() {
+        OffHeapArena arena = new OffHeapArena(4096);
+        assertNull(arena.allocate(bytes(4097, (byte) 1)));
+        assertNotNull(arena.allocate(bytes(2048, (byte) 1)));
+        assertNotNull(arena.allocate(bytes(2048, (byte) 1)));
+        assertNull(arena.allocate(bytes(64, (byte) 1)));
+    }
+
+    @Test
+    public void evictionAndRemovalReleaseSlots() {
+        RedisSerializer<Object> serializer = new JdkSerializationRedisSerializer();
+        OffHeapStore store = new OffHeapStore(1024 * 1024, 256, serializer);
+        Cache<Object, Object> cache = Caffeine.newBuilder()
+                .executor(Runnable::run)
+                .maximumWeight(4096)
+                .weigher(store.weigher())
+                .removalListener(store::onRemoval)
+                .build();
+
+        String large = repeat('x', 1000);
+        Object local = store.toLocal(large);
+        assertTrue(local instanceof OffHeapValue);
+        cache.put("k", local);
+        assertEquals(large, store.fromLocal(cache.getIfPresent("k")));
+        long used = store.getUsedBytes();
+        assertTrue(used > 0);
+
+        cache.invalidate("k");
+        assertEquals(0, store.getUsedBytes());
+
+        for (int i = 0; i < 10; i++) {
+            cache.put("k" + i, store.toLocal(large));
+        }
+        cache.cleanUp();
+        assertTrue(cache.estimatedSize() < 10);
+        assertEquals(cache.estimatedSize() * used, store.getUsedBytes());
+    }
+
+    @Test
+    public void smallValuesAreNotSerialized() {
+        OffHeapStore store = new OffHeapStore(1024 * 1024, 256, new JdkSerializationRedisSerializer() {
+            @Override
+            public byte[] serialize(Object object) {
+                throw new AssertionError("small value should not be serialized");
+            }
+        });
+        String small = "v";
+        assertSame(small, store.toLocal(small));
+    }
+
+    private static byte[] bytes(int length, byte value) {
+        byte[] bytes = new byte[length];
+        Arrays.fill(bytes, value);
+        return bytes;
+    }
+
+    private static String repeat(char c, int count) {
+        char[] chars = new char[count];
+        Arrays.fill(chars, c);
+        return new String(chars);
+    }
+}
@@ -0,0 +1,249 @@
+package lc.cy.cache.caffine;
+
+import lc.cy.cache.config.CacheRedisCaffeineProperties;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.jedis.JedisConnectionFactory;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.serializer.JdkSerializationRedisSerializer;
+import org.springframework.data.redis.serializer.StringRedisSerializer;
+import redis.embedded.RedisServer;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 类名称：RedisCaffeineCacheTest <br>
+ * 类描述：基于内嵌redis验证缓存的加载，某个key加载缓慢时不能阻塞其他key的读取，以及按代号清空缓存及旧代key的清理 <br>
+ */
+public class RedisCaffeineCacheTest {
+
+    private static final int PORT = 16391;
+
+    private static RedisServer redisServer;
+
+    private static JedisConnectionFactory connectionFactory;
+
+    private static RedisTemplate<Object, Object> redisTemplate;
+
+    private RedisCaffeineCacheManager cacheManager;
+
+    private RedisCaffeineCache cache;
+
+    private ExecutorService executor;
+
+    @BeforeClass
+    public static void startRedis() throws Exception {
+        redisServer = new RedisServer(PORT);
+        redisServer.start();
+        connectionFactory = new JedisConnectionFactory(new RedisStandaloneConfiguration("127.0.0.1", PORT));
+        connectionFactory.afterPropertiesSet();
+        redisTemplate = new RedisTemplate<>();
+        redisTemplate.setConnectionFactory(connectionFactory);
+        redisTemplate.setKeySerializer(new StringRedisSerializer());
+        redisTemplate.setValueSerializer(new JdkSerializationRedisSerializer());
+        redisTemplate.afterPropertiesSet();
+    }
+
+    @AfterClass
+    public static void stopRedis() throws Exception {
+        if (connectionFactory != null) {
+            connectionFactory.destroy();
+        }
+        if (redisServer != null) {
+            redisServer.stop();
+        }
+    }
+
+    @Before
+    public void setUp() {
+        CacheRedisCaffeineProperties properties = new CacheRedisCaffeineProperties();
+        properties.setRedis(new CacheRedisCaffeineProperties.Redis());
+        cacheManager = new RedisCaffeineCacheManager(properties, redisTemplate);
+        cache = (RedisCaffeineCache) cacheManager.getCache("users");
+        executor = Executors.newCachedThreadPool();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        executor.shutdownNow();
+        cacheManager.destroy();
+        redisTemplate.execute((RedisCallback<Object>) connection -> {
+            connection.flushDb();
+            return null;
+        });
+    }
+
+    @Test
+    public void slowLoadDoesNotBlockOtherKeys() throws Exception {
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger loadCount = new AtomicInteger();
+        Future<Object> slow = executor.submit(() -> cache.get("slow", () -> {
+            loadCount.incrementAndGet();
+            loading.countDown();
+            release.await();
+            return "slow-value";
+        }));
+        Future<Object> waiting = null;
+        try {
+            loading.await(5, TimeUnit.SECONDS);
+            // 同一个key的并发读取等待正在进行的加载，不会重复加载
+            waiting = executor.submit(() -> cache.get("slow", () -> {
+                loadCount.incrementAndGet();
+                return "duplicate";
+            }));
+
+            // 加载期间其他key的读取、加载及写入都不受影响，key较多以覆盖与slow在同一个哈希桶的情况
+            CompletableFuture<Void> others = CompletableFuture.runAsync(() -> {
+                for (int i = 0; i < 200; i++) {
+                    String key = "key-" + i;
+                    String value = "value-" + i;
+                    assertEquals(value, cache.get(key, () -> value));
+                    cache.put(key, "new-" + i);
+                    assertEquals("new-" + i, cache.get(key).get());
+                }
+            }, executor);
+            others.get(5, TimeUnit.SECONDS);
+            assertFalse(slow.isDone());
+        } finally {
+            release.countDown();
+        }
+        assertEquals("slow-value", slow.get(5, TimeUnit.SECONDS));
+        assertEquals("slow-value", waiting.get(5, TimeUnit.SECONDS));
+        assertEquals(1, loadCount.get());
+    }
+
+    @Test
+    public void resetLocalRebuildsExistenceFilter() throws Exception {
+        CacheRedisCaffeineProperties properties = new CacheRedisCaffeineProperties();
+        properties.setRedis(new CacheRedisCaffeineProperties.Redis());
+        CacheRedisCaffeineProperties.Caffeine caffeine = new CacheRedisCaffeineProperties.Caffeine();
+        caffeine.getExistenceFilter().setEnabled(true);
+        properties.setCaffeine(Collections.singletonMap("orders", caffeine));
+        RedisCaffeineCacheManager manager = new RedisCaffeineCacheManager(properties, redisTemplate);
+        try {
+            RedisCaffeineCache orders = (RedisCaffeineCache) manager.getCache("orders");
+            await(orders::isExistenceFilterReady);
+
+            // 模拟丢失的变更消息：其他节点写入的key未加入过滤器，被误判为不存在
+            redisTemplate.opsForValue().set("orders:k", "v");
+            assertNull(orders.get("k"));
+
+            // 空的keyspace重建很快，不检查重建期间的状态，以重建后能读到该key为准
+            manager.resetLocal("orders");
+            await(orders::isExistenceFilterReady);
+            assertEquals("v", orders.get("k").get());
+        } finally {
+            manager.destroy();
+        }
+    }
+
+    @Test
+    public void concurrentGetCacheCreatesOneInstance() throws Exception {
+        AtomicInteger created = new AtomicInteger();
+        cacheManager.addCacheCreationListener(c -> created.incrementAndGet());
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Object>> results = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            results.add(executor.submit(() -> {
+                start.await();
+                return cacheManager.getCache("orders");
+            }));
+        }
+        start.countDown();
+        Object first = results.get(0).get(5, TimeUnit.SECONDS);
+        for (Future<Object> result : results) {
+            assertSame(first, result.get(5, TimeUnit.SECONDS));
+        }
+        assertEquals(1, created.get());
+    }
+
+    @Test
+    public void generationClearHidesOldKeys() throws Exception {
+        RedisCaffeineCacheManager manager = versionedManager(600000);
+        try {
+            RedisCaffeineCache orders = (RedisCaffeineCache) manager.getCache("orders");
+            orders.put("k", "v");
+            orders.clear();
+            assertEquals(1, orders.getGeneration());
+            assertNull(orders.get("k"));
+            // 有过期时间时旧代的key依靠过期淘汰
+            assertTrue(redisTemplate.hasKey("orders:k"));
+
+            orders.put("k", "v1");
+            assertTrue(redisTemplate.hasKey("orders:v1:k"));
+            // 新创建的缓存实例从redis读取当前代号
+            RedisCaffeineCacheManager other = versionedManager(600000);
+            try {
+                RedisCaffeineCache peer = (RedisCaffeineCache) other.getCache("orders");
+                assertEquals(1, peer.getGeneration());
+                assertEquals("v1", peer.get("k").get());
+            } finally {
+                other.destroy();
+            }
+        } finally {
+            manager.destroy();
+        }
+    }
+
+    @Test
+    public void generationClearDeletesOldKeyspaceWithoutExpiry() throws Exception {
+        RedisCaffeineCacheManager manager = versionedManager(0);
+        try {
+            RedisCaffeineCache orders = (RedisCaffeineCache) manager.getCache("orders");
+            orders.put("a", "v");
+            orders.clear();
+            orders.put("b", "v");
+            // 第0代的命名空间orders:同样匹配orders:v1:，新代的key不能被删除
+            await(() -> !redisTemplate.hasKey("orders:a"));
+            assertTrue(redisTemplate.hasKey("orders:v1:b"));
+
+            orders.clear();
+            orders.put("c", "v");
+            await(() -> !redisTemplate.hasKey("orders:v1:b"));
+            assertTrue(redisTemplate.hasKey("orders:v2:c"));
+            assertTrue(redisTemplate.hasKey("orders#generation"));
+        } finally {
+            manager.destroy();
+        }
+    }
+
+    private static RedisCaffeineCacheManager versionedManager(long defaultExpires) {
+        CacheRedisCaffeineProperties properties = new CacheRedisCaffeineProperties();
+        properties.setRedis(new CacheRedisCaffeineProperties.Redis());
+        properties.getRedis().setNamespaceVersion(true);
+        properties.getRedis().setDefaultExpires(defaultExpires);
+        return new RedisCaffeineCacheManager(properties, redisTemplate);
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean()) {
+            if (System.currentTimeMillis() > deadline) {
+                throw new AssertionError("condition not met in 5000ms");
+            }
+            Thread.sleep(5);
+        }
+    }
+}
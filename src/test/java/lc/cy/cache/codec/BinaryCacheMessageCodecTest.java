@@ -0,0 +1,133 @@
+package lc.cy.cache.codec;
+
+import lc.cy.cache.caffine.CacheMessage;
+import org.junit.Test;
+
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 类名称：BinaryCacheMessageCodecTest <br>
+ * 类描述：验证二进制消息的key解码、复合key及非二进制消息交给fallback，以及畸形消息的长度校验 <br>
+ */
+public class BinaryCacheMessageCodecTest {
+
+    private final RecordingCodec fallback = new RecordingCodec();
+
+    private final BinaryCacheMessageCodec codec = new BinaryCacheMessageCodec(fallback);
+
+    @Test
+    public void typedKeysRoundTrip() {
+        String origin = UUID.randomUUID().toString();
+        CacheMessage single = new CacheMessage("users", (Object) 42L);
+        single.setOrigin(origin);
+        single.setTimestamp(1000L);
+        CacheMessage batch = new CacheMessage("orders", Arrays.<Object>asList("a", 7, 8L, "中文"));
+        batch.setOrigin("node-1");
+        CacheMessage clear = new CacheMessage("users", (Object) null);
+        clear.setGeneration(3L);
+
+        List<CacheMessage> decoded = codec.decode(codec.encode(Arrays.asList(single, batch, clear)));
+        assertEquals(3, decoded.size());
+        assertEquals("users", decoded.get(0).getCacheName());
+        assertEquals(42L, decoded.get(0).getKey());
+        assertEquals(origin, decoded.get(0).getOrigin());
+        assertEquals(1000L, decoded.get(0).getTimestamp());
+        // 数字key保持原类型，本地缓存按equals查找
+        assertEquals(Arrays.<Object>asList("a", 7, 8L, "中文"), decoded.get(1).getKeys());
+        assertEquals(Integer.class, decoded.get(1).getKeys().get(1).getClass());
+        assertEquals("node-1", decoded.get(1).getOrigin());
+        assertNull(decoded.get(2).getKey());
+        assertNull(decoded.get(2).getKeys());
+        assertEquals(Long.valueOf(3L), decoded.get(2).getGeneration());
+        assertEquals(0, fallback.encoded);
+    }
+
+    @Test
+    public void compositeKeysUseFallback() {
+        CacheMessage message = new CacheMessage("users", Arrays.<Object>asList("a", new ArrayList<>(Arrays.asList(1, 2))));
+        byte[] body = codec.encode(Collections.singletonList(message));
+        assertArrayEquals(RecordingCodec.BODY, body);
+        assertEquals(1, fallback.encoded);
+    }
+
+    @Test
+    public void nonBinaryBodyUsesFallback() {
+        byte[] json = "[{\"cacheName\":\"users\"}]".getBytes(StandardCharsets.UTF_8);
+        assertSame(RecordingCodec.DECODED, codec.decode(json));
+        assertSame(RecordingCodec.DECODED, codec.decode(new byte[]{(byte) 0xC1}));
+        assertEquals(2, fallback.decoded);
+    }
+
+    @Test
+    public void oversizedCountIsRejected() {
+        byte[] body = codec.encode(Collections.singletonList(new CacheMessage("users", (Object) "k")));
+        // 消息数改为远超剩余字节数的值
+        byte[] malformed = Arrays.copyOf(body, body.length + 4);
+        System.arraycopy(malformed, 4, malformed, 8, body.length - 4);
+        malformed[3] = (byte) 0xFF;
+        malformed[4] = (byte) 0xFF;
+        malformed[5] = (byte) 0xFF;
+        malformed[6] = (byte) 0xFF;
+        malformed[7] = (byte) 0x07;
+        assertDecodeFails(malformed, "invalid length");
+    }
+
+    @Test
+    public void truncatedBodyIsRejected() {
+        byte[] body = codec.encode(Collections.singletonList(new CacheMessage("users", Arrays.<Object>asList("a", "b"))));
+        assertDecodeFails(Arrays.copyOf(body, body.length - 1), null);
+    }
+
+    @Test
+    public void unknownKeyTypeIsRejected() {
+        byte[] body = codec.encode(Collections.singletonList(new CacheMessage("users", (Object) 1)));
+        // 最后5字节为key类型及int值
+        body[body.length - 5] = 9;
+        assertDecodeFails(body, "unknown key type");
+    }
+
+    private void assertDecodeFails(byte[] body, String message) {
+        try {
+            codec.decode(body);
+        } catch (UncheckedIOException e) {
+            assertTrue(message == null || e.getCause().getMessage().contains(message));
+            return;
+        }
+        throw new AssertionError("malformed message decoded");
+    }
+
+    private static class RecordingCodec implements CacheMessageCodec {
+
+        static final byte[] BODY = "fallback".getBytes(StandardCharsets.UTF_8);
+
+        static final List<CacheMessage> DECODED = Collections.singletonList(new CacheMessage("fallback", (Object) "k"));
+
+        int encoded;
+
+        int decoded;
+
+        @Override
+        public byte[] encode(List<CacheMessage> messages) {
+            encoded++;
+            return BODY;
+        }
+
+        @Override
+        public List<CacheMessage> decode(byte[] body) {
+            decoded++;
+            return DECODED;
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package lc.cy.cache.config;
+
+import org.junit.Test;
+import org.springframework.data.redis.core.RedisTemplate;
+
+import static org.junit.Assert.assertNotNull;
+
+/**
+ * 类名称：CacheRedisCaffeineAutoConfigTest <br>
+ * 类描述：验证没有配置redis部分时使用默认值启动 <br>
+ */
+public class CacheRedisCaffeineAutoConfigTest {
+
+    @Test
+    public void startsWithoutRedisSection() {
+        CacheRedisCaffeineProperties properties = new CacheRedisCaffeineProperties();
+        CacheRedisCaffeineAutoConfig autoConfig = new CacheRedisCaffeineAutoConfig(properties, new RedisTemplate<>());
+        assertNotNull(autoConfig.cacheMessageCodec());
+    }
+}